@@ -0,0 +1,101 @@
+package com.backend.qu2data.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@EnableScheduling
+public class AsyncConfig {
+
+    // ⏱️ Planificateur des tâches @Scheduled (relève de l'outbox, etc.)
+    @Bean(name = "taskScheduler")
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${scheduler.pool-size:2}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(poolSize);
+        scheduler.setThreadNamePrefix("scheduler-");
+        return scheduler;
+    }
+
+    // 📮 Pool borné qui pousse les notifications de l'outbox vers le broker STOMP.
+    // File pleine : le thread de relève envoie lui-même (back-pressure, rien n'est perdu).
+    @Bean(name = "outboxExecutor")
+    public ThreadPoolTaskExecutor outboxExecutor(
+            @Value("${outbox.workers:4}") int workers,
+            @Value("${outbox.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("outbox-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    // 📧 Envoi SMTP de l'outbox email : un lot par connexion, un worker par connexion simultanée
+    @Bean(name = "mailExecutor")
+    public ThreadPoolTaskExecutor mailExecutor(
+            @Value("${mail.outbox.workers:2}") int workers,
+            @Value("${mail.outbox.queue-capacity:16}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mail-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    // 📣 Campagnes : peu de threads (chaque campagne est déjà traitée par lots), file bornée
+    @Bean(name = "campaignExecutor")
+    public ThreadPoolTaskExecutor campaignExecutor(
+            @Value("${campaign.workers:1}") int workers,
+            @Value("${campaign.queue-capacity:20}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("campaign-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 🖼️ Génération des miniatures : pool et file bornés, file pleine = miniature ignorée (non critique)
+    @Bean(name = "thumbnailExecutor")
+    public ThreadPoolTaskExecutor thumbnailExecutor(
+            @Value("${thumbnails.workers:2}") int workers,
+            @Value("${thumbnails.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("thumbnail-");
+        executor.initialize();
+        return executor;
+    }
+
+    // 📄 Génération PDF en masse : CPU-bound, autant de workers que de cœurs au plus.
+    // File pleine : l'appelant génère lui-même (back-pressure, aucune offre perdue).
+    @Bean(name = "pdfExecutor")
+    public ThreadPoolTaskExecutor pdfExecutor(
+            @Value("${pdf.workers:2}") int workers,
+            @Value("${pdf.queue-capacity:50}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("pdf-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
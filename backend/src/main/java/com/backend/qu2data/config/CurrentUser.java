@@ -0,0 +1,20 @@
+package com.backend.qu2data.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 👤 Injecte l'utilisateur connecté (ligne users correspondant au "sub" du JWT) dans un paramètre
+ * de contrôleur de type Users ou Long (id PostgreSQL). Voir CurrentUserArgumentResolver.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+
+    // false : null si la requête n'a pas de JWT ; un JWT dont l'utilisateur n'existe pas en base donne toujours 403
+    boolean required() default true;
+}
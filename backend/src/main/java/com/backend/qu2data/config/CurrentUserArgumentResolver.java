@@ -0,0 +1,79 @@
+package com.backend.qu2data.config;
+
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.service.CurrentUserCache;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Résout les paramètres @CurrentUser à partir du JWT de oauth2ResourceServer.
+ * Le résultat est mémorisé dans la requête (plusieurs paramètres = une seule résolution),
+ * et CurrentUserCache évite la requête SQL pour les utilisateurs déjà vus.
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private static final String REQUEST_ATTRIBUTE = CurrentUserArgumentResolver.class.getName() + ".user";
+
+    private final CurrentUserCache currentUserCache;
+
+    public CurrentUserArgumentResolver(CurrentUserCache currentUserCache) {
+        this.currentUserCache = currentUserCache;
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        Class<?> type = parameter.getParameterType();
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+            && (Users.class.equals(type) || Long.class.equals(type));
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Users user = resolve(webRequest.getNativeRequest(HttpServletRequest.class));
+        if (user == null) {
+            // JWT valide mais "sub" inconnu en base : jamais de repli sur un id fourni par le client
+            if (currentJwt() != null) {
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Utilisateur du jeton inconnu");
+            }
+            if (parameter.getParameterAnnotation(CurrentUser.class).required()) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Utilisateur connecté introuvable");
+            }
+            return null;
+        }
+        return Long.class.equals(parameter.getParameterType()) ? user.getId() : user;
+    }
+
+    private Users resolve(HttpServletRequest request) {
+        if (request != null && request.getAttribute(REQUEST_ATTRIBUTE) instanceof Users cached) {
+            return cached;
+        }
+        Jwt jwt = currentJwt();
+        if (jwt == null) {
+            return null;
+        }
+        Users user = currentUserCache.get(jwt.getSubject()).orElse(null);
+        if (request != null && user != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE, user);
+        }
+        return user;
+    }
+
+    private static Jwt currentJwt() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof Jwt jwt ? jwt : null;
+    }
+}
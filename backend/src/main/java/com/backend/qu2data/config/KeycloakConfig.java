@@ -0,0 +1,134 @@
+package com.backend.qu2data.config;
+
+import com.backend.qu2data.service.KeycloakTokenManager;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import javax.ws.rs.Priorities;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class KeycloakConfig {
+
+    // ⏱️ Connexions Keycloak : pool keep-alive borné + délais ; un Keycloak lent ne bloque plus un thread indéfiniment
+    @Value("${keycloak.http.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${keycloak.http.connect-timeout:PT2S}")
+    private Duration connectTimeout;
+
+    @Value("${keycloak.http.read-timeout:PT5S}")
+    private Duration readTimeout;
+
+    // Attente d'une connexion libre dans le pool
+    @Value("${keycloak.http.pool-timeout:PT1S}")
+    private Duration poolTimeout;
+
+    @Value("${keycloak.http.connection-ttl:PT5M}")
+    private Duration connectionTtl;
+
+    @Value("${keycloak.http.idle-eviction:PT30S}")
+    private Duration idleEviction;
+
+    // 🌐 Appels REST directs (jeton, lecture d'un utilisateur) : ne pas utiliser le RestTemplate générique sans délais
+    @Bean
+    public RestTemplate keycloakRestTemplate() {
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(connectionTtl))
+                        .build())
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(poolTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleEviction))
+                .build();
+
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    // 🔑 Client d'administration Keycloak (compte de service) ; l'URL peut pointer vers un bouchon HTTP local.
+    // Le jeton vient de KeycloakTokenManager (cache + renouvellement anticipé), pas du gestionnaire
+    // interne du client : le jeton statique passé à authorization() est remplacé à chaque requête.
+    // Même pool et mêmes délais que keycloakRestTemplate.
+    @Bean
+    public Keycloak keycloak(
+            KeycloakTokenManager tokenManager,
+            @Value("${keycloak.server-url:http://localhost:8080}") String serverUrl,
+            @Value("${keycloak.realm:qu2data-realm}") String realm,
+            @Value("${keycloak.client-id:qu2data-client}") String clientId) {
+        Client client = ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .connectionPoolSize(maxConnections)
+                .maxPooledPerRoute(maxConnections)
+                .connectTimeout(connectTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .connectionCheckoutTimeout(poolTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                .connectionTTL(connectionTtl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        client.register(new ManagedTokenFilter(tokenManager), Priorities.AUTHENTICATION + 1);
+
+        return KeycloakBuilder.builder()
+                .serverUrl(serverUrl)
+                .realm(realm)
+                .clientId(clientId)
+                .authorization("managed")
+                .resteasyClient(client)
+                .build();
+    }
+
+    private static final class ManagedTokenFilter implements ClientRequestFilter, ClientResponseFilter {
+
+        private final KeycloakTokenManager tokenManager;
+
+        private ManagedTokenFilter(KeycloakTokenManager tokenManager) {
+            this.tokenManager = tokenManager;
+        }
+
+        @Override
+        public void filter(ClientRequestContext request) {
+            request.getHeaders().putSingle(HttpHeaders.AUTHORIZATION, "Bearer " + tokenManager.getToken());
+        }
+
+        @Override
+        public void filter(ClientRequestContext request, ClientResponseContext response) {
+            if (response.getStatus() == 401) {
+                String header = request.getHeaderString(HttpHeaders.AUTHORIZATION);
+                if (header != null && header.startsWith("Bearer ")) {
+                    tokenManager.invalidate(header.substring("Bearer ".length()));
+                }
+            }
+        }
+    }
+}
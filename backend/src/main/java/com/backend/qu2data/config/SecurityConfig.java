@@ -2,6 +2,7 @@ package com.backend.qu2data.config;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
 import org.springframework.security.web.SecurityFilterChain;
@@ -9,12 +10,15 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 public class SecurityConfig {
@@ -28,6 +32,7 @@ public class SecurityConfig {
             .authorizeHttpRequests(auth -> auth
             		.requestMatchers("/test/keycloak/**", "/api/users/**", "/ws/**","/api/tasks/**").permitAll()
  // ✅ Routes publiques
+                .requestMatchers(HttpMethod.POST, "/api/attachments/storage/migrate").hasRole("ADMIN") // 🔒 migration du stockage
                 .requestMatchers("/api/messages/**").authenticated() // ✅ Routes sécurisées
                 .anyRequest().authenticated() // ✅ Toutes les autres requêtes nécessitent une authentification
             )
@@ -57,12 +62,19 @@ public class SecurityConfig {
 
     @Bean
     public JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtGrantedAuthoritiesConverter grantedAuthoritiesConverter = new JwtGrantedAuthoritiesConverter();
-        grantedAuthoritiesConverter.setAuthoritiesClaimName("realm_access.roles"); // ✅ Correction importante
-        grantedAuthoritiesConverter.setAuthorityPrefix("ROLE_");
-
+        // ✅ Rôles de realm Keycloak : claim imbriqué realm_access.roles -> ROLE_xxx
+        // (JwtGrantedAuthoritiesConverter ne lit que les claims de premier niveau)
         JwtAuthenticationConverter jwtAuthenticationConverter = new JwtAuthenticationConverter();
-        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(grantedAuthoritiesConverter);
+        jwtAuthenticationConverter.setJwtGrantedAuthoritiesConverter(jwt -> {
+            Map<String, Object> realmAccess = jwt.getClaimAsMap("realm_access");
+            Object roles = realmAccess != null ? realmAccess.get("roles") : null;
+            if (!(roles instanceof Collection<?> names)) {
+                return List.<GrantedAuthority>of();
+            }
+            return names.stream()
+                .map(name -> (GrantedAuthority) new SimpleGrantedAuthority("ROLE_" + name))
+                .toList();
+        });
         return jwtAuthenticationConverter;
     }
 
@@ -1,18 +1,122 @@
 package com.backend.qu2data.config;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.web.socket.config.annotation.*;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // "simple" : broker en mémoire (une seule instance) ; "relay" : broker STOMP externe
+    // (ActiveMQ, RabbitMQ...) partagé par toutes les instances, sans sessions collantes
+    @Value("${websocket.broker.mode:simple}")
+    private String brokerMode;
+
+    @Value("${websocket.broker.relay.host:localhost}")
+    private String relayHost;
+
+    @Value("${websocket.broker.relay.port:61613}")
+    private int relayPort;
+
+    @Value("${websocket.broker.relay.client-login:guest}")
+    private String clientLogin;
+
+    @Value("${websocket.broker.relay.client-passcode:guest}")
+    private String clientPasscode;
+
+    @Value("${websocket.broker.relay.system-login:guest}")
+    private String systemLogin;
+
+    @Value("${websocket.broker.relay.system-passcode:guest}")
+    private String systemPasscode;
+
+    @Value("${websocket.broker.relay.virtual-host:}")
+    private String virtualHost;
+
+    // 🧵 Pools des canaux client (réception des trames / diffusion vers les sessions)
+    @Value("${websocket.inbound.core-pool-size:4}")
+    private int inboundCorePoolSize;
+
+    @Value("${websocket.inbound.max-pool-size:16}")
+    private int inboundMaxPoolSize;
+
+    @Value("${websocket.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${websocket.outbound.max-pool-size:32}")
+    private int outboundMaxPoolSize;
+
+    @Value("${websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    // 🐢 Protection contre les clients lents : au-delà, la session est fermée (les autres ne sont pas freinées)
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Autowired
+    private WebSocketMetrics webSocketMetrics;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic"); // Pour le broadcast
+        if ("relay".equalsIgnoreCase(brokerMode)) {
+            // 🔁 Chaque instance publie sur le broker externe, qui diffuse à tous les abonnés quel que soit leur nœud
+            StompBrokerRelayRegistration relay = config.enableStompBrokerRelay("/topic")
+                .setRelayHost(relayHost)
+                .setRelayPort(relayPort)
+                .setClientLogin(clientLogin)
+                .setClientPasscode(clientPasscode)
+                .setSystemLogin(systemLogin)
+                .setSystemPasscode(systemPasscode);
+            if (!virtualHost.isBlank()) {
+                relay.setVirtualHost(virtualHost);
+            }
+        } else if ("simple".equalsIgnoreCase(brokerMode)) {
+            config.enableSimpleBroker("/topic"); // Pour le broadcast
+        } else {
+            throw new IllegalArgumentException("websocket.broker.mode inconnu : " + brokerMode + " (simple | relay)");
+        }
         config.setApplicationDestinationPrefixes("/app"); // Pour les messages envoyés par les clients
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+            .corePoolSize(inboundCorePoolSize)
+            .maxPoolSize(inboundMaxPoolSize)
+            .queueCapacity(inboundQueueCapacity);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+            .corePoolSize(outboundCorePoolSize)
+            .maxPoolSize(outboundMaxPoolSize)
+            .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(webSocketMetrics);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration
+            .setSendTimeLimit(sendTimeLimitMs)
+            .setSendBufferSizeLimit(sendBufferSizeLimit)
+            .setMessageSizeLimit(messageSizeLimit)
+            .addDecoratorFactory(webSocketMetrics);
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws")
@@ -20,5 +124,3 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .withSockJS(); // ✅ SockJS fallback
     }
 }
-
-
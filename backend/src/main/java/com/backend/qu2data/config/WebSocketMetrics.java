@@ -0,0 +1,95 @@
+package com.backend.qu2data.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+
+/**
+ * Métriques du transport STOMP :
+ * - websocket.channel.queue / websocket.channel.active : file d'attente et threads actifs des canaux client ;
+ * - websocket.outbound.send : temps de remise d'une trame à la session ;
+ * - websocket.sessions.dropped : sessions coupées pour lenteur (sendTimeLimit / sendBufferSizeLimit dépassés).
+ */
+@Component
+public class WebSocketMetrics implements ExecutorChannelInterceptor, WebSocketHandlerDecoratorFactory {
+
+    private final MeterRegistry meterRegistry;
+    private final ApplicationContext applicationContext;
+    private final Timer outboundSend;
+    private final Counter droppedSessions;
+    private final ThreadLocal<Timer.Sample> currentSend = new ThreadLocal<>();
+
+    public WebSocketMetrics(MeterRegistry meterRegistry, ApplicationContext applicationContext) {
+        this.meterRegistry = meterRegistry;
+        this.applicationContext = applicationContext;
+        this.outboundSend = meterRegistry.timer("websocket.outbound.send");
+        this.droppedSessions = Counter.builder("websocket.sessions.dropped")
+            .description("Sessions fermées car le client ne consommait pas assez vite")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerChannelGauges() {
+        registerExecutorGauges("inbound", "clientInboundChannelExecutor");
+        registerExecutorGauges("outbound", "clientOutboundChannelExecutor");
+    }
+
+    private void registerExecutorGauges(String channel, String beanName) {
+        if (!applicationContext.containsBean(beanName)) {
+            return;
+        }
+        ThreadPoolTaskExecutor executor = applicationContext.getBean(beanName, ThreadPoolTaskExecutor.class);
+        Gauge.builder("websocket.channel.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+            .tag("channel", channel)
+            .register(meterRegistry);
+        Gauge.builder("websocket.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+            .tag("channel", channel)
+            .register(meterRegistry);
+    }
+
+    // ⏱️ Canal sortant : mesure la remise de chaque trame à la session WebSocket
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        currentSend.set(Timer.start(meterRegistry));
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        Timer.Sample sample = currentSend.get();
+        if (sample != null) {
+            sample.stop(outboundSend);
+            currentSend.remove();
+        }
+    }
+
+    // 🐢 Spring ferme en SESSION_NOT_RELIABLE une session qui dépasse ses limites d'envoi
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                if (CloseStatus.SESSION_NOT_RELIABLE.equalsCode(closeStatus)) {
+                    droppedSessions.increment();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+}
@@ -1,6 +1,5 @@
 package com.backend.qu2data.controller;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import org.keycloak.representations.idm.UserRepresentation;
@@ -8,6 +7,7 @@ import org.keycloak.representations.idm.UserRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -18,6 +18,7 @@ import com.backend.qu2data.entites.OfferRequestDTO;
 import com.backend.qu2data.service.ActionService;
 import com.backend.qu2data.service.EmailService;
 import com.backend.qu2data.service.KeycloakService;
+import com.backend.qu2data.service.MailAttachmentStore;
 import com.backend.qu2data.service.PdfService;
 
 @RestController
@@ -34,6 +35,9 @@ public class ActionController {
     @Autowired
     private KeycloakService keycloakService;
 
+    @Autowired
+    private MailAttachmentStore mailAttachmentStore;
+
     @PostMapping
     public ResponseEntity<?> createAction(@RequestBody Action action) {
         try {
@@ -159,17 +163,23 @@ public class ActionController {
     @PostMapping(value = "/send-multiple-files-offer", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> sendOfferWithMultipleFiles(
         @RequestParam("files") List<MultipartFile> files,
-        @RequestParam("recipient") String recipient,
+        @RequestParam("recipient") List<String> recipients,
         @RequestParam("fullName") String fullName,
         @RequestParam("company") String company
     ) {
+        // Adresses vides ("a@x.fr," côté formulaire) écartées avant tout envoi
+        List<String> addresses = recipients.stream()
+            .filter(StringUtils::hasText)
+            .map(String::trim)
+            .toList();
+        if (addresses.isEmpty()) {
+            return ResponseEntity.badRequest().body("❌ Aucun destinataire");
+        }
         try {
-            List<AttachmentDTO> attachments = new ArrayList<>();
-            for (MultipartFile file : files) {
-                attachments.add(new AttachmentDTO(file.getOriginalFilename(), file.getBytes()));
-            }
-
-            emailService.sendOfferEmailWithPdf(recipient, fullName, company, attachments);
+            // 📎 Fichiers déposés une fois sur disque, partagés par tous les destinataires
+            // Une seule transaction : en cas d'erreur, aucun email n'est en file et le client peut réessayer
+            List<AttachmentDTO> attachments = mailAttachmentStore.stage(files);
+            emailService.sendOfferEmailToAll(addresses, fullName, company, attachments);
             return ResponseEntity.ok("✅ Proposition commerciale envoyée avec plusieurs fichiers !");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("❌ Erreur : " + e.getMessage());
@@ -186,11 +196,7 @@ public class ActionController {
             @RequestParam("companyName") String companyName
     ) {
         try {
-            List<AttachmentDTO> attachments = new ArrayList<>();
-            for (MultipartFile file : files) {
-                attachments.add(new AttachmentDTO(file.getOriginalFilename(), file.getBytes()));
-            }
-
+            List<AttachmentDTO> attachments = mailAttachmentStore.stage(files);
             emailService.sendClosingEmailWithFile(clientEmail, clientName, companyName, attachments);
             return ResponseEntity.ok("✅ Email de closing envoyé avec plusieurs fichiers !");
         } catch (Exception e) {
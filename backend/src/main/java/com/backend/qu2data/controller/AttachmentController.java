@@ -3,31 +3,234 @@ package com.backend.qu2data.controller;
 
 import com.backend.qu2data.entites.Attachment;
 import com.backend.qu2data.service.AttachmentService;
+import com.backend.qu2data.service.BlobMigrationService;
+import com.backend.qu2data.service.FileStorageService;
+import com.backend.qu2data.service.ThumbnailService;
+
+import jakarta.servlet.http.HttpServletRequest;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/attachments")
 public class AttachmentController {
 
+    // Attributs Tomcat : le connecteur envoie le fichier lui-même (sendfile), sans passer par le heap
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // 🔒 Seuls ces types s'affichent dans le navigateur ; le reste (HTML, SVG, JS...) est téléchargé
+    private static final List<MediaType> INLINE_TYPES = List.of(
+        MediaType.IMAGE_PNG,
+        MediaType.IMAGE_JPEG,
+        MediaType.IMAGE_GIF,
+        MediaType.parseMediaType("image/webp"),
+        MediaType.parseMediaType("image/bmp"),
+        MediaType.APPLICATION_PDF,
+        MediaType.parseMediaType("audio/*"),
+        MediaType.parseMediaType("video/*")
+    );
+
     @Autowired
     private AttachmentService attachmentService;
 
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private BlobMigrationService blobMigrationService;
+
     @GetMapping
     public List<Attachment> getAllAttachments() {
         return attachmentService.getAllAttachments();
     }
 
-    @PostMapping
-    public Attachment saveAttachment(@RequestBody Attachment attachment) {
-        return attachmentService.saveAttachment(attachment);
+    /**
+     * 📥 Contenu d'une pièce jointe.
+     * ETag fort (SHA-256) + Last-Modified : 304 si le client a déjà la bonne version.
+     * Sans en-tête Range, le fichier part par sendfile quand Tomcat le permet ; sinon Spring
+     * sert la ressource en flux et gère les requêtes Range (reprise, lecture vidéo).
+     * Avec storage.backend=s3, redirection 302 vers une URL présignée du bucket.
+     * Le type vient de l'uploader : hors liste blanche, servi en application/octet-stream et en téléchargement.
+     */
+    @GetMapping("/{id}/content")
+    public ResponseEntity<Resource> getAttachmentContent(
+        @PathVariable Integer id,
+        WebRequest webRequest,
+        HttpServletRequest request
+    ) throws IOException {
+        Optional<Attachment> found = attachmentService.getAttachment(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Attachment attachment = found.get();
+        return serve(attachment.getPath(), attachment.getChecksum(), mediaTypeOf(attachment), displayName(attachment), webRequest, request);
+    }
+
+    // 🖼️ Miniature d'une image jointe (404 tant qu'elle n'est pas prête, ou si elle est impossible)
+    @GetMapping("/{id}/thumbnail")
+    public ResponseEntity<Resource> getAttachmentThumbnail(
+        @PathVariable Integer id,
+        WebRequest webRequest,
+        HttpServletRequest request
+    ) throws IOException {
+        Optional<Attachment> found = attachmentService.getAttachment(id);
+        if (found.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Attachment attachment = found.get();
+        if (attachment.getThumbnailPath() == null) {
+            thumbnailService.scheduleAfterCommit(attachment); // relance si la file était pleine ; sans effet si déjà en cours ou en échec
+            return ResponseEntity.notFound().build();
+        }
+        MediaType type = attachment.getThumbnailPath().endsWith(".png") ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+        String etag = attachment.getChecksum() != null ? attachment.getChecksum() + "-thumb" : null;
+        return serve(attachment.getThumbnailPath(), etag, type, "thumb-" + displayName(attachment), webRequest, request);
+    }
+
+    private ResponseEntity<Resource> serve(
+        String storedPath,
+        String checksum,
+        MediaType contentType,
+        String filename,
+        WebRequest webRequest,
+        HttpServletRequest request
+    ) throws IOException {
+        Optional<Path> local;
+        try {
+            local = fileStorageService.localFile(storedPath);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build(); // 🔒 chemin hors du stockage : jamais servi
+        }
+        boolean inline = isInlineSafe(contentType);
+        MediaType servedType = inline ? contentType : MediaType.APPLICATION_OCTET_STREAM;
+        ContentDisposition disposition = (inline ? ContentDisposition.inline() : ContentDisposition.attachment())
+            .filename(filename, StandardCharsets.UTF_8)
+            .build();
+        if (local.isEmpty()) {
+            return redirect(storedPath, checksum, servedType, disposition, webRequest);
+        }
+        Path file = local.get();
+        if (!Files.isRegularFile(file)) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = "\"" + (checksum != null
+            ? checksum
+            : Long.toHexString(length) + "-" + Long.toHexString(lastModified)) + "\"";
+
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return null; // 304 déjà préparé par Spring
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(servedType);
+        headers.setContentDisposition(disposition);
+        headers.set("X-Content-Type-Options", "nosniff");
+        headers.setCacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePrivate());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (request.getHeader(HttpHeaders.RANGE) == null && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            headers.setContentLength(length);
+            return new ResponseEntity<>(headers, HttpStatus.OK);
+        }
+
+        return ResponseEntity.ok().headers(headers).body(new FileSystemResource(file));
+    }
+
+    // 🔗 Stockage S3 : le client télécharge directement depuis le bucket via une URL signée et courte
+    private ResponseEntity<Resource> redirect(
+        String storedPath,
+        String checksum,
+        MediaType contentType,
+        ContentDisposition disposition,
+        WebRequest webRequest
+    ) {
+        if (checksum != null && webRequest.checkNotModified("\"" + checksum + "\"")) {
+            return null;
+        }
+        Optional<String> url = fileStorageService.presignedUrl(storedPath, disposition.toString(), contentType.toString());
+        if (url.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+        return ResponseEntity.status(HttpStatus.FOUND)
+            .location(URI.create(url.get()))
+            .cacheControl(CacheControl.noStore()) // l'URL expire
+            .build();
+    }
+
+    // 📎 Le contenu passe par le moteur de stockage : chemin, empreinte et miniature ne viennent jamais du client
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Attachment> saveAttachment(@ModelAttribute AttachmentUploadDto upload) {
+        if (upload.getMessageId() == null || upload.getFile() == null || upload.getFile().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        return attachmentService.addToMessage(upload.getMessageId(), upload.getFile())
+            .map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
     public void deleteAttachment(@PathVariable Integer id) {
         attachmentService.deleteAttachment(id);
     }
+
+    // 🔁 Reprise des anciens fichiers uploads/ vers le stockage configuré
+    @PostMapping("/storage/migrate")
+    public ResponseEntity<Map<String, Integer>> migrateStorage() {
+        try {
+            return ResponseEntity.ok(blobMigrationService.migrate());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    private static MediaType mediaTypeOf(Attachment attachment) {
+        try {
+            return MediaType.parseMediaType(attachment.getType());
+        } catch (Exception e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    private static boolean isInlineSafe(MediaType type) {
+        return INLINE_TYPES.stream().anyMatch(allowed -> allowed.includes(type));
+    }
+
+    // "uuid_rapport.pdf" -> "rapport.pdf"
+    private static String displayName(Attachment attachment) {
+        String name = attachment.getName();
+        int separator = name.indexOf('_');
+        return separator == 36 ? name.substring(separator + 1) : name;
+    }
 }
@@ -0,0 +1,25 @@
+package com.backend.qu2data.controller;
+
+import org.springframework.web.multipart.MultipartFile;
+
+// Formulaire multipart de POST /api/attachments : le fichier et le message auquel il est joint
+public class AttachmentUploadDto {
+    private Long messageId;
+    private MultipartFile file;
+
+    public Long getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(Long messageId) {
+        this.messageId = messageId;
+    }
+
+    public MultipartFile getFile() {
+        return file;
+    }
+
+    public void setFile(MultipartFile file) {
+        this.file = file;
+    }
+}
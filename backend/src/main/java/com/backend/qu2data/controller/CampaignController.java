@@ -0,0 +1,51 @@
+package com.backend.qu2data.controller;
+
+import com.backend.qu2data.entites.CampaignJob;
+import com.backend.qu2data.service.CampaignService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/campaigns")
+@CrossOrigin
+public class CampaignController {
+
+    @Autowired
+    private CampaignService campaignService;
+
+    // 📣 Lance une campagne ; filtres optionnels : statut, secteur, pays, gestionnaire
+    @PostMapping
+    public ResponseEntity<CampaignJob> start(@RequestBody(required = false) CampaignJob filters) {
+        CampaignJob job = campaignService.start(filters != null ? filters : new CampaignJob());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping
+    public List<CampaignJob> getAll() {
+        return campaignService.getJobs();
+    }
+
+    // Avancement : status, processedProspects / totalProspects, createdActions, queuedEmails
+    @GetMapping("/{id}")
+    public ResponseEntity<CampaignJob> getStatus(@PathVariable Long id) {
+        return campaignService.getJob(id)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<?> cancel(@PathVariable Long id) {
+        try {
+            return campaignService.cancel(id)
+                ? ResponseEntity.ok("⛔ Campagne annulée")
+                : ResponseEntity.status(HttpStatus.CONFLICT).body("Campagne déjà terminée");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.backend.qu2data.controller;
+
+import com.backend.qu2data.entites.EmailTemplate;
+import com.backend.qu2data.entites.Prospect;
+import com.backend.qu2data.model.RenderedEmail;
+import com.backend.qu2data.repository.ProspectRepository;
+import com.backend.qu2data.service.EmailTemplateService;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/email-templates")
+@CrossOrigin
+public class EmailTemplateController {
+
+    @Autowired
+    private EmailTemplateService emailTemplateService;
+
+    @Autowired
+    private ProspectRepository prospectRepository;
+
+    @GetMapping
+    public List<EmailTemplate> getAll() {
+        return emailTemplateService.findAll();
+    }
+
+    @GetMapping("/{code}")
+    public ResponseEntity<?> getByCode(@PathVariable String code) {
+        try {
+            return ResponseEntity.ok(emailTemplateService.findByCode(code));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PutMapping("/{code}")
+    public ResponseEntity<?> save(@PathVariable String code, @RequestBody EmailTemplate template) {
+        try {
+            return ResponseEntity.ok(emailTemplateService.save(code, template));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * 👁️ Aperçu du rendu : variables d'un prospect existant (prospectId) complétées
+     * ou remplacées par celles du corps de la requête.
+     */
+    @PostMapping("/{code}/preview")
+    public ResponseEntity<?> preview(
+        @PathVariable String code,
+        @RequestParam(required = false) Long prospectId,
+        @RequestBody(required = false) Map<String, Object> variables
+    ) {
+        Map<String, Object> vars = new HashMap<>();
+        if (prospectId != null) {
+            Optional<Prospect> prospect = prospectRepository.findById(prospectId);
+            if (prospect.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            vars.putAll(EmailTemplateService.variablesFor(prospect.get()));
+        }
+        if (variables != null) {
+            vars.putAll(variables);
+        }
+        try {
+            RenderedEmail rendered = emailTemplateService.render(code, vars);
+            return ResponseEntity.ok(rendered);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package com.backend.qu2data.controller;
 
+import com.backend.qu2data.model.MessageEvent;
+
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class GroupMessageDTO {
     private Long id;           // ✅ Long
@@ -9,6 +13,7 @@ public class GroupMessageDTO {
     private String lastName;
     private String content;
     private LocalDateTime timestamp;
+    private List<MessageEvent.AttachmentMeta> attachments = new ArrayList<>();
 
     public GroupMessageDTO() {}
 
@@ -29,4 +34,7 @@ public class GroupMessageDTO {
 
     public LocalDateTime getTimestamp() { return timestamp; }
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+
+    public List<MessageEvent.AttachmentMeta> getAttachments() { return attachments; }
+    public void setAttachments(List<MessageEvent.AttachmentMeta> attachments) { this.attachments = attachments; }
 }
@@ -1,5 +1,6 @@
 package com.backend.qu2data.controller;
 
+import com.backend.qu2data.config.CurrentUser;
 import com.backend.qu2data.entites.Attachment;
 import com.backend.qu2data.entites.Group;
 
@@ -7,6 +8,7 @@ import com.backend.qu2data.entites.UserChatDto;
 
 import com.backend.qu2data.entites.Message;
 import com.backend.qu2data.entites.MessageDto;
+import com.backend.qu2data.entites.MessagePage;
 import com.backend.qu2data.entites.Users;
 import com.backend.qu2data.repository.MessageRepository;
 import com.backend.qu2data.repository.UsersRepository;
@@ -14,18 +16,24 @@ import com.backend.qu2data.service.FileStorageService;
 import com.backend.qu2data.service.GroupService;
 import com.backend.qu2data.service.KeycloakService;
 import com.backend.qu2data.service.MessageService;
+import com.backend.qu2data.service.UserProfileCache;
+import com.backend.qu2data.model.MessageEvent;
+import com.backend.qu2data.model.UserProfile;
 
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 
 @RestController
@@ -41,6 +49,8 @@ public class MessageController {
     @Autowired
     private KeycloakService keycloakService;
     @Autowired
+    private UserProfileCache userProfileCache;
+    @Autowired
     public MessageController(UsersRepository usersRepository, MessageService messageService,
             MessageRepository messageRepository, GroupService groupService) {
 this.usersRepository = usersRepository;
@@ -56,13 +66,24 @@ this.groupService = groupService; // <-- ✅ ici sans majuscule
     }
     @GetMapping("/conversation-users")
     public ResponseEntity<List<UserChatDto>> getConversationUsers(
-            @RequestParam Long currentUserId,
-            @RequestHeader("Authorization") String authorizationHeader) {
-
-        List<UserChatDto> userDtos = messageService.findConversationUserDtos(currentUserId, authorizationHeader.replace("Bearer ", ""));
+        @CurrentUser Users me,
+        @RequestParam(required = false) Long currentUserId
+    ) {
+        List<UserChatDto> userDtos = messageService.findConversationUserDtos(user(me, currentUserId).getId());
         return ResponseEntity.ok(userDtos);
     }
 
+    // 📥 Conversations privées et de groupe triées par dernier message (paginé)
+    @GetMapping("/inbox")
+    public ResponseEntity<List<Map<String, Object>>> getInbox(
+        @CurrentUser Users me,
+        @RequestParam(required = false) Long currentUserId,
+        @RequestParam(defaultValue = "0") int offset,
+        @RequestParam(defaultValue = "50") int limit
+    ) {
+        return ResponseEntity.ok(messageService.getInbox(user(me, currentUserId).getId(), offset, limit));
+    }
+
    /* @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> createMessageWithAttachment(
             @RequestParam("content") String content,
@@ -138,47 +159,72 @@ this.groupService = groupService; // <-- ✅ ici sans majuscule
         List<Group> groups = groupService.getGroupsForUser(userId);
         return ResponseEntity.ok(groups);
     }
+    // ✅ Sans limit/before/after : historique complet (ancien comportement)
+    // ✅ Avec limit/before/after : page par curseur, du plus récent au plus ancien
     @GetMapping("/between-users")
-    public List<Message> getMessagesBetweenUsers(@RequestParam Integer user1, @RequestParam Integer user2) {
-        return messageService.getMessagesBetweenUsers(user1, user2);
+    public ResponseEntity<?> getMessagesBetweenUsers(
+        @RequestParam Integer user1,
+        @RequestParam Integer user2,
+        @RequestParam(required = false) Long before,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTimestamp,
+        @RequestParam(required = false) Long after,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+        @RequestParam(required = false) Integer limit
+    ) {
+        if (limit == null && before == null && after == null) {
+            return ResponseEntity.ok(messageService.getMessagesBetweenUsers(user1, user2));
+        }
+        MessagePage<Message> page = messageService.getMessagesBetweenUsers(
+            user1, user2, before, beforeTimestamp, after, afterTimestamp, limit != null ? limit : 0);
+        return ResponseEntity.ok(page);
     }
     @GetMapping("/group/{groupId}")
-    public ResponseEntity<List<GroupMessageDTO>> getMessagesByGroup(
+    public ResponseEntity<?> getMessagesByGroup(
         @PathVariable Integer groupId,
-        @RequestHeader("Authorization") String authorizationHeader
+        @RequestParam(required = false) Long before,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTimestamp,
+        @RequestParam(required = false) Long after,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime afterTimestamp,
+        @RequestParam(required = false) Integer limit
     ) {
-        // ✅ Extraire le token Bearer sans le mot "Bearer "
-        String token = authorizationHeader.replace("Bearer ", "");
+        if (limit == null && before == null && after == null) {
+            // ✅ Récupérer les messages du groupe
+            List<Message> messages = messageRepository.findByGroup_IdOrderByTimestampAsc(groupId);
+            return ResponseEntity.ok(toGroupMessageDtos(messages));
+        }
+
+        MessagePage<Message> page = messageService.getGroupMessages(
+            groupId, before, beforeTimestamp, after, afterTimestamp, limit != null ? limit : 0);
+        return ResponseEntity.ok(page.map(messages -> toGroupMessageDtos(messages)));
+    }
 
-        // ✅ Récupérer les messages du groupe
-        List<Message> messages = messageRepository.findByGroup_IdOrderByTimestampAsc(groupId);
+    private List<GroupMessageDTO> toGroupMessageDtos(List<Message> messages) {
+        // ✅ Profils des expéditeurs résolus en une fois (IDs dédoublonnés + cache)
+        Map<String, UserProfile> profiles = userProfileCache.getAll(messages.stream()
+            .map(Message::getSentBy)
+            .filter(Objects::nonNull)
+            .map(Users::getIdKeycloak)
+            .toList());
 
         // ✅ Mapper les messages en DTO enrichi avec les infos Keycloak
-        List<GroupMessageDTO> dtos = messages.stream().map(message -> {
+        return messages.stream().map(message -> {
             GroupMessageDTO dto = new GroupMessageDTO();
             dto.setId(message.getId());
             dto.setContent(message.getContent());
             dto.setTimestamp(message.getTimestamp());
+            dto.setAttachments(message.getAttachments().stream().map(MessageEvent.AttachmentMeta::from).toList());
 
             Users sender = message.getSentBy();
             if (sender != null) {
                 dto.setSenderId(sender.getId());
 
-                // 🔥 Appeler Keycloak pour récupérer firstName et lastName dynamiquement
-                Map<String, Object> keycloakUser = keycloakService.getUserById(sender.getIdKeycloak(), token);
-
-                String firstName = (String) keycloakUser.get("firstName");
-                String lastName = (String) keycloakUser.get("lastName");
-
-                // 🔥 Si Keycloak n'a pas de prénom/nom, fallback propre
-                dto.setFirstName(firstName != null ? firstName : "Inconnu");
-                dto.setLastName(lastName != null ? lastName : "Utilisateur");
+                UserProfile profile = profiles.getOrDefault(sender.getIdKeycloak(), UserProfile.unknown(sender.getIdKeycloak()));
+                dto.setFirstName(profile.getFirstName());
+                dto.setLastName(profile.getLastName());
             }
 
             return dto;
         }).toList();
-
-        return ResponseEntity.ok(dtos);
     }
 
 
@@ -198,11 +244,9 @@ this.groupService = groupService; // <-- ✅ ici sans majuscule
         @RequestParam(value = "file", required = false) MultipartFile file
     ) {
         try {
+            // ✅ Le message est diffusé via l'outbox, après commit
             Message message = messageService.sendMessageToGroupWithFile(content, senderId, groupId, file);
 
-            // ✅ Envoi du message via WebSocket (temps réel)
-            webSocketMessageController.notifyGroupMessage(groupId, message);
-
             return ResponseEntity.ok(message);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error: " + e.getMessage());
@@ -223,32 +267,61 @@ this.groupService = groupService; // <-- ✅ ici sans majuscule
         return messageService.getUnreadGroupMessages(currentUserId);
     }
     @PutMapping("/mark-read/private")
-    public ResponseEntity<Void> markPrivateAsRead(@RequestParam Long currentUserId, @RequestParam String otherUserKeycloakId) {
-        messageService.updatePrivateLastRead(currentUserId, otherUserKeycloakId);
+    public ResponseEntity<Void> markPrivateAsRead(
+        @CurrentUser Users me,
+        @RequestParam(required = false) Long currentUserId,
+        @RequestParam String otherUserKeycloakId
+    ) {
+        messageService.updatePrivateLastRead(user(me, currentUserId), otherUserKeycloakId);
         return ResponseEntity.ok().build();
     }
 
     @PutMapping("/mark-read/group")
-    public ResponseEntity<Void> markGroupAsRead(@RequestParam Long currentUserId, @RequestParam Integer groupId) {
-        messageService.updateGroupLastRead(currentUserId, groupId);
+    public ResponseEntity<Void> markGroupAsRead(
+        @CurrentUser Users me,
+        @RequestParam(required = false) Long currentUserId,
+        @RequestParam Integer groupId
+    ) {
+        messageService.updateGroupLastRead(user(me, currentUserId), groupId);
         return ResponseEntity.ok().build();
     }
     @PutMapping("/mark-as-seen")
-    public ResponseEntity<Void> markMessagesAsSeen(
-        @RequestParam Long currentUserId,
-        @RequestParam Long otherUserId
+    public ResponseEntity<Map<String, Integer>> markMessagesAsSeen(
+        @CurrentUser Users me,
+        @RequestParam(required = false) Long currentUserId,
+        @RequestParam Long otherUserId,
+        @RequestParam(required = false) Long upToMessageId
     ) {
-        messageService.markMessagesAsSeen(currentUserId, otherUserId);
-        return ResponseEntity.ok().build();
+        int marked = messageService.markMessagesAsSeen(user(me, currentUserId).getId(), otherUserId, upToMessageId);
+        return ResponseEntity.ok(Map.of("marked", marked));
     }
   
+    // 👁️ Pointeurs de lecture de la conversation (vu = id <= pointeur)
+    @GetMapping("/read-state")
+    public ResponseEntity<Map<String, Long>> getReadState(
+        @CurrentUser Users me,
+        @RequestParam(required = false) Long currentUserId,
+        @RequestParam Long otherUserId
+    ) {
+        return ResponseEntity.ok(messageService.getReadState(user(me, currentUserId).getId(), otherUserId));
+    }
+
     @GetMapping("/unseen-sent/{currentUserId}")
     public ResponseEntity<Map<Long, Integer>> getMyUnseenSentMessages(@PathVariable Long currentUserId) {
         Map<Long, Integer> unseenSent = messageService.findMyUnseenMessagesByReceivers(currentUserId);
         return ResponseEntity.ok(unseenSent);
     }
 
-
+    /**
+     * 👤 Utilisateur de la requête : toujours celui du JWT. Le paramètre currentUserId n'est plus
+     * nécessaire ; encore accepté pour les anciens clients, il doit alors désigner l'utilisateur connecté.
+     */
+    private static Users user(Users me, Long currentUserId) {
+        if (currentUserId != null && !currentUserId.equals(me.getId())) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "currentUserId ne correspond pas à l'utilisateur connecté");
+        }
+        return me;
+    }
 }
     //////code htha shih 
 
@@ -0,0 +1,84 @@
+package com.backend.qu2data.controller;
+
+import com.backend.qu2data.model.OfferBatchRequest;
+import com.backend.qu2data.model.OfferDocument;
+import com.backend.qu2data.service.EmailService;
+import com.backend.qu2data.service.OfferService;
+import com.backend.qu2data.service.PdfService;
+import com.itextpdf.text.DocumentException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/offers")
+@CrossOrigin
+public class OfferController {
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private OfferService offerService;
+
+    @Autowired
+    private EmailService emailService;
+
+    // 📄 Offre PDF écrite directement dans la réponse HTTP
+    @PostMapping(value = "/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<StreamingResponseBody> download(@RequestBody OfferDocument offer) {
+        return stream(offer);
+    }
+
+    // 📄 Même chose, destinataire repris du prospect ; le corps porte l'introduction et les lignes
+    @PostMapping(value = "/prospects/{prospectId}/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
+    public ResponseEntity<StreamingResponseBody> downloadForProspect(
+            @PathVariable Long prospectId,
+            @RequestBody(required = false) OfferDocument template) {
+        return offerService.offerFor(prospectId, template != null ? template : new OfferDocument())
+            .map(this::stream)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    // 📧 Offre envoyée par email (PDF en pièce jointe, via l'outbox)
+    @PostMapping("/send")
+    public ResponseEntity<?> send(@RequestBody OfferDocument offer) {
+        try {
+            emailService.sendOfferDocument(offer);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body("📨 Offre mise en file d'envoi");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 📧 Même offre pour une liste de prospects, générée en parallèle sur un pool borné
+    @PostMapping("/batch")
+    public Map<String, Integer> sendBatch(@RequestBody OfferBatchRequest request) {
+        return offerService.sendToProspects(request.getProspectIds(), request.getOffer());
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(OfferDocument offer) {
+        String filename = "offre-" + (offer.getCompany() != null && !offer.getCompany().isBlank() ? offer.getCompany() : "qu2data") + ".pdf";
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(filename, StandardCharsets.UTF_8).build().toString())
+            .contentType(MediaType.APPLICATION_PDF)
+            .body(out -> {
+                try {
+                    pdfService.writeOfferPdf(offer, out);
+                } catch (DocumentException e) {
+                    throw new IOException("Erreur génération de l'offre PDF", e);
+                }
+            });
+    }
+}
@@ -3,6 +3,7 @@ package com.backend.qu2data.controller;
 import com.backend.qu2data.entites.Users;
 import com.backend.qu2data.repository.UsersRepository;
 import com.backend.qu2data.service.KeycloakService;
+import com.backend.qu2data.service.UserDirectorySync;
 import com.backend.qu2data.service.UsersService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,6 +29,9 @@ public class TestCont {
     @Autowired
     private UsersRepository usersRepository;
 
+    @Autowired
+    private UserDirectorySync userDirectorySync;
+
     private static final Logger logger = LoggerFactory.getLogger(TestCont.class);
 
     // ✅ Créer un utilisateur
@@ -62,34 +66,23 @@ public class TestCont {
         }
     }
 
-    // ✅ Récupérer tous les utilisateurs
+    // ✅ Récupérer tous les utilisateurs (copie locale de l'annuaire Keycloak, une seule requête)
     @GetMapping("/all-users")
     public ResponseEntity<List<Map<String, Object>>> getAllUsers() {
         try {
-            List<UserRepresentation> keycloakUsers = keycloakService.getUsersFromKeycloak();
             List<Map<String, Object>> combinedUsers = new ArrayList<>();
 
-            for (UserRepresentation keycloakUser : keycloakUsers) {
+            for (Users user : usersRepository.findDirectory()) {
                 Map<String, Object> userMap = new HashMap<>();
-                userMap.put("id", keycloakUser.getId());
-                userMap.put("username", keycloakUser.getUsername());
-                userMap.put("email", keycloakUser.getEmail());
-                userMap.put("firstName", keycloakUser.getFirstName());
-                userMap.put("lastName", keycloakUser.getLastName());
-
-                Optional<Users> postgresUser = usersRepository.findByIdKeycloak(keycloakUser.getId());
-                if (postgresUser.isPresent()) {
-                    userMap.put("jobTitle", postgresUser.get().getJobTitle());
-                    userMap.put("phoneNumber", postgresUser.get().getPhoneNumber());
-                    userMap.put("postgresId", postgresUser.get().getId()); // ✅ AJOUTÉ
-                } else {
-                    userMap.put("jobTitle", "N/A");
-                    userMap.put("phoneNumber", "N/A");
-                    userMap.put("postgresId", null); // ✅ Pour éviter undefined côté front
-                }
-
-                Set<String> roles = keycloakService.getUserRoles(keycloakUser.getId());
-                userMap.put("roles", String.join(", ", roles));
+                userMap.put("id", user.getIdKeycloak());
+                userMap.put("username", user.getUsername());
+                userMap.put("email", user.getEmail());
+                userMap.put("firstName", user.getFirstName());
+                userMap.put("lastName", user.getLastName());
+                userMap.put("jobTitle", user.getJobTitle() != null ? user.getJobTitle() : "N/A");
+                userMap.put("phoneNumber", user.getPhoneNumber() != null ? user.getPhoneNumber() : "N/A");
+                userMap.put("postgresId", user.getId());
+                userMap.put("roles", user.getRoles() != null ? user.getRoles().replace(",", ", ") : "");
 
                 combinedUsers.add(userMap);
             }
@@ -100,6 +93,23 @@ public class TestCont {
         }
     }
 
+    // 🔁 Synchronisation immédiate de l'annuaire Keycloak (sinon toutes les keycloak.sync.interval-ms)
+    @PostMapping("/sync")
+    public ResponseEntity<?> syncDirectory() {
+        try {
+            Map<String, Integer> result = userDirectorySync.syncAll();
+            if (result.isEmpty()) {
+                return ResponseEntity.status(409).body(Map.of("message", "Synchronisation déjà en cours"));
+            }
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.status(502).body(Map.of(
+                "message", "Erreur lors de la synchronisation avec Keycloak",
+                "error", e.getMessage()
+            ));
+        }
+    }
+
 
     // ✅ (MODIFIÉ) Récupérer un utilisateur PostgreSQL via id_keycloak
     @GetMapping("/user/by-keycloak/{idKeycloak}")
@@ -1,29 +1,47 @@
 package com.backend.qu2data.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import com.backend.qu2data.entites.Message;
+import com.backend.qu2data.model.MessageEvent;
+import com.backend.qu2data.service.MessageOutboxService;
 
+import java.util.Map;
+
+/**
+ * Notifications temps réel. Elles passent par l'outbox : à appeler dans la transaction
+ * de l'envoi, la diffusion STOMP est faite après commit par MessageOutboxDispatcher.
+ * Les messages sont publiés sous forme de {@link MessageEvent}, jamais l'entité JPA.
+ */
 @Controller
 public class WebSocketMessageController {
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MessageOutboxService messageOutboxService;
 
     // 🔔 Pour notifier un utilisateur qu’il a reçu un message privé
     public void notifyPrivateMessage(Long receiverId, Message message) {
-        messagingTemplate.convertAndSend("/topic/user/" + receiverId, message);
+        messageOutboxService.enqueue("/topic/user/" + receiverId, MessageEvent.from(message));
     }
 
     // 🔔 Pour notifier un groupe qu’un message a été envoyé
     public void notifyGroupMessage(Integer groupId, Message message) {
-        messagingTemplate.convertAndSend("/topic/group/" + groupId, message);
+        messageOutboxService.enqueue("/topic/group/" + groupId, MessageEvent.from(message));
     }
  // 🔔 Pour envoyer juste une notification (sans envoyer tout l'objet Message)
     public void sendPrivateNotification(Long receiverId, String notificationMessage) {
-        messagingTemplate.convertAndSend("/topic/notification/user/" + receiverId, notificationMessage);
+        messageOutboxService.enqueue("/topic/notification/user/" + receiverId, notificationMessage);
+    }
+
+    // 👁️ Accusé de lecture : l'expéditeur apprend que ses messages ont été vus
+    public void sendReadReceipt(Long senderId, Map<String, Object> receipt) {
+        messageOutboxService.enqueue("/topic/read-receipt/user/" + senderId, receipt);
+    }
+
+    // ⏰ Rappel d'action ou de rendez-vous arrivé à échéance
+    public void sendReminder(Long userId, Map<String, Object> reminder) {
+        messageOutboxService.enqueue("/topic/reminder/user/" + userId, reminder);
     }
 
 }
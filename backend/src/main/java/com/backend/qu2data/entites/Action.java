@@ -8,10 +8,17 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
 
 @Entity
+@Table(name = "action", indexes = {
+    // Fenêtres de rappels (ReminderService)
+    @Index(name = "idx_action_date_rappel", columnList = "date_rappel"),
+    @Index(name = "idx_action_date_echeance", columnList = "date_echeance")
+})
 public class Action {
 
     @Id
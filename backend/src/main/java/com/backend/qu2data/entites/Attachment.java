@@ -1,5 +1,7 @@
 package com.backend.qu2data.entites;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import jakarta.persistence.Column;
 
 
@@ -31,6 +33,15 @@ public class Attachment {
     @Column(name = "path", nullable = false)
     private String path;
 
+    @Column(name = "checksum", length = 64)
+    private String checksum; // SHA-256 (hex) calculé pendant l'écriture du fichier
+
+    @Column(name = "thumbnail_path")
+    private String thumbnailPath; // miniature générée en arrière-plan (images), null sinon
+
+    @Column(name = "thumbnail_failed")
+    private Boolean thumbnailFailed; // image illisible ou trop grande : miniature jamais retentée
+
    
 
 	public Integer getId() {
@@ -72,6 +83,32 @@ public class Attachment {
 	public void setPath(String path) {
 		this.path = path;
 	}
+
+	public String getChecksum() {
+		return checksum;
+	}
+
+	public void setChecksum(String checksum) {
+		this.checksum = checksum;
+	}
+
+	public String getThumbnailPath() {
+		return thumbnailPath;
+	}
+
+	public void setThumbnailPath(String thumbnailPath) {
+		this.thumbnailPath = thumbnailPath;
+	}
+
+	public Boolean getThumbnailFailed() {
+		return thumbnailFailed;
+	}
+
+	public void setThumbnailFailed(Boolean thumbnailFailed) {
+		this.thumbnailFailed = thumbnailFailed;
+	}
+	// ✅ jamais sérialisé (boucle Message -> attachments -> message), mais toujours accepté en entrée
+	@JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
 	@ManyToOne
 	@JoinColumn(name = "message_id", referencedColumnName = "id", nullable = false)
 	private Message message;
@@ -1,19 +1,37 @@
 package com.backend.qu2data.entites;
 
+import java.nio.file.Path;
+
+/**
+ * Pièce jointe d'un email sortant, déjà sur disque (voir MailAttachmentStore) :
+ * seul le chemin circule, le contenu n'est jamais chargé en mémoire.
+ */
 public class AttachmentDTO {
     private String filename;
-    private byte[] fileBytes;
+    private Path path;
+    private String contentType;
+    private long size;
 
-    public AttachmentDTO(String filename, byte[] fileBytes) {
+    public AttachmentDTO(String filename, Path path, String contentType, long size) {
         this.filename = filename;
-        this.fileBytes = fileBytes;
+        this.path = path;
+        this.contentType = contentType;
+        this.size = size;
     }
 
     public String getFilename() {
         return filename;
     }
 
-    public byte[] getFileBytes() {
-        return fileBytes;
+    public Path getPath() {
+        return path;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public long getSize() {
+        return size;
     }
 }
@@ -0,0 +1,221 @@
+package com.backend.qu2data.entites;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Campagne : application de toutes les actions programmables à un ensemble filtré de prospects.
+ * Le traitement avance par lots (id de prospect croissant) ; lastProspectId est validé avec
+ * chaque lot, ce qui permet de reprendre exactement où l'on s'était arrêté après un redémarrage.
+ * Les actions modèles sont figées à la création (templateIds) : une reprise applique les mêmes.
+ */
+@Entity
+@Table(name = "campaign_jobs", indexes = {
+    @Index(name = "idx_campaign_jobs_status", columnList = "status")
+})
+public class CampaignJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    // --- Filtres (null = pas de filtre) ---
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "statut_filter", length = 32)
+    private Prospect.Statut statut;
+
+    @Column(name = "secteur_filter")
+    private String secteur;
+
+    @Column(name = "pays_filter")
+    private String pays;
+
+    @Column(name = "gestionnaire_filter")
+    private String gestionnaire;
+
+    @ElementCollection
+    @CollectionTable(name = "campaign_job_templates", joinColumns = @JoinColumn(name = "job_id"))
+    @Column(name = "action_id", nullable = false)
+    private List<Long> templateIds = new ArrayList<>();
+
+    // --- Avancement ---
+
+    @Column(name = "last_prospect_id", nullable = false)
+    private Long lastProspectId = 0L;
+
+    @Column(name = "total_prospects")
+    private Long totalProspects;
+
+    @Column(name = "processed_prospects", nullable = false)
+    private Long processedProspects = 0L;
+
+    @Column(name = "created_actions", nullable = false)
+    private Long createdActions = 0L;
+
+    @Column(name = "queued_emails", nullable = false)
+    private Long queuedEmails = 0L;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETED, FAILED, CANCELLED
+    }
+
+    // --- Getters & Setters ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Prospect.Statut getStatut() {
+        return statut;
+    }
+
+    public void setStatut(Prospect.Statut statut) {
+        this.statut = statut;
+    }
+
+    public String getSecteur() {
+        return secteur;
+    }
+
+    public void setSecteur(String secteur) {
+        this.secteur = secteur;
+    }
+
+    public String getPays() {
+        return pays;
+    }
+
+    public void setPays(String pays) {
+        this.pays = pays;
+    }
+
+    public String getGestionnaire() {
+        return gestionnaire;
+    }
+
+    public void setGestionnaire(String gestionnaire) {
+        this.gestionnaire = gestionnaire;
+    }
+
+    public List<Long> getTemplateIds() {
+        return templateIds;
+    }
+
+    public void setTemplateIds(List<Long> templateIds) {
+        this.templateIds = templateIds;
+    }
+
+    public Long getLastProspectId() {
+        return lastProspectId;
+    }
+
+    public void setLastProspectId(Long lastProspectId) {
+        this.lastProspectId = lastProspectId;
+    }
+
+    public Long getTotalProspects() {
+        return totalProspects;
+    }
+
+    public void setTotalProspects(Long totalProspects) {
+        this.totalProspects = totalProspects;
+    }
+
+    public Long getProcessedProspects() {
+        return processedProspects;
+    }
+
+    public void setProcessedProspects(Long processedProspects) {
+        this.processedProspects = processedProspects;
+    }
+
+    public Long getCreatedActions() {
+        return createdActions;
+    }
+
+    public void setCreatedActions(Long createdActions) {
+        this.createdActions = createdActions;
+    }
+
+    public Long getQueuedEmails() {
+        return queuedEmails;
+    }
+
+    public void setQueuedEmails(Long queuedEmails) {
+        this.queuedEmails = queuedEmails;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getHeartbeatAt() {
+        return heartbeatAt;
+    }
+
+    public void setHeartbeatAt(LocalDateTime heartbeatAt) {
+        this.heartbeatAt = heartbeatAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
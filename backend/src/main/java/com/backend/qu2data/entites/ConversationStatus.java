@@ -4,7 +4,11 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "conversation_status")
+// Un seul pointeur par utilisateur et par conversation : cible des upserts ON CONFLICT
+@Table(name = "conversation_status", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_conversation_status_user_other", columnNames = {"user_id", "other_user_id"}),
+    @UniqueConstraint(name = "uk_conversation_status_user_group", columnNames = {"user_id", "group_id"})
+})
 public class ConversationStatus {
 
     @Id
@@ -22,6 +26,10 @@ public class ConversationStatus {
 
     private LocalDateTime lastReadAt;
 
+    // 👁️ Dernier message vu : tout message d'id <= lastSeenMessageId est considéré comme lu
+    @Column(name = "last_seen_message_id")
+    private Long lastSeenMessageId;
+
     // --- Getters & Setters ---
 
     public Long getId() {
@@ -63,4 +71,12 @@ public class ConversationStatus {
     public void setLastReadAt(LocalDateTime lastReadAt) {
         this.lastReadAt = lastReadAt;
     }
+
+    public Long getLastSeenMessageId() {
+        return lastSeenMessageId;
+    }
+
+    public void setLastSeenMessageId(Long lastSeenMessageId) {
+        this.lastSeenMessageId = lastSeenMessageId;
+    }
 }
@@ -0,0 +1,30 @@
+package com.backend.qu2data.entites;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ligne de la boîte de réception (projection de la requête native MessageRepository.findInbox).
+ * type = "user" (conversationId = id PostgreSQL de l'interlocuteur) ou "group" (conversationId = id du groupe).
+ */
+public interface InboxConversationView {
+
+    String getType();
+
+    Long getConversationId();
+
+    String getIdKeycloak();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getGroupName();
+
+    Long getLastMessageId();
+
+    String getPreview();
+
+    LocalDateTime getLastMessageTime();
+
+    Integer getUnreadCount();
+}
@@ -2,18 +2,25 @@ package com.backend.qu2data.entites;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.backend.qu2data.service.AttachmentService;
 
+import org.hibernate.annotations.BatchSize;
+
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "messages")
+@Table(name = "messages", indexes = {
+    // ✅ Index composites pour la pagination par curseur (conversation privée / groupe)
+    @Index(name = "idx_messages_sent_received_ts", columnList = "sent_by, received_by, timestamp"),
+    @Index(name = "idx_messages_group_ts", columnList = "group_id, timestamp"),
+    // 👁️ Comptage des non-lus par comparaison d'id (id > lastSeenMessageId), en index-only scan
+    @Index(name = "idx_messages_received_sent_id", columnList = "received_by, sent_by, id"),
+    @Index(name = "idx_messages_group_id_id", columnList = "group_id, id")
+})
 public class Message {
 
     @Id
@@ -54,6 +61,7 @@ public class Message {
 
     // ✅ Corrigé : une seule déclaration
     @OneToMany(mappedBy = "message", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50) // pages d'historique : pièces jointes chargées par lots, pas message par message
     private List<Attachment> attachments = new ArrayList<>();
 
 
@@ -138,13 +146,6 @@ public class Message {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
-    @ManyToMany
-    @JoinTable(
-      name = "message_seen_by",
-      joinColumns = @JoinColumn(name = "message_id"),
-      inverseJoinColumns = @JoinColumn(name = "user_id")
-    )
-    private Set<Users> seenBy = new HashSet<>();
     private String senderName;  // Field to store the sender's full name
 
     // Getters and Setters for senderName
@@ -156,13 +157,5 @@ public class Message {
         this.senderName = senderName;
     }
 
-	public Set<Users> getSeenBy() {
-		return seenBy;
-	}
-
-	public void setSeenBy(Set<Users> seenBy) {
-		this.seenBy = seenBy;
-	}
-
 }
 
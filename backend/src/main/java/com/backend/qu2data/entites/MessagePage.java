@@ -0,0 +1,73 @@
+package com.backend.qu2data.entites;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Page de messages paginée par curseur (keyset), du plus récent au plus ancien.
+ * Les curseurs "before" / "after" renvoyés permettent de charger la page suivante
+ * (messages plus anciens) ou précédente (messages plus récents).
+ */
+public class MessagePage<T> {
+
+    private List<T> messages;
+    private boolean hasMore;
+
+    // Curseur vers les messages plus anciens (dernier élément de la page)
+    private Long nextBeforeId;
+    private LocalDateTime nextBeforeTimestamp;
+
+    // Curseur vers les messages plus récents (premier élément de la page)
+    private Long nextAfterId;
+    private LocalDateTime nextAfterTimestamp;
+
+    public MessagePage() {}
+
+    public MessagePage(List<T> messages, boolean hasMore,
+                       Long nextBeforeId, LocalDateTime nextBeforeTimestamp,
+                       Long nextAfterId, LocalDateTime nextAfterTimestamp) {
+        this.messages = messages;
+        this.hasMore = hasMore;
+        this.nextBeforeId = nextBeforeId;
+        this.nextBeforeTimestamp = nextBeforeTimestamp;
+        this.nextAfterId = nextAfterId;
+        this.nextAfterTimestamp = nextAfterTimestamp;
+    }
+
+    // ✅ Construit une page à partir de messages déjà triés du plus récent au plus ancien
+    public static MessagePage<Message> of(List<Message> newestFirst, boolean hasMore) {
+        if (newestFirst.isEmpty()) {
+            return new MessagePage<>(newestFirst, false, null, null, null, null);
+        }
+        Message newest = newestFirst.get(0);
+        Message oldest = newestFirst.get(newestFirst.size() - 1);
+        return new MessagePage<>(newestFirst, hasMore,
+                oldest.getId(), oldest.getTimestamp(),
+                newest.getId(), newest.getTimestamp());
+    }
+
+    // ✅ Convertit les éléments en DTO en conservant les curseurs
+    public <R> MessagePage<R> map(Function<List<T>, List<R>> mapper) {
+        return new MessagePage<>(mapper.apply(messages), hasMore,
+                nextBeforeId, nextBeforeTimestamp, nextAfterId, nextAfterTimestamp);
+    }
+
+    public List<T> getMessages() { return messages; }
+    public void setMessages(List<T> messages) { this.messages = messages; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+
+    public Long getNextBeforeId() { return nextBeforeId; }
+    public void setNextBeforeId(Long nextBeforeId) { this.nextBeforeId = nextBeforeId; }
+
+    public LocalDateTime getNextBeforeTimestamp() { return nextBeforeTimestamp; }
+    public void setNextBeforeTimestamp(LocalDateTime nextBeforeTimestamp) { this.nextBeforeTimestamp = nextBeforeTimestamp; }
+
+    public Long getNextAfterId() { return nextAfterId; }
+    public void setNextAfterId(Long nextAfterId) { this.nextAfterId = nextAfterId; }
+
+    public LocalDateTime getNextAfterTimestamp() { return nextAfterTimestamp; }
+    public void setNextAfterTimestamp(LocalDateTime nextAfterTimestamp) { this.nextAfterTimestamp = nextAfterTimestamp; }
+}
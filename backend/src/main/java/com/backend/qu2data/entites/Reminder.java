@@ -0,0 +1,139 @@
+package com.backend.qu2data.entites;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Rappel à déclencher, matérialisé depuis Action.dateRappel / dateEcheance et Task.reminder.
+ * Une ligne par (source, type de rappel). Une instance réclame les rappels proches
+ * (owner + leaseUntil) puis les passe en SENT de façon conditionnelle au moment de l'envoi :
+ * chaque rappel part une seule fois, même avec plusieurs instances.
+ */
+@Entity
+@Table(
+    name = "reminders",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_reminders_source_kind",
+        columnNames = {"source_type", "source_id", "kind"}
+    ),
+    indexes = @Index(name = "idx_reminders_status_fire_at", columnList = "status, fire_at")
+)
+public class Reminder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "source_type", nullable = false, length = 16)
+    private SourceType sourceType;
+
+    @Column(name = "source_id", nullable = false)
+    private Long sourceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 16)
+    private Kind kind;
+
+    @Column(name = "fire_at", nullable = false)
+    private LocalDateTime fireAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(name = "owner", length = 64)
+    private String owner; // instance qui a réclamé le rappel
+
+    @Column(name = "lease_until")
+    private LocalDateTime leaseUntil;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public enum SourceType {
+        ACTION, TASK
+    }
+
+    public enum Kind {
+        RAPPEL, ECHEANCE, RENDEZVOUS
+    }
+
+    public enum Status {
+        PENDING, SENT, CANCELLED
+    }
+
+    // --- Getters & Setters ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public SourceType getSourceType() {
+        return sourceType;
+    }
+
+    public void setSourceType(SourceType sourceType) {
+        this.sourceType = sourceType;
+    }
+
+    public Long getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(Long sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public LocalDateTime getFireAt() {
+        return fireAt;
+    }
+
+    public void setFireAt(LocalDateTime fireAt) {
+        this.fireAt = fireAt;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public LocalDateTime getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(LocalDateTime leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+}
@@ -0,0 +1,59 @@
+package com.backend.qu2data.entites;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+/**
+ * Pièce jointe d'un email en attente : nom affiché et fichier du spool (mail.outbox.spool-dir).
+ * Le même fichier partagé peut être référencé par plusieurs emails (voir MailAttachmentStore).
+ */
+@Embeddable
+public class SpooledAttachment {
+
+    @Column(name = "filename", nullable = false)
+    private String filename;
+
+    @Column(name = "path", nullable = false, length = 1000)
+    private String path;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    public SpooledAttachment() {
+    }
+
+    public SpooledAttachment(String filename, String path) {
+        this.filename = filename;
+        this.path = path;
+    }
+
+    public SpooledAttachment(String filename, String path, String contentType) {
+        this.filename = filename;
+        this.path = path;
+        this.contentType = contentType;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,61 @@
+package com.backend.qu2data.entites;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Contenu de fichier stocké une seule fois sous uploads/blobs/ab/cd/{sha256}.
+ * refCount = nombre de pièces jointes (Attachment.checksum) qui pointent dessus ;
+ * le fichier est supprimé quand la dernière référence disparaît.
+ */
+@Entity
+@Table(name = "stored_blobs")
+public class StoredBlob {
+
+    @Id
+    @Column(name = "sha256", length = 64)
+    private String sha256;
+
+    @Column(name = "size", nullable = false)
+    private Long size;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // --- Getters & Setters ---
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public void setSha256(String sha256) {
+        this.sha256 = sha256;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Integer getRefCount() {
+        return refCount;
+    }
+
+    public void setRefCount(Integer refCount) {
+        this.refCount = refCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
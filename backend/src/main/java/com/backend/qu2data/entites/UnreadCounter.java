@@ -0,0 +1,96 @@
+package com.backend.qu2data.entites;
+
+import jakarta.persistence.*;
+
+/**
+ * Compteur de messages non lus par (utilisateur, conversation), maintenu à l'envoi
+ * et remis à zéro à la lecture. conversationKey vaut "u:{idAutreUtilisateur}" ou "g:{idGroupe}".
+ */
+@Entity
+@Table(
+    name = "unread_counters",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_unread_counters_user_conversation",
+        columnNames = {"user_id", "conversation_key"}
+    ),
+    indexes = @Index(name = "idx_unread_counters_other_user", columnList = "other_user_id")
+)
+public class UnreadCounter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId; // lecteur
+
+    @Column(name = "other_user_id")
+    private Long otherUserId; // expéditeur (conversation privée)
+
+    @Column(name = "group_id")
+    private Integer groupId; // groupe (conversation de groupe)
+
+    @Column(name = "conversation_key", nullable = false, length = 64)
+    private String conversationKey;
+
+    @Column(name = "unread_count", nullable = false)
+    private Integer unreadCount = 0;
+
+    public static String privateKey(Long otherUserId) {
+        return "u:" + otherUserId;
+    }
+
+    public static String groupKey(Integer groupId) {
+        return "g:" + groupId;
+    }
+
+    // --- Getters & Setters ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getOtherUserId() {
+        return otherUserId;
+    }
+
+    public void setOtherUserId(Long otherUserId) {
+        this.otherUserId = otherUserId;
+    }
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    public void setGroupId(Integer groupId) {
+        this.groupId = groupId;
+    }
+
+    public String getConversationKey() {
+        return conversationKey;
+    }
+
+    public void setConversationKey(String conversationKey) {
+        this.conversationKey = conversationKey;
+    }
+
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+}
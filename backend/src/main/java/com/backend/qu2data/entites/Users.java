@@ -2,8 +2,16 @@ package com.backend.qu2data.entites;
 
 import jakarta.persistence.*;
 
+import java.time.LocalDateTime;
+
+/**
+ * Utilisateur applicatif. username, email, noms, rôles et enabled sont une copie de l'annuaire
+ * Keycloak, tenue à jour par UserDirectorySync : les lectures n'interrogent plus Keycloak.
+ */
 @Entity
-@Table(name = "users")
+@Table(name = "users", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_users_id_keycloak", columnNames = "id_keycloak")
+})
 public class Users {
 
     @Id
@@ -33,6 +41,22 @@ public class Users {
     @Column(name = "last_name")
     private String lastName;
 
+    @Column(name = "username")
+    private String username;
+
+    @Column(name = "email")
+    private String email;
+
+    // Rôles de realm, séparés par des virgules
+    @Column(name = "roles", length = 1000)
+    private String roles;
+
+    @Column(name = "enabled")
+    private Boolean enabled;
+
+    @Column(name = "directory_synced_at")
+    private LocalDateTime directorySyncedAt;
+
     // --- Getters & Setters ---
 
     public Long getId() {
@@ -98,4 +122,44 @@ public class Users {
     public void setLastName(String lastName) {
         this.lastName = lastName;
     }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getRoles() {
+        return roles;
+    }
+
+    public void setRoles(String roles) {
+        this.roles = roles;
+    }
+
+    public Boolean getEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public LocalDateTime getDirectorySyncedAt() {
+        return directorySyncedAt;
+    }
+
+    public void setDirectorySyncedAt(LocalDateTime directorySyncedAt) {
+        this.directorySyncedAt = directorySyncedAt;
+    }
 }
@@ -0,0 +1,178 @@
+package com.backend.qu2data.model;
+
+import com.backend.qu2data.entites.Attachment;
+import com.backend.qu2data.entites.Message;
+import com.backend.qu2data.entites.UnreadCounter;
+import com.backend.qu2data.entites.Users;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Évènement temps réel diffusé sur /topic/user/{id} et /topic/group/{id} à la place de l'entité
+ * Message : champs plats uniquement, aucune relation JPA à charger ni à sérialiser.
+ * conversationKey suit la convention des compteurs ("u:{idExpéditeur}" côté destinataire, "g:{idGroupe}").
+ */
+public class MessageEvent {
+
+    private final Long id;
+    private final String type;
+    private final String conversationKey;
+    private final Long senderId;
+    private final String senderName;
+    private final Long receiverId;
+    private final Integer groupId;
+    private final String content;
+    private final List<AttachmentMeta> attachments;
+    private final LocalDateTime timestamp;
+
+    private MessageEvent(Long id, String type, String conversationKey, Long senderId, String senderName,
+                         Long receiverId, Integer groupId, String content,
+                         List<AttachmentMeta> attachments, LocalDateTime timestamp) {
+        this.id = id;
+        this.type = type;
+        this.conversationKey = conversationKey;
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.receiverId = receiverId;
+        this.groupId = groupId;
+        this.content = content;
+        this.attachments = attachments;
+        this.timestamp = timestamp;
+    }
+
+    public static MessageEvent from(Message message) {
+        Users sender = message.getSentBy();
+        Long senderId = sender != null ? sender.getId() : null;
+
+        List<AttachmentMeta> attachments = new ArrayList<>();
+        if (message.getAttachments() != null) {
+            for (Attachment attachment : message.getAttachments()) {
+                attachments.add(AttachmentMeta.from(attachment));
+            }
+        }
+
+        boolean group = message.getGroup() != null;
+        return new MessageEvent(
+            message.getId(),
+            group ? "group" : "user",
+            group ? UnreadCounter.groupKey(message.getGroup().getId()) : UnreadCounter.privateKey(senderId),
+            senderId,
+            displayName(message),
+            message.getReceivedBy() != null ? message.getReceivedBy().getId() : null,
+            group ? message.getGroup().getId() : null,
+            message.getContent(),
+            attachments,
+            message.getTimestamp()
+        );
+    }
+
+    // Nom déjà résolu à l'envoi (senderName) sinon celui stocké en base, sans appel Keycloak
+    private static String displayName(Message message) {
+        if (message.getSenderName() != null) {
+            return message.getSenderName();
+        }
+        Users sender = message.getSentBy();
+        if (sender == null || sender.getFirstName() == null || sender.getLastName() == null) {
+            return null;
+        }
+        return sender.getFirstName() + " " + sender.getLastName();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getConversationKey() {
+        return conversationKey;
+    }
+
+    public Long getSenderId() {
+        return senderId;
+    }
+
+    public String getSenderName() {
+        return senderName;
+    }
+
+    public Long getReceiverId() {
+        return receiverId;
+    }
+
+    public Integer getGroupId() {
+        return groupId;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public List<AttachmentMeta> getAttachments() {
+        return attachments;
+    }
+
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+
+    /** Métadonnées d'une pièce jointe ; le contenu et la miniature se téléchargent via /api/attachments. */
+    public static class AttachmentMeta {
+
+        private final Integer id;
+        private final String name;
+        private final String type;
+        private final Integer size;
+        private final String url;
+        private final String thumbnailUrl;
+
+        public AttachmentMeta(Integer id, String name, String type, Integer size, String url, String thumbnailUrl) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.size = size;
+            this.url = url;
+            this.thumbnailUrl = thumbnailUrl;
+        }
+
+        public static AttachmentMeta from(Attachment attachment) {
+            String base = "/api/attachments/" + attachment.getId();
+            return new AttachmentMeta(
+                attachment.getId(),
+                attachment.getName(),
+                attachment.getType(),
+                attachment.getSize(),
+                base + "/content",
+                attachment.getThumbnailPath() != null ? base + "/thumbnail" : null
+            );
+        }
+
+        public Integer getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public Integer getSize() {
+            return size;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getThumbnailUrl() {
+            return thumbnailUrl;
+        }
+    }
+}
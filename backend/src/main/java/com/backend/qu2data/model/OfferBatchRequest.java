@@ -0,0 +1,29 @@
+package com.backend.qu2data.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Envoi d'une même offre à plusieurs prospects : nom, société et email sont repris de chaque prospect.
+ */
+public class OfferBatchRequest {
+
+    private List<Long> prospectIds = new ArrayList<>();
+    private OfferDocument offer = new OfferDocument();
+
+    public List<Long> getProspectIds() {
+        return prospectIds;
+    }
+
+    public void setProspectIds(List<Long> prospectIds) {
+        this.prospectIds = prospectIds != null ? prospectIds : new ArrayList<>();
+    }
+
+    public OfferDocument getOffer() {
+        return offer;
+    }
+
+    public void setOffer(OfferDocument offer) {
+        this.offer = offer != null ? offer : new OfferDocument();
+    }
+}
@@ -0,0 +1,126 @@
+package com.backend.qu2data.model;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Contenu d'une offre commerciale rendue par PdfService : destinataire, texte d'introduction
+ * et lignes chiffrées (le tableau peut s'étendre sur plusieurs pages).
+ */
+public class OfferDocument {
+
+    private String fullName;
+    private String company;
+    private String email;
+    private String introduction;
+    private Integer validityDays = 30;
+    private List<OfferLine> lines = new ArrayList<>();
+
+    public OfferDocument() {
+    }
+
+    // Même offre pour un autre destinataire (envoi en masse)
+    public OfferDocument copyFor(String fullName, String company, String email) {
+        OfferDocument copy = new OfferDocument();
+        copy.setFullName(fullName);
+        copy.setCompany(company);
+        copy.setEmail(email);
+        copy.setIntroduction(introduction);
+        copy.setValidityDays(validityDays);
+        copy.setLines(lines);
+        return copy;
+    }
+
+    public String getFullName() {
+        return fullName;
+    }
+
+    public void setFullName(String fullName) {
+        this.fullName = fullName;
+    }
+
+    public String getCompany() {
+        return company;
+    }
+
+    public void setCompany(String company) {
+        this.company = company;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getIntroduction() {
+        return introduction;
+    }
+
+    public void setIntroduction(String introduction) {
+        this.introduction = introduction;
+    }
+
+    public Integer getValidityDays() {
+        return validityDays;
+    }
+
+    public void setValidityDays(Integer validityDays) {
+        this.validityDays = validityDays;
+    }
+
+    public List<OfferLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<OfferLine> lines) {
+        this.lines = lines != null ? lines : new ArrayList<>();
+    }
+
+    public static class OfferLine {
+
+        private String description;
+        private BigDecimal quantity = BigDecimal.ONE;
+        private BigDecimal unitPrice = BigDecimal.ZERO;
+
+        public OfferLine() {
+        }
+
+        public OfferLine(String description, BigDecimal quantity, BigDecimal unitPrice) {
+            this.description = description;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+        }
+
+        public BigDecimal getTotal() {
+            return quantity.multiply(unitPrice);
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public void setDescription(String description) {
+            this.description = description;
+        }
+
+        public BigDecimal getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(BigDecimal quantity) {
+            this.quantity = quantity != null ? quantity : BigDecimal.ONE;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+
+        public void setUnitPrice(BigDecimal unitPrice) {
+            this.unitPrice = unitPrice != null ? unitPrice : BigDecimal.ZERO;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.backend.qu2data.model;
+
+/**
+ * Email rendu à partir d'un modèle : prêt à être mis en file par EmailService.
+ */
+public class RenderedEmail {
+
+    private final String subject;
+    private final String body;
+    private final boolean html;
+
+    public RenderedEmail(String subject, String body, boolean html) {
+        this.subject = subject;
+        this.body = body;
+        this.html = html;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public boolean isHtml() {
+        return html;
+    }
+}
@@ -0,0 +1,64 @@
+package com.backend.qu2data.model;
+
+/**
+ * Profil d'affichage d'un utilisateur (nom, prénom, email) résolu depuis Keycloak
+ * et mis en cache par {@link com.backend.qu2data.service.UserProfileCache}.
+ */
+public class UserProfile {
+
+    private final String keycloakId;
+    private final String username;
+    private final String email;
+    private final String firstName;
+    private final String lastName;
+    private final boolean known;
+
+    public UserProfile(String keycloakId, String username, String email, String firstName, String lastName) {
+        this(keycloakId, username, email, firstName, lastName, true);
+    }
+
+    private UserProfile(String keycloakId, String username, String email, String firstName, String lastName, boolean known) {
+        this.keycloakId = keycloakId;
+        this.username = username;
+        this.email = email;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.known = known;
+    }
+
+    // ✅ Profil de repli quand l'utilisateur est introuvable
+    public static UserProfile unknown(String keycloakId) {
+        return new UserProfile(keycloakId, null, null, "Inconnu", "Utilisateur", false);
+    }
+
+    public String getKeycloakId() {
+        return keycloakId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public boolean isKnown() {
+        return known;
+    }
+
+    public String getFullName() {
+        if (!known || firstName == null || lastName == null) {
+            return "Unknown User";
+        }
+        return firstName + " " + lastName;
+    }
+}
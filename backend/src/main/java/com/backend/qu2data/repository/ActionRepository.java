@@ -8,5 +8,7 @@ import com.backend.qu2data.entites.Action;
 
 public interface ActionRepository extends JpaRepository<Action, Long> {
 	List<Action> findByIsProgrammableTrue();
+	// Modèles d'origine uniquement : les copies créées pour un prospect ont un parentAction
+	List<Action> findByIsProgrammableTrueAndParentActionIsNull();
 	void deleteByProspectId(Long prospectId);
 }
@@ -5,12 +5,31 @@ package com.backend.qu2data.repository;
 
 import com.backend.qu2data.entites.Attachment;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface AttachmentRepository extends JpaRepository<Attachment, Integer> {
     List<Attachment> findByMessageId(Integer messageId);
     List<Attachment> findByType(String type);
     List<Attachment> findByNameContaining(String keyword);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Attachment a SET a.thumbnailPath = :thumbnailPath WHERE a.id = :id")
+    int updateThumbnailPath(@Param("id") Integer id, @Param("thumbnailPath") String thumbnailPath);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Attachment a SET a.thumbnailFailed = true WHERE a.id = :id")
+    int markThumbnailFailed(@Param("id") Integer id);
+
+    // Pièces jointes antérieures au stockage par contenu (hors blobs/), parcourues par id croissant
+    @Query("SELECT a FROM Attachment a WHERE a.id > :afterId AND a.path NOT LIKE '/uploads/blobs/%' ORDER BY a.id")
+    List<Attachment> findLegacyStoredAfter(@Param("afterId") Integer afterId, Pageable pageable);
 }
@@ -0,0 +1,49 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.CampaignJob;
+
+import jakarta.persistence.LockModeType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface CampaignJobRepository extends JpaRepository<CampaignJob, Long> {
+
+    List<CampaignJob> findAllByOrderByIdDesc();
+
+    // Verrou pendant un lot : une annulation attend la fin du lot au lieu d'être écrasée
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM CampaignJob j WHERE j.id = :id")
+    Optional<CampaignJob> findForUpdate(@Param("id") Long id);
+
+    // 🔒 Prise en charge atomique : une seule instance exécute la campagne
+    @Modifying
+    @Query("""
+            UPDATE CampaignJob j
+            SET j.status = com.backend.qu2data.entites.CampaignJob.Status.RUNNING,
+                j.heartbeatAt = :now,
+                j.startedAt = COALESCE(j.startedAt, :now)
+            WHERE j.id = :id
+              AND (j.status = com.backend.qu2data.entites.CampaignJob.Status.PENDING
+                   OR (j.status = com.backend.qu2data.entites.CampaignJob.Status.RUNNING AND j.heartbeatAt < :staleBefore))
+        """)
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("staleBefore") LocalDateTime staleBefore);
+
+    // Campagnes à reprendre : en attente, ou en cours mais sans signe de vie (instance arrêtée)
+    @Query("""
+            SELECT j.id FROM CampaignJob j
+            WHERE j.status = com.backend.qu2data.entites.CampaignJob.Status.PENDING
+               OR (j.status = com.backend.qu2data.entites.CampaignJob.Status.RUNNING AND j.heartbeatAt < :staleBefore)
+            ORDER BY j.id
+        """)
+    List<Long> findResumable(@Param("staleBefore") LocalDateTime staleBefore);
+}
@@ -3,7 +3,11 @@ package com.backend.qu2data.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.backend.qu2data.entites.ConversationStatus;
 import com.backend.qu2data.entites.Group;
@@ -16,8 +20,146 @@ import com.backend.qu2data.entites.Users;
         Optional<ConversationStatus> findByUserAndOtherUser(Users user, Users otherUser);
         Optional<ConversationStatus> findByUserAndGroup(Users user, Group group);
 
-    }
-    
+        @Query("SELECT c.lastSeenMessageId FROM ConversationStatus c WHERE c.user.id = :userId AND c.otherUser.id = :otherUserId")
+        Long findLastSeenPrivate(@Param("userId") Long userId, @Param("otherUserId") Long otherUserId);
+
+        // 🔒 Pointeur actuel, ligne verrouillée jusqu'à la fin de la transaction (null si aucune ligne)
+        @Query(value = """
+                SELECT last_seen_message_id FROM conversation_status
+                WHERE user_id = :userId AND other_user_id = :otherUserId
+                FOR UPDATE
+            """, nativeQuery = true)
+        Long lockLastSeenPrivate(@Param("userId") Long userId, @Param("otherUserId") Long otherUserId);
+
+        // ⏩ Crée ou avance le pointeur en une instruction : jamais de doublon, jamais de recul (GREATEST ignore NULL)
+        @Modifying
+        @Transactional
+        @Query(value = """
+                INSERT INTO conversation_status (user_id, other_user_id, last_seen_message_id, last_read_at)
+                VALUES (:userId, :otherUserId, :messageId, now())
+                ON CONFLICT (user_id, other_user_id) DO UPDATE
+                SET last_seen_message_id = GREATEST(conversation_status.last_seen_message_id, EXCLUDED.last_seen_message_id),
+                    last_read_at = EXCLUDED.last_read_at
+            """, nativeQuery = true)
+        int advancePrivatePointer(@Param("userId") Long userId, @Param("otherUserId") Long otherUserId,
+                                  @Param("messageId") Long messageId);
+
+        @Modifying
+        @Transactional
+        @Query(value = """
+                INSERT INTO conversation_status (user_id, group_id, last_seen_message_id, last_read_at)
+                VALUES (:userId, :groupId, :messageId, now())
+                ON CONFLICT (user_id, group_id) DO UPDATE
+                SET last_seen_message_id = GREATEST(conversation_status.last_seen_message_id, EXCLUDED.last_seen_message_id),
+                    last_read_at = EXCLUDED.last_read_at
+            """, nativeQuery = true)
+        int advanceGroupPointer(@Param("userId") Long userId, @Param("groupId") Integer groupId,
+                                @Param("messageId") Long messageId);
+
+        @Query("SELECT COUNT(c) > 0 FROM ConversationStatus c WHERE c.lastSeenMessageId IS NOT NULL")
+        boolean existsAnyLastSeen();
+
+        // 🔁 Migration message_seen_by -> last_seen_message_id (voir ReadPointerMigration)
+        @Query(value = "SELECT to_regclass('message_seen_by') IS NOT NULL", nativeQuery = true)
+        boolean seenByTableExists();
+
+        // Une seule instance à la fois dans la migration (plusieurs nœuds peuvent démarrer ensemble)
+        @Query(value = "SELECT COUNT(*) FROM pg_advisory_xact_lock(hashtext('conversation_status_migration'))", nativeQuery = true)
+        long lockMigration();
 
+        // Base antérieure aux contraintes uniques : l'ajout par Hibernate échoue tant qu'il reste des doublons
+        @Query(value = """
+                SELECT to_regclass('uk_conversation_status_user_other') IS NOT NULL
+                   AND to_regclass('uk_conversation_status_user_group') IS NOT NULL
+            """, nativeQuery = true)
+        boolean uniquePointersExist();
 
+        // Doublons : on garde le pointeur le plus avancé (puis la ligne la plus récente)
+        @Modifying
+        @Query(value = """
+                DELETE FROM conversation_status cs
+                USING conversation_status keep
+                WHERE cs.user_id = keep.user_id
+                  AND (cs.other_user_id = keep.other_user_id OR cs.group_id = keep.group_id)
+                  AND (COALESCE(keep.last_seen_message_id, 0), keep.id) > (COALESCE(cs.last_seen_message_id, 0), cs.id)
+            """, nativeQuery = true)
+        int deleteDuplicatePointers();
 
+        @Modifying
+        @Query(value = "CREATE UNIQUE INDEX IF NOT EXISTS uk_conversation_status_user_other ON conversation_status (user_id, other_user_id)", nativeQuery = true)
+        void createPrivatePointerIndex();
+
+        @Modifying
+        @Query(value = "CREATE UNIQUE INDEX IF NOT EXISTS uk_conversation_status_user_group ON conversation_status (user_id, group_id)", nativeQuery = true)
+        void createGroupPointerIndex();
+
+        @Modifying
+        @Query(value = """
+                WITH src AS (
+                    SELECT s.user_id, m.sent_by AS other_user_id, m.id
+                    FROM message_seen_by s
+                    JOIN messages m ON m.id = s.message_id AND m.received_by = s.user_id
+                    UNION ALL
+                    SELECT cs.user_id, cs.other_user_id, m.id
+                    FROM conversation_status cs
+                    JOIN messages m ON m.received_by = cs.user_id AND m.sent_by = cs.other_user_id
+                    WHERE cs.last_read_at IS NOT NULL AND m.timestamp <= cs.last_read_at
+                ), pointers AS (
+                    SELECT user_id, other_user_id, MAX(id) AS max_id FROM src GROUP BY user_id, other_user_id
+                )
+                UPDATE conversation_status cs
+                SET last_seen_message_id = p.max_id
+                FROM pointers p
+                WHERE cs.user_id = p.user_id
+                  AND cs.other_user_id = p.other_user_id
+                  AND (cs.last_seen_message_id IS NULL OR cs.last_seen_message_id < p.max_id)
+            """, nativeQuery = true)
+        int backfillPrivatePointers();
+
+        @Modifying
+        @Query(value = """
+                INSERT INTO conversation_status (user_id, other_user_id, last_seen_message_id)
+                SELECT s.user_id, m.sent_by, MAX(m.id)
+                FROM message_seen_by s
+                JOIN messages m ON m.id = s.message_id AND m.received_by = s.user_id
+                GROUP BY s.user_id, m.sent_by
+                ON CONFLICT (user_id, other_user_id) DO NOTHING
+            """, nativeQuery = true)
+        int insertMissingPrivatePointers();
+
+        @Modifying
+        @Query(value = """
+                WITH src AS (
+                    SELECT s.user_id, m.group_id, m.id
+                    FROM message_seen_by s
+                    JOIN messages m ON m.id = s.message_id AND m.group_id IS NOT NULL
+                    UNION ALL
+                    SELECT cs.user_id, cs.group_id, m.id
+                    FROM conversation_status cs
+                    JOIN messages m ON m.group_id = cs.group_id
+                    WHERE cs.last_read_at IS NOT NULL AND m.timestamp <= cs.last_read_at
+                ), pointers AS (
+                    SELECT user_id, group_id, MAX(id) AS max_id FROM src GROUP BY user_id, group_id
+                )
+                UPDATE conversation_status cs
+                SET last_seen_message_id = p.max_id
+                FROM pointers p
+                WHERE cs.user_id = p.user_id
+                  AND cs.group_id = p.group_id
+                  AND (cs.last_seen_message_id IS NULL OR cs.last_seen_message_id < p.max_id)
+            """, nativeQuery = true)
+        int backfillGroupPointers();
+
+        @Modifying
+        @Query(value = """
+                INSERT INTO conversation_status (user_id, group_id, last_seen_message_id)
+                SELECT s.user_id, m.group_id, MAX(m.id)
+                FROM message_seen_by s
+                JOIN messages m ON m.id = s.message_id AND m.group_id IS NOT NULL
+                GROUP BY s.user_id, m.group_id
+                ON CONFLICT (user_id, group_id) DO NOTHING
+            """, nativeQuery = true)
+        int insertMissingGroupPointers();
+
+    }
+    
@@ -0,0 +1,39 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.EmailOutbox;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+
+    // 📮 Lot d'emails dus, verrouillés sans bloquer les autres instances
+    @Query(value = """
+            SELECT * FROM email_outbox
+            WHERE status = 'PENDING'
+              AND next_attempt_at <= :now
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    List<EmailOutbox> claimBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // Les pièces jointes d'abord : deleteAllByIdInBatch ne cascade pas sur la collection
+    @Modifying
+    @Query(value = "DELETE FROM email_outbox_attachments WHERE email_id IN (:ids)", nativeQuery = true)
+    int deleteAttachmentsOf(@Param("ids") Collection<Long> ids);
+
+    // Emails (en attente ou morts) qui référencent encore un fichier du répertoire partagé
+    @Query(value = "SELECT COUNT(*) FROM email_outbox_attachments WHERE path LIKE :prefix", nativeQuery = true)
+    long countAttachmentsUnder(@Param("prefix") String prefix);
+
+    long countByStatus(EmailOutbox.Status status);
+}
@@ -0,0 +1,29 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.EmailTemplate;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EmailTemplateRepository extends JpaRepository<EmailTemplate, Long> {
+
+    Optional<EmailTemplate> findByCode(String code);
+
+    boolean existsByCode(String code);
+
+    // ➕ Modèle par défaut : ajouté seulement s'il n'existe pas (plusieurs instances peuvent démarrer ensemble)
+    @Modifying
+    @Query(value = """
+            INSERT INTO email_templates (code, subject, body, html, updated_at)
+            VALUES (:code, :subject, :body, :html, now())
+            ON CONFLICT (code) DO NOTHING
+        """, nativeQuery = true)
+    int insertIfAbsent(@Param("code") String code, @Param("subject") String subject,
+                       @Param("body") String body, @Param("html") boolean html);
+}
@@ -1,11 +1,13 @@
 package com.backend.qu2data.repository;
 
+import com.backend.qu2data.entites.InboxConversationView;
 import com.backend.qu2data.entites.Message;
-import com.backend.qu2data.entites.Users;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,6 +25,83 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
         @Param("user2") Integer user2
     );
 
+    // 📄 Pagination par curseur (keyset) : du plus récent au plus ancien, limite via Pageable
+    @Query("""
+            SELECT m FROM Message m
+            WHERE ((m.sentBy.id = :user1 AND m.receivedBy.id = :user2)
+                OR (m.sentBy.id = :user2 AND m.receivedBy.id = :user1))
+            ORDER BY m.timestamp DESC, m.id DESC
+        """)
+    List<Message> findLatestBetweenUsers(
+        @Param("user1") Long user1,
+        @Param("user2") Long user2,
+        Pageable pageable
+    );
+
+    @Query("""
+            SELECT m FROM Message m
+            WHERE ((m.sentBy.id = :user1 AND m.receivedBy.id = :user2)
+                OR (m.sentBy.id = :user2 AND m.receivedBy.id = :user1))
+              AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id))
+            ORDER BY m.timestamp DESC, m.id DESC
+        """)
+    List<Message> findBetweenUsersBefore(
+        @Param("user1") Long user1,
+        @Param("user2") Long user2,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    // Ordre croissant : la page est inversée côté service pour rester "newest-first"
+    @Query("""
+            SELECT m FROM Message m
+            WHERE ((m.sentBy.id = :user1 AND m.receivedBy.id = :user2)
+                OR (m.sentBy.id = :user2 AND m.receivedBy.id = :user1))
+              AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id))
+            ORDER BY m.timestamp ASC, m.id ASC
+        """)
+    List<Message> findBetweenUsersAfter(
+        @Param("user1") Long user1,
+        @Param("user2") Long user2,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sentBy
+            WHERE m.group.id = :groupId
+            ORDER BY m.timestamp DESC, m.id DESC
+        """)
+    List<Message> findLatestInGroup(@Param("groupId") Integer groupId, Pageable pageable);
+
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sentBy
+            WHERE m.group.id = :groupId
+              AND (m.timestamp < :timestamp OR (m.timestamp = :timestamp AND m.id < :id))
+            ORDER BY m.timestamp DESC, m.id DESC
+        """)
+    List<Message> findInGroupBefore(
+        @Param("groupId") Integer groupId,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
+    @Query("""
+            SELECT m FROM Message m LEFT JOIN FETCH m.sentBy
+            WHERE m.group.id = :groupId
+              AND (m.timestamp > :timestamp OR (m.timestamp = :timestamp AND m.id > :id))
+            ORDER BY m.timestamp ASC, m.id ASC
+        """)
+    List<Message> findInGroupAfter(
+        @Param("groupId") Integer groupId,
+        @Param("timestamp") LocalDateTime timestamp,
+        @Param("id") Long id,
+        Pageable pageable
+    );
+
     @Query("SELECT DISTINCT m.sentBy.id FROM Message m WHERE m.receivedBy.id = :currentUserId")
     List<Long> findDistinctSentBy(@Param("currentUserId") Long currentUserId);
 
@@ -36,36 +115,31 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     List<Message> findBySentBy_IdOrReceivedBy_Id(Integer sentById, Integer receivedById);
     List<Message> findByGroup_IdOrderByTimestampAsc(Integer groupId);
 
-    // ✅ Nombre de messages non lus entre deux utilisateurs
+    // ✅ Nombre de messages non lus entre deux utilisateurs (au-delà du dernier message vu)
     @Query("""
-    	    SELECT COUNT(m) 
-    	    FROM Message m
-    	    WHERE m.receivedBy.id = :receiverId 
-    	      AND m.sentBy.id = :senderId
-    	      AND :receiverUser NOT MEMBER OF m.seenBy 
-    	      AND m.timestamp > :lastReadAt
-    	""")
-    	int countUnreadPrivateMessages(
-    	    @Param("receiverId") Long receiverId,
-    	    @Param("senderId") Long senderId,
-    	    @Param("receiverUser") Users receiverUser,
-    	    @Param("lastReadAt") LocalDateTime lastReadAt
-    	);
+            SELECT COUNT(m)
+            FROM Message m
+            WHERE m.receivedBy.id = :receiverId
+              AND m.sentBy.id = :senderId
+              AND m.id > :lastSeenMessageId
+        """)
+    int countUnreadPrivateMessages(
+        @Param("receiverId") Long receiverId,
+        @Param("senderId") Long senderId,
+        @Param("lastSeenMessageId") Long lastSeenMessageId
+    );
 
-    // ✅ Nombre de messages non lus dans un groupe
- // Nombre de messages non lus dans un groupe, excluant l'expéditeur
+    // ✅ Nombre de messages non lus dans un groupe, excluant ceux du lecteur
     @Query("""
-            SELECT COUNT(m) FROM Message m 
-            WHERE m.group.id = :groupId 
-              AND :receiverUser NOT MEMBER OF m.seenBy 
-              AND m.timestamp > :lastReadAt
-              AND m.sentBy != :senderUser
+            SELECT COUNT(m) FROM Message m
+            WHERE m.group.id = :groupId
+              AND m.id > :lastSeenMessageId
+              AND m.sentBy.id <> :receiverId
         """)
     int countUnreadGroupMessagesExcludingSender(
         @Param("groupId") Integer groupId,
-        @Param("receiverUser") Users receiverUser,
-        @Param("lastReadAt") LocalDateTime lastReadAt,
-        @Param("senderUser") Users senderUser
+        @Param("receiverId") Long receiverId,
+        @Param("lastSeenMessageId") Long lastSeenMessageId
     );
     @Query("SELECT m FROM Message m WHERE m.group.id = :groupId ORDER BY m.timestamp ASC")
     List<Message> findByGroupId(@Param("groupId") int groupId);
@@ -90,12 +164,100 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
     	       "WHERE m.sentBy.id = :currentUserId OR m.receivedBy.id = :currentUserId")
     	List<Long> findAllUserIdsInConversationWith(@Param("currentUserId") Long currentUserId);
 
+    // 📥 Boîte de réception en un seul aller-retour : dernier message de chaque conversation
+    // privée et de chaque groupe de l'utilisateur, aperçu et compteur de non-lus
+    @Query(value = """
+            WITH private_last AS (
+                SELECT DISTINCT ON (p.partner_id) p.partner_id, p.id, p.content, p.timestamp
+                FROM (
+                    SELECT m.id, m.content, m.timestamp,
+                           CASE WHEN m.sent_by = :userId THEN m.received_by ELSE m.sent_by END AS partner_id
+                    FROM messages m
+                    WHERE m.group_id IS NULL
+                      AND m.received_by IS NOT NULL
+                      AND (m.sent_by = :userId OR m.received_by = :userId)
+                ) p
+                ORDER BY p.partner_id, p.timestamp DESC, p.id DESC
+            ),
+            group_last AS (
+                SELECT DISTINCT ON (m.group_id) m.group_id, m.id, m.content, m.timestamp
+                FROM messages m
+                WHERE m.group_id IN (SELECT gu.group_id FROM group_users gu WHERE gu.user_id = :userId)
+                ORDER BY m.group_id, m.timestamp DESC, m.id DESC
+            )
+            SELECT 'user' AS "type",
+                   CAST(pl.partner_id AS bigint) AS "conversationId",
+                   u.id_keycloak AS "idKeycloak",
+                   u.first_name AS "firstName",
+                   u.last_name AS "lastName",
+                   CAST(NULL AS varchar) AS "groupName",
+                   pl.id AS "lastMessageId",
+                   LEFT(pl.content, :previewLength) AS "preview",
+                   pl.timestamp AS "lastMessageTime",
+                   COALESCE(c.unread_count, 0) AS "unreadCount"
+            FROM private_last pl
+            JOIN users u ON u.id = pl.partner_id
+            LEFT JOIN unread_counters c
+                   ON c.user_id = :userId AND c.conversation_key = CONCAT('u:', pl.partner_id)
+            UNION ALL
+            SELECT 'group', CAST(gl.group_id AS bigint), NULL, NULL, NULL, g.name,
+                   gl.id, LEFT(gl.content, :previewLength), gl.timestamp, COALESCE(c.unread_count, 0)
+            FROM group_last gl
+            JOIN groups g ON g.id = gl.group_id
+            LEFT JOIN unread_counters c
+                   ON c.user_id = :userId AND c.conversation_key = CONCAT('g:', gl.group_id)
+            ORDER BY "lastMessageTime" DESC, "lastMessageId" DESC
+            LIMIT :limit OFFSET :offset
+        """, nativeQuery = true)
+    List<InboxConversationView> findInbox(
+        @Param("userId") Long userId,
+        @Param("previewLength") int previewLength,
+        @Param("limit") int limit,
+        @Param("offset") int offset
+    );
+
+    // 👁️ Dernier message reçu de senderId par readerId (high-water mark par défaut)
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.sentBy.id = :senderId AND m.receivedBy.id = :readerId")
+    Long findLastReceivedMessageId(@Param("readerId") Long readerId, @Param("senderId") Long senderId);
+
+    @Query("SELECT COUNT(m) FROM Message m WHERE m.sentBy.id = :senderId AND m.receivedBy.id = :readerId AND m.id > :afterId")
+    int countReceivedAfter(
+        @Param("readerId") Long readerId,
+        @Param("senderId") Long senderId,
+        @Param("afterId") Long afterId
+    );
+
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.group.id = :groupId")
+    Long findLastGroupMessageId(@Param("groupId") Integer groupId);
+
+    // Messages vus par cette lecture : id dans ]afterId, upToId]
+    @Query("""
+            SELECT COUNT(m) FROM Message m
+            WHERE m.sentBy.id = :senderId
+              AND m.receivedBy.id = :readerId
+              AND m.id > :afterId
+              AND m.id <= :upToId
+        """)
+    int countReceivedBetween(
+        @Param("readerId") Long readerId,
+        @Param("senderId") Long senderId,
+        @Param("afterId") Long afterId,
+        @Param("upToId") Long upToId
+    );
+
    /* List<Message> findByReceivedByIdAndIsReadFalse(Long receivedById);
     @Query("SELECT m FROM Message m WHERE m.receivedBy.id = :userId AND m.isRead = false")
     List<Message> findUnreadMessagesByUserId(@Param("userId") Long userId);
 */
-    @Query("SELECT m FROM Message m WHERE :currentUser NOT MEMBER OF m.seenBy AND m.receivedBy = :currentUser")
-    List<Message> findMessagesNotSeenBy(@Param("currentUser") Users currentUser);
+    @Query("""
+            SELECT m FROM Message m
+            WHERE m.receivedBy.id = :currentUserId
+              AND m.id > COALESCE((
+                  SELECT cs.lastSeenMessageId FROM ConversationStatus cs
+                  WHERE cs.user.id = :currentUserId AND cs.otherUser = m.sentBy
+              ), 0)
+        """)
+    List<Message> findMessagesNotSeenBy(@Param("currentUserId") Long currentUserId);
     @Query("SELECT m FROM Message m JOIN FETCH m.sentBy WHERE m.group.id = :groupId ORDER BY m.timestamp ASC")
     List<Message> findByGroupIdWithSender(@Param("groupId") Integer groupId);
 
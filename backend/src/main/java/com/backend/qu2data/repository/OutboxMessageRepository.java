@@ -0,0 +1,26 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.OutboxMessage;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    // 📮 Lot de notifications dues, verrouillées sans bloquer les autres instances
+    @Query(value = """
+            SELECT * FROM message_outbox
+            WHERE status = 'PENDING'
+              AND next_attempt_at <= :now
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    List<OutboxMessage> claimBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -5,8 +5,10 @@ package com.backend.qu2data.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.backend.qu2data.entites.Prospect;
 
@@ -18,4 +20,37 @@ public interface ProspectRepository extends JpaRepository<Prospect, Long> {
 	@Query("SELECT p FROM Prospect p WHERE LOWER(p.email) = LOWER(:email)")
 	Optional<Prospect> findByEmailIgnoreCase(String email);
 
+
+	// 📣 Cibles d'une campagne, par id croissant (pagination par curseur) ; filtre null = ignoré
+	@Query("""
+			SELECT p FROM Prospect p
+			WHERE p.id > :afterId
+			  AND (:statut IS NULL OR p.statut = :statut)
+			  AND (:secteur IS NULL OR p.secteur = :secteur)
+			  AND (:pays IS NULL OR p.pays = :pays)
+			  AND (:gestionnaire IS NULL OR p.gestionnaire = :gestionnaire)
+			ORDER BY p.id
+		""")
+	List<Prospect> findCampaignTargets(
+		@Param("afterId") Long afterId,
+		@Param("statut") Prospect.Statut statut,
+		@Param("secteur") String secteur,
+		@Param("pays") String pays,
+		@Param("gestionnaire") String gestionnaire,
+		Pageable pageable
+	);
+
+	@Query("""
+			SELECT COUNT(p) FROM Prospect p
+			WHERE (:statut IS NULL OR p.statut = :statut)
+			  AND (:secteur IS NULL OR p.secteur = :secteur)
+			  AND (:pays IS NULL OR p.pays = :pays)
+			  AND (:gestionnaire IS NULL OR p.gestionnaire = :gestionnaire)
+		""")
+	long countCampaignTargets(
+		@Param("statut") Prospect.Statut statut,
+		@Param("secteur") String secteur,
+		@Param("pays") String pays,
+		@Param("gestionnaire") String gestionnaire
+	);
 }
\ No newline at end of file
@@ -0,0 +1,101 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.Reminder;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReminderRepository extends JpaRepository<Reminder, Long> {
+
+    // 🔁 Rappels (date_rappel) des actions de la fenêtre ; une date modifiée replanifie le rappel
+    @Modifying
+    @Query(value = """
+            INSERT INTO reminders (source_type, source_id, kind, fire_at, status)
+            SELECT 'ACTION', a.id, 'RAPPEL', a.date_rappel + CAST(:fireTime AS time), 'PENDING'
+            FROM action a
+            WHERE a.date_rappel BETWEEN :fromDate AND :toDate
+              AND (CAST(:actionId AS bigint) IS NULL OR a.id = CAST(:actionId AS bigint))
+            ON CONFLICT (source_type, source_id, kind)
+            DO UPDATE SET fire_at = EXCLUDED.fire_at, status = 'PENDING', owner = NULL, lease_until = NULL, sent_at = NULL
+            WHERE reminders.fire_at <> EXCLUDED.fire_at OR reminders.status = 'CANCELLED'
+        """, nativeQuery = true)
+    int upsertActionRappels(
+        @Param("fromDate") LocalDate fromDate,
+        @Param("toDate") LocalDate toDate,
+        @Param("fireTime") String fireTime,
+        @Param("actionId") Long actionId
+    );
+
+    // Idem pour les échéances (date_echeance)
+    @Modifying
+    @Query(value = """
+            INSERT INTO reminders (source_type, source_id, kind, fire_at, status)
+            SELECT 'ACTION', a.id, 'ECHEANCE', a.date_echeance + CAST(:fireTime AS time), 'PENDING'
+            FROM action a
+            WHERE a.date_echeance BETWEEN :fromDate AND :toDate
+              AND (CAST(:actionId AS bigint) IS NULL OR a.id = CAST(:actionId AS bigint))
+            ON CONFLICT (source_type, source_id, kind)
+            DO UPDATE SET fire_at = EXCLUDED.fire_at, status = 'PENDING', owner = NULL, lease_until = NULL, sent_at = NULL
+            WHERE reminders.fire_at <> EXCLUDED.fire_at OR reminders.status = 'CANCELLED'
+        """, nativeQuery = true)
+    int upsertActionEcheances(
+        @Param("fromDate") LocalDate fromDate,
+        @Param("toDate") LocalDate toDate,
+        @Param("fireTime") String fireTime,
+        @Param("actionId") Long actionId
+    );
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO reminders (source_type, source_id, kind, fire_at, status)
+            VALUES (:sourceType, :sourceId, :kind, :fireAt, 'PENDING')
+            ON CONFLICT (source_type, source_id, kind)
+            DO UPDATE SET fire_at = EXCLUDED.fire_at, status = 'PENDING', owner = NULL, lease_until = NULL, sent_at = NULL
+            WHERE reminders.fire_at <> EXCLUDED.fire_at OR reminders.status = 'CANCELLED'
+        """, nativeQuery = true)
+    int upsert(
+        @Param("sourceType") String sourceType,
+        @Param("sourceId") Long sourceId,
+        @Param("kind") String kind,
+        @Param("fireAt") LocalDateTime fireAt
+    );
+
+    // Source modifiée ou supprimée : ses rappels en attente ne doivent plus partir
+    @Modifying
+    @Query("""
+            UPDATE Reminder r SET r.status = com.backend.qu2data.entites.Reminder.Status.CANCELLED
+            WHERE r.sourceType = :sourceType AND r.sourceId = :sourceId
+              AND r.status = com.backend.qu2data.entites.Reminder.Status.PENDING
+        """)
+    int cancelForSource(@Param("sourceType") Reminder.SourceType sourceType, @Param("sourceId") Long sourceId);
+
+    // ⏰ Rappels de la prochaine fenêtre non réclamés (ou dont le bail a expiré), verrouillés sans attente
+    @Query(value = """
+            SELECT * FROM reminders
+            WHERE status = 'PENDING'
+              AND fire_at <= :until
+              AND (lease_until IS NULL OR lease_until < :now)
+            ORDER BY fire_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+        """, nativeQuery = true)
+    List<Reminder> claimDue(@Param("now") LocalDateTime now, @Param("until") LocalDateTime until, @Param("limit") int limit);
+
+    // ✅ Déclenchement : réussit une seule fois, et seulement pour l'instance qui détient le bail
+    @Modifying
+    @Query("""
+            UPDATE Reminder r
+            SET r.status = com.backend.qu2data.entites.Reminder.Status.SENT, r.sentAt = :now
+            WHERE r.id = :id AND r.owner = :owner
+              AND r.status = com.backend.qu2data.entites.Reminder.Status.PENDING
+        """)
+    int markSent(@Param("id") Long id, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
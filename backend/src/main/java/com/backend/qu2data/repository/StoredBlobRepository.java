@@ -0,0 +1,35 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.StoredBlob;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StoredBlobRepository extends JpaRepository<StoredBlob, String> {
+
+    // ➕ Nouvelle référence : crée le blob ou incrémente son compteur (atomique)
+    @Modifying
+    @Query(value = """
+            INSERT INTO stored_blobs (sha256, size, ref_count, created_at)
+            VALUES (:sha256, :size, 1, now())
+            ON CONFLICT (sha256)
+            DO UPDATE SET ref_count = stored_blobs.ref_count + 1
+        """, nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("size") long size);
+
+    // 🔒 Verrou transactionnel par contenu : l'upload d'un hash et la suppression de son fichier ne se croisent jamais
+    @Query(value = "SELECT COUNT(*) FROM pg_advisory_xact_lock(hashtextextended(:sha256, 0))", nativeQuery = true)
+    long lock(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query(value = "UPDATE stored_blobs SET ref_count = ref_count - 1 WHERE sha256 = :sha256", nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    @Modifying
+    @Query(value = "DELETE FROM stored_blobs WHERE sha256 = :sha256 AND ref_count <= 0", nativeQuery = true)
+    int deleteIfUnreferenced(@Param("sha256") String sha256);
+}
@@ -6,6 +6,7 @@ import org.springframework.stereotype.Repository;
 import com.backend.qu2data.entites.Task;
 import com.backend.qu2data.entites.Users;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -23,4 +24,7 @@ public interface TaskRepository extends JpaRepository<Task, Long> {
     // Récupérer toutes les tâches d'un projet spécifique
     List<Task> findByProject_Id(Long projectId);
     List<Task> findByProjectId(Long projectId);
+
+    // ⏰ Rendez-vous à venir portant un rappel (fenêtre de ReminderService)
+    List<Task> findByReminderIsNotNullAndAppointmentTimeStartBetween(LocalDateTime from, LocalDateTime to);
 }
\ No newline at end of file
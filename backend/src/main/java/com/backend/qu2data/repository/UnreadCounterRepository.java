@@ -0,0 +1,102 @@
+package com.backend.qu2data.repository;
+
+import com.backend.qu2data.entites.UnreadCounter;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UnreadCounterRepository extends JpaRepository<UnreadCounter, Long> {
+
+    // ➕ +1 pour le destinataire d'un message privé (upsert PostgreSQL)
+    @Modifying
+    @Query(value = """
+            INSERT INTO unread_counters (user_id, other_user_id, conversation_key, unread_count)
+            VALUES (:userId, :otherUserId, :conversationKey, 1)
+            ON CONFLICT (user_id, conversation_key)
+            DO UPDATE SET unread_count = unread_counters.unread_count + 1
+        """, nativeQuery = true)
+    int incrementPrivate(
+        @Param("userId") Long userId,
+        @Param("otherUserId") Long otherUserId,
+        @Param("conversationKey") String conversationKey
+    );
+
+    // ➕ +1 pour chaque membre du groupe sauf l'expéditeur, en une seule requête
+    @Modifying
+    @Query(value = """
+            INSERT INTO unread_counters (user_id, group_id, conversation_key, unread_count)
+            SELECT DISTINCT gu.user_id, :groupId, :conversationKey, 1
+            FROM group_users gu
+            WHERE gu.group_id = :groupId
+              AND gu.user_id IS NOT NULL
+              AND gu.user_id <> :senderId
+            ON CONFLICT (user_id, conversation_key)
+            DO UPDATE SET unread_count = unread_counters.unread_count + 1
+        """, nativeQuery = true)
+    int incrementGroup(
+        @Param("groupId") Integer groupId,
+        @Param("conversationKey") String conversationKey,
+        @Param("senderId") Long senderId
+    );
+
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.unreadCount = 0 WHERE c.userId = :userId AND c.conversationKey = :conversationKey")
+    int reset(@Param("userId") Long userId, @Param("conversationKey") String conversationKey);
+
+    @Modifying
+    @Query("UPDATE UnreadCounter c SET c.unreadCount = :unreadCount WHERE c.userId = :userId AND c.conversationKey = :conversationKey")
+    int setCount(
+        @Param("userId") Long userId,
+        @Param("conversationKey") String conversationKey,
+        @Param("unreadCount") Integer unreadCount
+    );
+
+    @Query("SELECT c FROM UnreadCounter c WHERE c.userId = :userId AND c.otherUserId IS NOT NULL AND c.unreadCount > 0")
+    List<UnreadCounter> findPrivateUnread(@Param("userId") Long userId);
+
+    @Query("SELECT c FROM UnreadCounter c WHERE c.userId = :userId AND c.groupId IS NOT NULL AND c.unreadCount > 0")
+    List<UnreadCounter> findGroupUnread(@Param("userId") Long userId);
+
+    // Messages que j'ai envoyés et que chaque destinataire n'a pas encore lus
+    @Query("SELECT c FROM UnreadCounter c WHERE c.otherUserId = :senderId AND c.unreadCount > 0")
+    List<UnreadCounter> findUnreadSentBy(@Param("senderId") Long senderId);
+
+    // 🔒 Une seule reconstruction à la fois, même avec plusieurs nœuds qui démarrent ensemble
+    @Query(value = "SELECT COUNT(*) FROM pg_advisory_xact_lock(hashtext('unread_counters_rebuild'))", nativeQuery = true)
+    long lockRebuild();
+
+    // 🔁 Reconstruction initiale à partir de l'historique (table vide) : non lu = id > dernier message vu.
+    // ON CONFLICT : une ligne déjà créée par un incrément concurrent est conservée telle quelle
+    @Modifying
+    @Query(value = """
+            INSERT INTO unread_counters (user_id, other_user_id, conversation_key, unread_count)
+            SELECT m.received_by, m.sent_by, CONCAT('u:', m.sent_by), COUNT(*)
+            FROM messages m
+            LEFT JOIN conversation_status cs ON cs.user_id = m.received_by AND cs.other_user_id = m.sent_by
+            WHERE m.received_by IS NOT NULL
+              AND m.sent_by IS NOT NULL
+              AND m.id > COALESCE(cs.last_seen_message_id, 0)
+            GROUP BY m.received_by, m.sent_by
+            ON CONFLICT (user_id, conversation_key) DO NOTHING
+        """, nativeQuery = true)
+    int rebuildPrivate();
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO unread_counters (user_id, group_id, conversation_key, unread_count)
+            SELECT gu.user_id, m.group_id, CONCAT('g:', m.group_id), COUNT(*)
+            FROM (SELECT DISTINCT group_id, user_id FROM group_users WHERE user_id IS NOT NULL) gu
+            JOIN messages m ON m.group_id = gu.group_id AND m.sent_by <> gu.user_id
+            LEFT JOIN conversation_status cs ON cs.user_id = gu.user_id AND cs.group_id = gu.group_id
+            WHERE m.id > COALESCE(cs.last_seen_message_id, 0)
+            GROUP BY gu.user_id, m.group_id
+            ON CONFLICT (user_id, conversation_key) DO NOTHING
+        """, nativeQuery = true)
+    int rebuildGroups();
+}
@@ -4,9 +4,12 @@ import com.backend.qu2data.entites.Users;
 
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UsersRepository extends JpaRepository<Users, Long> {
@@ -14,5 +17,21 @@ public interface UsersRepository extends JpaRepository<Users, Long> {
     @Query("SELECT u FROM Users u WHERE u.idKeycloak = :idKeycloak")
     Optional<Users> findByIdKeycloak(@Param("idKeycloak") String idKeycloak);
 
+    List<Users> findByIdKeycloakIn(Collection<String> idKeycloaks);
+
+    Optional<Users> findFirstByEmailIgnoreCase(String email);
+
+    // 📇 Annuaire servi depuis PostgreSQL : comptes Keycloak synchronisés et actifs
+    @Query("SELECT u FROM Users u WHERE u.directorySyncedAt IS NOT NULL AND u.enabled = true ORDER BY u.lastName, u.firstName")
+    List<Users> findDirectory();
+
+    @Query("SELECT u.idKeycloak FROM Users u WHERE u.enabled = true")
+    List<String> findEnabledKeycloakIds();
+
+    // Comptes disparus de Keycloak : conservés (messages, tâches...) mais désactivés
+    @Modifying
+    @Query("UPDATE Users u SET u.enabled = false WHERE u.idKeycloak IN :idKeycloaks")
+    int disableAll(@Param("idKeycloaks") Collection<String> idKeycloaks);
+
 }
 
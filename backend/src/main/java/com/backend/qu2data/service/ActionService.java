@@ -4,21 +4,31 @@ import java.time.LocalDate;
 
 import java.util.List;
 import com.backend.qu2data.repository.ProspectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.backend.qu2data.entites.Action;
 import com.backend.qu2data.entites.Prospect;
+import com.backend.qu2data.entites.Reminder;
 import com.backend.qu2data.repository.ActionRepository;
 
 @Service
 public class ActionService {
+    private static final Logger logger = LoggerFactory.getLogger(ActionService.class);
 	@Autowired
 	private EmailService emailService;
     @Autowired
     private ActionRepository actionRepository;
     @Autowired
     private ProspectRepository prospectRepository;
+    @Autowired
+    private ReminderService reminderService;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
     public List<Action> getAll() {
         return actionRepository.findAll();
     }
@@ -28,7 +38,9 @@ public class ActionService {
     }
 
     public Action create(Action action) {
-        return actionRepository.save(action);
+        Action saved = actionRepository.save(action);
+        reminderService.syncAction(saved); // ⏰ rappel / échéance proches planifiés tout de suite
+        return saved;
     }
     public List<Action> getTemplates() {
         return actionRepository.findByIsProgrammableTrue();
@@ -43,65 +55,83 @@ public class ActionService {
         action.setDescription(updated.getDescription());
         action.setContact(updated.getContact());
         action.setProspect(updated.getProspect());
-        return actionRepository.save(action);
+        Action saved = actionRepository.save(action);
+        reminderService.syncAction(saved);
+        return saved;
     }
 
     public void delete(Long id) {
         actionRepository.deleteById(id);
+        reminderService.cancel(Reminder.SourceType.ACTION, id);
     }
+    // 📧 Chaque copie est créée avec son email dans sa propre transaction (email envoyé après commit) :
+    // un email impossible à mettre en file n'annule que sa ligne, pas les autres copies
     public void dupliquerEtEnvoyerPourProspect(Long prospectId) {
         Prospect prospect = prospectRepository.findById(prospectId)
             .orElseThrow(() -> new RuntimeException("Prospect non trouvé"));
 
         List<Action> templates = actionRepository.findByIsProgrammableTrue();
 
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
         for (Action template : templates) {
-            Action copie = new Action();
-            copie.setObjet(template.getObjet());
-            copie.setDescription(template.getDescription());
-            copie.setIsProgrammable(true);
-            copie.setStatut("non_commence");
-            copie.setDateEcheance(LocalDate.now().plusDays(1));
-            copie.setParentAction(template);
-            copie.setProspect(prospect);
-            copie.setContact(prospect.getFirstName() + " " + prospect.getLastName());
-            copie.setManagerEmail(template.getManagerEmail());
+            try {
+                tx.executeWithoutResult(status -> dupliquerEtEnvoyer(template, prospect));
+            } catch (RuntimeException e) {
+                logger.error("❌ Action \"{}\" non créée pour le prospect {} : {}", template.getObjet(), prospectId, e.getMessage(), e);
+            }
+        }
+    }
 
-            actionRepository.save(copie);
+    private void dupliquerEtEnvoyer(Action template, Prospect prospect) {
+        Action copie = new Action();
+        copie.setObjet(template.getObjet());
+        copie.setDescription(template.getDescription());
+        copie.setIsProgrammable(true);
+        copie.setStatut("non_commence");
+        copie.setDateEcheance(LocalDate.now().plusDays(1));
+        copie.setParentAction(template);
+        copie.setProspect(prospect);
+        copie.setContact(prospect.getFirstName() + " " + prospect.getLastName());
+        copie.setManagerEmail(template.getManagerEmail());
 
-            // 🔁 Envoi automatique en fonction de l'objet de l'action
-            try {
-                switch (template.getObjet().toLowerCase()) {
-                    case "email de qualification":
-                        emailService.sendQualificationEmail(
-                            prospect.getEmail(),
-                            prospect.getFirstName(),
-                            prospect.getSociete()
-                        );
-                        break;
+        actionRepository.save(copie);
+
+        // 🔁 Envoi automatique en fonction de l'objet de l'action
+        if (prospect.getEmail() == null || prospect.getEmail().isBlank()) {
+            logger.warn("⚠️ Prospect {} sans email : action \"{}\" créée sans envoi", prospect.getId(), template.getObjet());
+            return;
+        }
+        try {
+            switch (template.getObjet().toLowerCase()) {
+                case "email de qualification":
+                    emailService.sendQualificationEmail(
+                        prospect.getEmail(),
+                        prospect.getFirstName(),
+                        prospect.getSociete()
+                    );
+                    break;
 
-                    case "proposition commerciale":
-                        // Tu peux générer un PDF dynamique ou utiliser un fichier mock
-                        emailService.sendOfferEmailWithPdf(
-                            prospect.getEmail(),
-                            prospect.getFirstName() + " " + prospect.getLastName(),
-                            prospect.getSociete(),
-                            List.of(/* Liste de AttachmentDTO ici */)
-                        );
-                        break;
+                case "proposition commerciale":
+                    // Tu peux générer un PDF dynamique ou utiliser un fichier mock
+                    emailService.sendOfferEmailWithPdf(
+                        prospect.getEmail(),
+                        prospect.getFirstName() + " " + prospect.getLastName(),
+                        prospect.getSociete(),
+                        List.of(/* Liste de AttachmentDTO ici */)
+                    );
+                    break;
 
-                    case "closing":
-                        emailService.sendClosingEmailWithFile(
-                            prospect.getEmail(),
-                            prospect.getFirstName() + " " + prospect.getLastName(),
-                            prospect.getSociete(),
-                            List.of(/* Liste de fichiers */)
-                        );
-                        break;
-                }
-            } catch (Exception e) {
-                System.err.println("Erreur d'envoi d'email : " + e.getMessage());
+                case "closing":
+                    emailService.sendClosingEmailWithFile(
+                        prospect.getEmail(),
+                        prospect.getFirstName() + " " + prospect.getLastName(),
+                        prospect.getSociete(),
+                        List.of(/* Liste de fichiers */)
+                    );
+                    break;
             }
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur de mise en file d'email : " + e.getMessage(), e);
         }
     }
 }
@@ -6,13 +6,11 @@ import com.backend.qu2data.repository.AttachmentRepository;
 import com.backend.qu2data.repository.MessageRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.*;
 import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
 
 @Service
 public class AttachmentService {
@@ -23,44 +21,45 @@ public class AttachmentService {
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
     public List<Attachment> getAllAttachments() {
         return attachmentRepository.findAll();
     }
 
-    public Attachment saveAttachment(Attachment attachment) {
-        return attachmentRepository.save(attachment);
+    public Optional<Attachment> getAttachment(Integer id) {
+        return attachmentRepository.findById(id);
     }
 
-    public void deleteAttachment(Integer id) {
-        attachmentRepository.deleteById(id);
+    // 📎 Pièce jointe ajoutée à un message existant ; vide si le message n'existe pas
+    @Transactional
+    public Optional<Attachment> addToMessage(Long messageId, MultipartFile file) {
+        return messageRepository.findById(messageId)
+            .map(message -> saveAttachment(file.getContentType(), file, message));
     }
 
-    public File saveFile(MultipartFile file) {
-        try {
-            String uploadDir = "uploads";
-            File dir = new File(uploadDir);
-            if (!dir.exists()) dir.mkdirs();
-
-            String fileName = UUID.randomUUID() + "_" + file.getOriginalFilename();
-            Path path = Paths.get(uploadDir, fileName);
-
-            Files.copy(file.getInputStream(), path, StandardCopyOption.REPLACE_EXISTING);
-            return path.toFile();
-        } catch (IOException e) {
-            throw new RuntimeException("Erreur lors de l'enregistrement du fichier", e);
-        }
+    @Transactional
+    public void deleteAttachment(Integer id) {
+        attachmentRepository.findById(id).ifPresent(attachment -> {
+            fileStorageService.release(attachment); // 🗑️ le fichier part avec la dernière référence
+            attachmentRepository.delete(attachment);
+        });
     }
 
     public Attachment saveAttachment(String contentType, MultipartFile file, Message message) {
-        File savedFile = saveFile(file);
-
-        Attachment attachment = new Attachment();
-        attachment.setName(savedFile.getName());
-        attachment.setType(contentType);
-        attachment.setSize((int) file.getSize());
-        attachment.setPath(savedFile.getAbsolutePath());
+        // ✅ Même moteur de stockage en flux que les messages privés
+        Attachment attachment = fileStorageService.saveFile(file);
+        if (contentType != null) {
+            attachment.setType(contentType);
+        }
         attachment.setMessage(message);
 
-        return attachmentRepository.save(attachment);
+        Attachment saved = attachmentRepository.save(attachment);
+        thumbnailService.scheduleAfterCommit(saved); // 🖼️ images : miniature en arrière-plan
+        return saved;
     }
 }
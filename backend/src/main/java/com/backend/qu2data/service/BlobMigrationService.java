@@ -0,0 +1,256 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Attachment;
+import com.backend.qu2data.repository.AttachmentRepository;
+import com.backend.qu2data.repository.StoredBlobRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * 🔁 Reprise du contenu existant vers le stockage configuré :
+ * 1) les anciens fichiers (uploads/{uuid}_{nom} ou chemin absolu) sont hachés et rangés en blobs,
+ *    la pièce jointe pointe ensuite vers blobs/ab/cd/{sha256} avec son compteur de références ;
+ * 2) si le backend n'est pas le disque (S3), les blobs et dérivés déjà présents sous uploads/
+ *    sont copiés vers le bucket.
+ * Chaque étape saute ce qui est déjà fait : relancer la migration est sans effet.
+ * Avec storage.migrate-delete-source=true, une source n'est supprimée qu'après relecture de la
+ * copie dans le stockage et comparaison de son SHA-256.
+ * Déclenchée au démarrage (storage.migrate-on-startup=true) ou par POST /api/attachments/storage/migrate.
+ */
+@Service
+public class BlobMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobMigrationService.class);
+
+    private static final int BATCH_SIZE = 200;
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ThumbnailService thumbnailService;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${storage.upload-dir:uploads}")
+    private String uploadDir;
+
+    @Value("${storage.migrate-on-startup:false}")
+    private boolean migrateOnStartup;
+
+    @Value("${storage.migrate-delete-source:false}")
+    private boolean deleteSource;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (migrateOnStartup) {
+            migrate();
+        }
+    }
+
+    // { "legacyMigrated": n, "legacyFailed": n, "localCopied": n }
+    public Map<String, Integer> migrate() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Migration du stockage déjà en cours");
+        }
+        try {
+            Map<String, Integer> report = new LinkedHashMap<>();
+            int[] legacy = migrateLegacyFiles();
+            report.put("legacyMigrated", legacy[0]);
+            report.put("legacyFailed", legacy[1]);
+            report.put("localCopied", copyLocalTree());
+            logger.info("✅ Migration du stockage terminée : {}", report);
+            return report;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int[] migrateLegacyFiles() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        int migrated = 0;
+        int failed = 0;
+        Integer afterId = 0;
+        List<Attachment> batch;
+        do {
+            batch = attachmentRepository.findLegacyStoredAfter(afterId, PageRequest.of(0, BATCH_SIZE));
+            for (Attachment attachment : batch) {
+                afterId = attachment.getId();
+                try {
+                    if (migrateLegacy(tx, attachment)) {
+                        migrated++;
+                    } else {
+                        failed++;
+                    }
+                } catch (Exception e) {
+                    failed++;
+                    logger.warn("⚠️ Pièce jointe {} non migrée : {}", attachment.getId(), e.getMessage());
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+        return new int[] {migrated, failed};
+    }
+
+    private boolean migrateLegacy(TransactionTemplate tx, Attachment attachment) throws IOException {
+        Path source = fileStorageService.legacyFile(attachment.getPath());
+        if (!Files.isRegularFile(source)) {
+            logger.warn("⚠️ Fichier introuvable pour la pièce jointe {} : {}", attachment.getId(), source);
+            return false;
+        }
+
+        long size = Files.size(source);
+        String hash;
+        try (InputStream in = Files.newInputStream(source)) {
+            hash = sha256(in);
+        }
+        String key = FileStorageService.blobKey(hash);
+
+        // 🔒 Comme saveFile : verrou du hash → écriture si absent → référence, dans la même transaction,
+        // pour qu'un nettoyage concurrent ne supprime pas l'objet entre l'écriture et l'acquire
+        tx.executeWithoutResult(status -> {
+            Attachment managed = attachmentRepository.findById(attachment.getId()).orElseThrow();
+            storedBlobRepository.lock(hash);
+            if (!blobStore.exists(key)) {
+                try (InputStream in = Files.newInputStream(source)) {
+                    blobStore.put(key, in, size, attachment.getType() != null ? attachment.getType() : "application/octet-stream");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                fileStorageService.deleteOnRollback(hash);
+            }
+            storedBlobRepository.acquire(hash, size);
+            managed.setPath(FileStorageService.publicPath(key));
+            managed.setChecksum(hash);
+            managed.setSize(Math.toIntExact(size));
+            managed.setThumbnailPath(null);
+            thumbnailService.scheduleAfterCommit(managed);
+        });
+
+        if (deleteSource) {
+            deleteIfCopied(source, key, hash);
+        }
+        return true;
+    }
+
+    // S3 : copie des blobs/ et derivatives/ écrits sur disque avant le changement de backend
+    private int copyLocalTree() {
+        Path root = Paths.get(uploadDir);
+        if (blobStore.localPath("blobs").isPresent() || !Files.isDirectory(root)) {
+            return 0;
+        }
+        int copied = 0;
+        for (String dir : List.of("blobs", "derivatives")) {
+            Path base = root.resolve(dir);
+            if (!Files.isDirectory(base)) {
+                continue;
+            }
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(base)) {
+                files = walk.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().startsWith("."))
+                    .toList();
+            } catch (IOException e) {
+                logger.warn("⚠️ Parcours de {} impossible : {}", base, e.getMessage());
+                continue;
+            }
+            for (Path file : files) {
+                String key = root.relativize(file).toString().replace('\\', '/');
+                try {
+                    if (!blobStore.exists(key)) {
+                        try (InputStream in = Files.newInputStream(file)) {
+                            blobStore.put(key, in, Files.size(file), contentTypeOf(key));
+                        }
+                        copied++;
+                    }
+                    if (deleteSource) {
+                        String hash;
+                        try (InputStream in = Files.newInputStream(file)) {
+                            hash = sha256(in);
+                        }
+                        deleteIfCopied(file, key, hash);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("⚠️ Copie de {} impossible : {}", key, e.getMessage());
+                }
+            }
+        }
+        return copied;
+    }
+
+    // 🔒 La source ne part que si l'objet relu dans le stockage a exactement le même contenu
+    private void deleteIfCopied(Path source, String key, String expectedHash) throws IOException {
+        String storedHash;
+        try (InputStream in = blobStore.open(key)) {
+            storedHash = sha256(in);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("⚠️ Copie de {} illisible, source conservée : {}", key, e.getMessage());
+            return;
+        }
+        if (!expectedHash.equals(storedHash)) {
+            logger.warn("⚠️ Copie de {} différente de la source (SHA-256), source conservée", key);
+            return;
+        }
+        Files.deleteIfExists(source);
+    }
+
+    private static String sha256(InputStream in) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream digesting = new DigestInputStream(in, digest)) {
+            digesting.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String contentTypeOf(String key) {
+        if (key.endsWith(".png")) {
+            return "image/png";
+        }
+        if (key.endsWith(".jpg")) {
+            return "image/jpeg";
+        }
+        return "application/octet-stream";
+    }
+}
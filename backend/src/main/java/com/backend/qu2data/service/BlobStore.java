@@ -0,0 +1,34 @@
+package com.backend.qu2data.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Stockage des fichiers de pièces jointes (SPI).
+ * Les clés sont des chemins logiques relatifs ("blobs/ab/cd/{sha256}", "derivatives/...") ;
+ * Attachment.path vaut "/uploads/" + clé, quel que soit le backend.
+ * Implémentations : {@link LocalBlobStore} (storage.backend=local, défaut) et {@link S3BlobStore} (storage.backend=s3).
+ */
+public interface BlobStore {
+
+    boolean exists(String key);
+
+    /** Écrit le contenu en flux ; size est la taille exacte (connue après le hachage). */
+    void put(String key, InputStream content, long size, String contentType) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    void delete(String key);
+
+    /** Supprime toutes les clés sous un préfixe (dérivés d'un blob). */
+    void deletePrefix(String prefix);
+
+    /** Fichier local correspondant, si le backend est sur disque (sendfile, Range). */
+    Optional<Path> localPath(String key);
+
+    /** URL de téléchargement direct signée et temporaire, si le backend le permet (en-têtes de réponse imposés). */
+    Optional<String> presignedUrl(String key, Duration ttl, String contentDisposition, String contentType);
+}
@@ -0,0 +1,278 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Action;
+import com.backend.qu2data.entites.CampaignJob;
+import com.backend.qu2data.entites.Prospect;
+import com.backend.qu2data.repository.ActionRepository;
+import com.backend.qu2data.repository.CampaignJobRepository;
+import com.backend.qu2data.repository.ProspectRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * 📣 Exécution des campagnes : toutes les actions programmables appliquées aux prospects filtrés.
+ *
+ * Chaque lot de campaign.chunk-size prospects est une transaction : copies des actions insérées
+ * par batch JDBC, emails rendus en masse et mis dans l'outbox (envoyés après commit par
+ * EmailOutboxDispatcher), puis avancement du curseur de la campagne. Un lot est donc appliqué
+ * entièrement ou pas du tout, et une campagne interrompue reprend au lot suivant le dernier validé
+ * (au démarrage ou via la relève périodique des campagnes sans signe de vie).
+ */
+@Service
+public class CampaignService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CampaignService.class);
+
+    // Objet de l'action programmable -> modèle d'email envoyé (mêmes cas qu'ActionService)
+    private static final Map<String, String> TEMPLATE_BY_OBJET = Map.of(
+        "email de qualification", "qualification",
+        "proposition commerciale", "offer",
+        "closing", "closing"
+    );
+
+    private static final String INSERT_ACTION = """
+            INSERT INTO action (objet, description, is_programmable, statut, date_echeance,
+                                parent_action_id, prospect_id, contact, manager_email)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """;
+
+    private static final int[] INSERT_ACTION_TYPES = {
+        Types.VARCHAR, Types.VARCHAR, Types.BOOLEAN, Types.VARCHAR, Types.DATE,
+        Types.BIGINT, Types.BIGINT, Types.VARCHAR, Types.VARCHAR
+    };
+
+    @Autowired
+    private CampaignJobRepository campaignJobRepository;
+
+    @Autowired
+    private ProspectRepository prospectRepository;
+
+    @Autowired
+    private ActionRepository actionRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("campaignExecutor")
+    private ThreadPoolTaskExecutor campaignExecutor;
+
+    @Value("${campaign.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${campaign.stale-after-seconds:300}")
+    private long staleAfterSeconds;
+
+    @Transactional
+    public CampaignJob start(CampaignJob filters) {
+        CampaignJob job = new CampaignJob();
+        job.setStatut(filters.getStatut());
+        job.setSecteur(blankToNull(filters.getSecteur()));
+        job.setPays(blankToNull(filters.getPays()));
+        job.setGestionnaire(blankToNull(filters.getGestionnaire()));
+        job.setTemplateIds(originalTemplates().stream().map(Action::getId).collect(Collectors.toCollection(ArrayList::new)));
+        job.setTotalProspects(prospectRepository.countCampaignTargets(
+            job.getStatut(), job.getSecteur(), job.getPays(), job.getGestionnaire()));
+        job.setCreatedAt(LocalDateTime.now());
+        CampaignJob saved = campaignJobRepository.save(job);
+
+        Long jobId = saved.getId();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(jobId);
+            }
+        });
+        return saved;
+    }
+
+    public Optional<CampaignJob> getJob(Long id) {
+        return campaignJobRepository.findById(id);
+    }
+
+    public List<CampaignJob> getJobs() {
+        return campaignJobRepository.findAllByOrderByIdDesc();
+    }
+
+    // ⛔ Effective à la fin du lot en cours (déjà validé) ; rien n'est défait
+    @Transactional
+    public boolean cancel(Long id) {
+        CampaignJob job = campaignJobRepository.findForUpdate(id)
+            .orElseThrow(() -> new IllegalArgumentException("Campagne introuvable : " + id));
+        if (job.getStatus() != CampaignJob.Status.PENDING && job.getStatus() != CampaignJob.Status.RUNNING) {
+            return false;
+        }
+        job.setStatus(CampaignJob.Status.CANCELLED);
+        job.setFinishedAt(LocalDateTime.now());
+        return true;
+    }
+
+    // 🔁 Reprise après redémarrage, et campagnes restées en attente (file pleine) ou orphelines
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${campaign.resume-interval-ms:60000}", initialDelayString = "${campaign.resume-interval-ms:60000}")
+    public void resumePending() {
+        LocalDateTime staleBefore = LocalDateTime.now().minusSeconds(staleAfterSeconds);
+        for (Long jobId : campaignJobRepository.findResumable(staleBefore)) {
+            submit(jobId);
+        }
+    }
+
+    private void submit(Long jobId) {
+        try {
+            campaignExecutor.execute(() -> run(jobId));
+        } catch (TaskRejectedException e) {
+            logger.warn("⚠️ File des campagnes pleine, campagne {} reprise plus tard", jobId);
+        }
+    }
+
+    private void run(Long jobId) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = tx.execute(status ->
+            campaignJobRepository.claim(jobId, now, now.minusSeconds(staleAfterSeconds)));
+        if (claimed == null || claimed == 0) {
+            return; // déjà prise par une autre instance, terminée ou annulée
+        }
+
+        try {
+            List<Action> templates = templatesOf(tx, jobId);
+            logger.info("📣 Campagne {} : {} action(s) programmable(s)", jobId, templates.size());
+            while (Boolean.TRUE.equals(tx.execute(status -> runChunk(jobId, templates)))) {
+                // lot suivant
+            }
+        } catch (Exception e) {
+            logger.error("❌ Campagne {} interrompue : {}", jobId, e.getMessage(), e);
+            tx.executeWithoutResult(status -> campaignJobRepository.findForUpdate(jobId).ifPresent(job -> {
+                job.setStatus(CampaignJob.Status.FAILED);
+                job.setFinishedAt(LocalDateTime.now());
+                String message = String.valueOf(e.getMessage());
+                job.setLastError(message.length() > 1000 ? message.substring(0, 1000) : message);
+            }));
+        }
+    }
+
+    // Modèles figés sur la campagne ; les copies qu'elle crée ne sont jamais réappliquées
+    private List<Action> templatesOf(TransactionTemplate tx, Long jobId) {
+        List<Long> ids = tx.execute(status -> campaignJobRepository.findById(jobId)
+            .map(job -> new ArrayList<>(job.getTemplateIds()))
+            .orElseGet(ArrayList::new));
+        if (ids == null || ids.isEmpty()) {
+            return originalTemplates(); // campagne créée avant le figeage des modèles
+        }
+        return actionRepository.findAllById(ids);
+    }
+
+    private List<Action> originalTemplates() {
+        return actionRepository.findByIsProgrammableTrueAndParentActionIsNull();
+    }
+
+    private boolean runChunk(Long jobId, List<Action> templates) {
+        CampaignJob job = campaignJobRepository.findForUpdate(jobId).orElse(null);
+        if (job == null || job.getStatus() != CampaignJob.Status.RUNNING) {
+            return false; // annulée entre deux lots
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Prospect> prospects = prospectRepository.findCampaignTargets(
+            job.getLastProspectId(), job.getStatut(), job.getSecteur(), job.getPays(), job.getGestionnaire(),
+            PageRequest.of(0, chunkSize));
+        if (prospects.isEmpty()) {
+            job.setStatus(CampaignJob.Status.COMPLETED);
+            job.setFinishedAt(now);
+            job.setHeartbeatAt(now);
+            logger.info("✅ Campagne {} terminée : {} prospect(s), {} action(s), {} email(s)",
+                jobId, job.getProcessedProspects(), job.getCreatedActions(), job.getQueuedEmails());
+            return false;
+        }
+
+        int actions = insertActions(templates, prospects);
+        int emails = queueEmails(templates, prospects);
+
+        job.setLastProspectId(prospects.get(prospects.size() - 1).getId());
+        job.setProcessedProspects(job.getProcessedProspects() + prospects.size());
+        job.setCreatedActions(job.getCreatedActions() + actions);
+        job.setQueuedEmails(job.getQueuedEmails() + emails);
+        job.setHeartbeatAt(now);
+        return true;
+    }
+
+    // Une copie de chaque action programmable par prospect, en un seul batch JDBC
+    private int insertActions(List<Action> templates, List<Prospect> prospects) {
+        Date dueDate = Date.valueOf(LocalDate.now().plusDays(1));
+        List<Object[]> rows = new ArrayList<>(templates.size() * prospects.size());
+        for (Prospect prospect : prospects) {
+            String contact = prospect.getFirstName() + " " + prospect.getLastName();
+            for (Action template : templates) {
+                rows.add(new Object[] {
+                    template.getObjet(), template.getDescription(), true, "non_commence", dueDate,
+                    template.getId(), prospect.getId(), contact, template.getManagerEmail()
+                });
+            }
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ACTION, rows, INSERT_ACTION_TYPES);
+        return rows.size();
+    }
+
+    // 📧 Un rendu groupé par modèle pour tout le lot ; les prospects sans email sont ignorés
+    private int queueEmails(List<Action> templates, List<Prospect> prospects) {
+        List<Map<String, Object>> recipients = new ArrayList<>(prospects.size());
+        for (Prospect prospect : prospects) {
+            if (prospect.getEmail() != null && !prospect.getEmail().isBlank()) {
+                recipients.add(EmailTemplateService.variablesFor(prospect));
+            }
+        }
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+        int queued = 0;
+        for (Action template : templates) {
+            String code = template.getObjet() != null
+                ? TEMPLATE_BY_OBJET.get(template.getObjet().toLowerCase(Locale.ROOT))
+                : null;
+            if (code != null) {
+                queued += emailService.sendTemplateBulk(code, recipients);
+            }
+        }
+        return queued;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+}
@@ -0,0 +1,60 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.repository.UsersRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Cache borné "sub" du JWT (id Keycloak) -> ligne users de l'utilisateur connecté.
+ * Un utilisateur actif ne coûte plus aucune requête ; un absent du cache coûte une lecture
+ * indexée (id_keycloak est unique). Les entrées sont détachées : à traiter en lecture seule.
+ * Invalidé par UsersService (création, modification, suppression) et UserDirectorySync.
+ */
+@Service
+public class CurrentUserCache {
+
+    private final UsersRepository usersRepository;
+    private final Cache<String, Users> cache;
+
+    public CurrentUserCache(
+        UsersRepository usersRepository,
+        MeterRegistry meterRegistry,
+        @Value("${current-user.cache.ttl-seconds:300}") long ttlSeconds,
+        @Value("${current-user.cache.max-size:5000}") long maxSize
+    ) {
+        this.usersRepository = usersRepository;
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .maximumSize(maxSize)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "currentUsers");
+    }
+
+    // Les inconnus ne sont pas mis en cache : un compte créé ensuite est trouvé tout de suite
+    public Optional<Users> get(String keycloakId) {
+        if (keycloakId == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cache.get(keycloakId, id -> usersRepository.findByIdKeycloak(id).orElse(null)));
+    }
+
+    public void invalidate(String keycloakId) {
+        if (keycloakId != null) {
+            cache.invalidate(keycloakId);
+        }
+    }
+
+    public void invalidateAll(Collection<String> keycloakIds) {
+        cache.invalidateAll(keycloakIds);
+    }
+}
@@ -0,0 +1,303 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.EmailOutbox;
+import com.backend.qu2data.entites.SpooledAttachment;
+import com.backend.qu2data.repository.EmailOutboxRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import jakarta.activation.FileDataSource;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vide l'outbox email vers le serveur SMTP, hors du thread HTTP.
+ *
+ * Le lot réclamé (FOR UPDATE SKIP LOCKED + bail) est découpé en paquets de
+ * mail.outbox.messages-per-connection ; chaque paquet part sur le pool "mailExecutor" en un seul
+ * appel JavaMailSender.send(MimeMessage...), donc sur une seule connexion SMTP.
+ * Les emails envoyés sont supprimés avec leur spool ; les échecs temporaires sont replanifiés
+ * avec un délai exponentiel, les adresses refusées et les échecs répétés passent en DEAD.
+ * Métriques : mail.outbox.sent / failed / dead, mail.outbox.connection (durée d'un paquet),
+ * mail.outbox.pending (compté une fois par relève, pas à chaque lecture des métriques).
+ */
+@Service
+public class EmailOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private JavaMailSender mailSender;
+
+    @Autowired
+    @Qualifier("mailExecutor")
+    private ThreadPoolTaskExecutor mailExecutor;
+
+    @Autowired
+    @Qualifier("taskScheduler")
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MailAttachmentStore mailAttachmentStore;
+
+    @Value("${mail.outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${mail.outbox.messages-per-connection:50}")
+    private int messagesPerConnection;
+
+    @Value("${mail.outbox.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.retry-base-ms:30000}")
+    private long retryBaseMs;
+
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter deadCounter;
+    private final Timer connectionTimer;
+
+    private final AtomicBoolean wakeRequested = new AtomicBoolean(false);
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private final AtomicLong pending = new AtomicLong();
+
+    public EmailOutboxDispatcher(MeterRegistry meterRegistry) {
+        this.sentCounter = meterRegistry.counter("mail.outbox.sent");
+        this.failedCounter = meterRegistry.counter("mail.outbox.failed");
+        this.deadCounter = meterRegistry.counter("mail.outbox.dead");
+        this.connectionTimer = meterRegistry.timer("mail.outbox.connection");
+        Gauge.builder("mail.outbox.pending", pending, AtomicLong::get)
+            .register(meterRegistry);
+    }
+
+    // 🔔 Appelé après commit : envoi immédiat au lieu d'attendre le prochain tick
+    public void wakeUp() {
+        if (wakeRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::poll, Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${mail.outbox.poll-interval-ms:5000}")
+    public void poll() {
+        wakeRequested.set(false);
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int claimed;
+            do {
+                claimed = drainBatch();
+            } while (claimed == batchSize);
+            pending.set(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING));
+        } catch (Exception e) {
+            logger.error("❌ Relève de l'outbox email interrompue : {}", e.getMessage(), e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    private int drainBatch() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<EmailOutbox> batch = tx.execute(status -> {
+            List<EmailOutbox> rows = emailOutboxRepository.claimBatch(LocalDateTime.now(), batchSize);
+            LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(leaseSeconds);
+            for (EmailOutbox row : rows) {
+                row.setNextAttemptAt(leaseUntil);
+                row.getAttachments().size(); // chargées avant la fin de la transaction
+            }
+            return rows;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Queue<EmailOutbox> sent = new ConcurrentLinkedQueue<>();
+        Queue<EmailOutbox> failed = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> connections = new ArrayList<>();
+        for (int from = 0; from < batch.size(); from += messagesPerConnection) {
+            List<EmailOutbox> chunk = batch.subList(from, Math.min(from + messagesPerConnection, batch.size()));
+            connections.add(CompletableFuture.runAsync(() -> sendChunk(chunk, sent, failed), mailExecutor));
+        }
+        CompletableFuture.allOf(connections.toArray(new CompletableFuture[0])).join();
+
+        tx.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                List<Long> ids = sent.stream().map(EmailOutbox::getId).toList();
+                emailOutboxRepository.deleteAttachmentsOf(ids);
+                emailOutboxRepository.deleteAllByIdInBatch(ids);
+            }
+            for (EmailOutbox row : failed) {
+                reschedule(row);
+            }
+        });
+        for (EmailOutbox row : sent) {
+            deleteSpool(row);
+        }
+        return batch.size();
+    }
+
+    // Un paquet = une connexion SMTP ; MailSendException indique précisément les messages refusés
+    private void sendChunk(List<EmailOutbox> chunk, Queue<EmailOutbox> sent, Queue<EmailOutbox> failed) {
+        Map<MimeMessage, EmailOutbox> prepared = new IdentityHashMap<>();
+        for (EmailOutbox row : chunk) {
+            try {
+                prepared.put(toMimeMessage(row), row);
+            } catch (MessagingException | RuntimeException e) {
+                markFailed(row, e, true, failed);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return;
+        }
+
+        Timer.Sample sample = Timer.start();
+        try {
+            mailSender.send(prepared.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> refused = e.getFailedMessages();
+            for (Map.Entry<Object, Exception> entry : refused.entrySet()) {
+                EmailOutbox row = prepared.remove(entry.getKey());
+                if (row != null) {
+                    markFailed(row, entry.getValue(), entry.getValue() instanceof SendFailedException, failed);
+                }
+            }
+            if (refused.isEmpty()) {
+                prepared.values().forEach(row -> markFailed(row, e, false, failed));
+                prepared.clear();
+            }
+        } catch (MailException e) {
+            // Authentification, connexion... : tout le paquet est à refaire
+            prepared.values().forEach(row -> markFailed(row, e, false, failed));
+            prepared.clear();
+        } finally {
+            sample.stop(connectionTimer);
+        }
+
+        sent.addAll(prepared.values());
+        sentCounter.increment(prepared.size());
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox row) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, !row.getAttachments().isEmpty(), "UTF-8");
+        helper.setTo(row.getRecipient());
+        helper.setSubject(row.getSubject());
+        helper.setText(row.getBody(), Boolean.TRUE.equals(row.getHtml()));
+        if (row.getSender() != null) {
+            helper.setFrom(row.getSender());
+        }
+        // 📎 DataSource sur fichier : lu en flux au moment de l'écriture sur la connexion
+        for (SpooledAttachment attachment : row.getAttachments()) {
+            helper.addAttachment(attachment.getFilename(), dataSource(attachment));
+        }
+        return message;
+    }
+
+    private static FileDataSource dataSource(SpooledAttachment attachment) {
+        String contentType = attachment.getContentType();
+        if (contentType == null) {
+            return new FileDataSource(attachment.getPath());
+        }
+        return new FileDataSource(attachment.getPath()) {
+            @Override
+            public String getContentType() {
+                return contentType;
+            }
+        };
+    }
+
+    private void markFailed(EmailOutbox row, Exception e, boolean permanent, Queue<EmailOutbox> failed) {
+        logger.warn("⚠️ Email {} vers {} non envoyé (tentative {}) : {}",
+            row.getId(), row.getRecipient(), row.getAttempts() + 1, e.getMessage());
+        row.setLastError(e.getMessage());
+        if (permanent) {
+            row.setAttempts(maxAttempts - 1); // adresse refusée ou message invalide : inutile de réessayer
+        }
+        failed.add(row);
+        failedCounter.increment();
+    }
+
+    private void reschedule(EmailOutbox row) {
+        int attempts = row.getAttempts() + 1;
+        row.setAttempts(attempts);
+        if (row.getLastError() != null && row.getLastError().length() > 1000) {
+            row.setLastError(row.getLastError().substring(0, 1000));
+        }
+        if (attempts >= maxAttempts) {
+            row.setStatus(EmailOutbox.Status.DEAD);
+            deadCounter.increment();
+            logger.error("❌ Email {} vers {} abandonné après {} tentatives", row.getId(), row.getRecipient(), attempts);
+        } else {
+            long delayMs = retryBaseMs * (1L << Math.min(attempts - 1, 10));
+            row.setNextAttemptAt(LocalDateTime.now().plusNanos(delayMs * 1_000_000));
+        }
+        emailOutboxRepository.save(row);
+    }
+
+    // Répertoires propres à l'email (offre PDF générée...) supprimés une fois l'email parti ;
+    // les fichiers partagés sont nettoyés par MailAttachmentStore.sweep quand plus personne ne les référence
+    private void deleteSpool(EmailOutbox row) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        for (SpooledAttachment attachment : row.getAttachments()) {
+            Path path = Paths.get(attachment.getPath());
+            if (!mailAttachmentStore.isShared(path)) {
+                dirs.add(path.getParent());
+            }
+        }
+        for (Path dir : dirs) {
+            try {
+                FileSystemUtils.deleteRecursively(dir);
+            } catch (IOException e) {
+                logger.warn("⚠️ Spool {} non supprimé : {}", dir, e.getMessage());
+            }
+        }
+    }
+}
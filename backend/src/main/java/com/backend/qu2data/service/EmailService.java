@@ -1,41 +1,77 @@
 package com.backend.qu2data.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
 
 import com.backend.qu2data.entites.AttachmentDTO;
+import com.backend.qu2data.entites.EmailOutbox;
+import com.backend.qu2data.entites.SpooledAttachment;
+import com.backend.qu2data.model.OfferDocument;
+import com.backend.qu2data.model.RenderedEmail;
+import com.backend.qu2data.repository.EmailOutboxRepository;
 
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.mail.javamail.MimeMessageHelper;
-import jakarta.mail.internet.MimeMessage;
-
+/**
+ * 📧 Emails sortants : chaque méthode enregistre l'email dans l'outbox (email_outbox) et rend
+ * la main ; l'envoi SMTP, les reprises et le suivi sont faits par EmailOutboxDispatcher.
+ * Les textes viennent des modèles Mustache d'EmailTemplateService (codes "qualification", "offer", "closing").
+ */
 @Service
 public class EmailService {
 
+    private static final Logger logger = LoggerFactory.getLogger(EmailService.class);
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Autowired
+    private EmailOutboxDispatcher emailOutboxDispatcher;
+
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailTemplateService emailTemplateService;
+
+    @Autowired
+    private PdfService pdfService;
+
+    @Autowired
+    private MailAttachmentStore mailAttachmentStore;
+
+    // Expéditeur par modèle (null = adresse par défaut du serveur SMTP)
+    private static final Map<String, String> DEFAULT_SENDERS = Map.of(
+        "qualification", "farah.dridi2222@gmail.com",
+        "closing", "ton.email@gmail.com"
+    );
+
+    @Value("${mail.outbox.spool-dir:mail-spool}")
+    private String spoolDir;
 
+    @Transactional
     public void sendQualificationEmail(String to, String firstName, String companyName) {
-        String subject = "Confirmation d'intérêt - " + companyName;
-        String text = String.format(
-            "Bonjour %s,\n\nMerci pour votre intérêt.\n" +
-            "Pourriez-vous nous donner plus d'infos sur votre budget, échéance et vos besoins ?\n\n" +
-            "Cordialement,\nVotre équipe",
-            firstName
-        );
-
-        SimpleMailMessage message = new SimpleMailMessage();
-        message.setTo(to);
-        message.setSubject(subject);
-        message.setText(text);
-        message.setFrom("farah.dridi2222@gmail.com");
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("firstName", firstName);
+        vars.put("company", companyName);
 
-        mailSender.send(message);
+        sendTemplate("qualification", to, DEFAULT_SENDERS.get("qualification"), vars, List.of());
     }
    /* public void sendOfferEmailWithPdf(String to, String fullName, String company, byte[] pdfContent) throws Exception {
         MimeMessage message = mailSender.createMimeMessage();
@@ -50,41 +86,183 @@ public class EmailService {
 
         mailSender.send(message);
     }*/
+    @Transactional
     public void sendOfferEmailWithPdf(String to, String fullName, String company, List<AttachmentDTO> attachments) throws Exception {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("fullName", fullName);
+        vars.put("company", company);
 
-        helper.setTo(to);
-        helper.setSubject("📄 Offre personnalisée - " + company);
-        helper.setText("Bonjour " + fullName + ",\n\nVeuillez trouver ci-joint votre document personnalisé.");
+        sendTemplate("offer", to, null, vars, attachments);
+    }
+
+    // 📨 Même offre pour plusieurs destinataires : tous mis en file dans une seule transaction (tout ou rien)
+    @Transactional
+    public int sendOfferEmailToAll(List<String> recipients, String fullName, String company, List<AttachmentDTO> attachments) {
+        List<Map<String, Object>> batch = new ArrayList<>(recipients.size());
+        for (String recipient : recipients) {
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("email", recipient);
+            vars.put("fullName", fullName);
+            vars.put("company", company);
+            batch.add(vars);
+        }
+        return sendTemplateBulk("offer", batch, attachments);
+    }
 
-        for (AttachmentDTO file : attachments) {
-            helper.addAttachment(file.getFilename(), new ByteArrayResource(file.getFileBytes()));
+    /**
+     * 📄 Offre PDF générée directement dans le répertoire de spool de l'email (aucune copie
+     * en mémoire du document), puis mise en file avec le modèle "offer".
+     */
+    @Transactional
+    public EmailOutbox sendOfferDocument(OfferDocument offer) {
+        if (!StringUtils.hasText(offer.getEmail())) {
+            throw new IllegalArgumentException("Destinataire manquant");
         }
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("fullName", offer.getFullName());
+        vars.put("company", offer.getCompany());
+        RenderedEmail rendered = emailTemplateService.render("offer", vars);
 
-        mailSender.send(message);
+        Path dir = createSpoolDirectory();
+        String name = safeName("offre-" + (StringUtils.hasText(offer.getCompany()) ? offer.getCompany() : "qu2data") + ".pdf");
+        Path file = dir.resolve("0-" + name);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            pdfService.writeOfferPdf(offer, out);
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur génération de l'offre PDF", e);
+        }
+        List<SpooledAttachment> spooled = new ArrayList<>();
+        spooled.add(new SpooledAttachment(name, file.toAbsolutePath().toString(), "application/pdf"));
+        return save(offer.getEmail(), null, rendered.getSubject(), rendered.getBody(), rendered.isHtml(), spooled);
     }
 
+    @Transactional
     public void sendClosingEmailWithFile(String to, String clientName, String company, List<AttachmentDTO> files) throws Exception {
-        MimeMessage message = mailSender.createMimeMessage();
-        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("fullName", clientName);
+        vars.put("company", company);
 
-        helper.setTo(to);
-        helper.setSubject("✅ Finalisation du contrat - " + company);
-        helper.setFrom("ton.email@gmail.com");
+        sendTemplate("closing", to, DEFAULT_SENDERS.get("closing"), vars, files);
+    }
 
-        String body = "<p>Bonjour <strong>" + clientName + "</strong>,</p>"
-                    + "<p>Merci pour votre confiance. Votre contrat est signé, et le service est activé.</p>"
-                    + "<p>📎 Veuillez trouver ci-joint le(s) document(s) final(aux).</p>"
-                    + "<p>Cordialement,<br>L'équipe " + company + "</p>";
+    /**
+     * 📨 Même modèle pour tout un lot de destinataires (variable "email") :
+     * rendu en une passe sur le modèle compilé, puis mise en file dans la transaction courante.
+     * Les destinataires sans email sont ignorés ; retourne le nombre d'emails mis en file.
+     */
+    @Transactional
+    public int sendTemplateBulk(String code, List<? extends Map<String, ?>> recipients) {
+        return sendTemplateBulk(code, recipients, List.of());
+    }
+
+    // Les pièces jointes sont déposées une fois et référencées par chaque email du lot
+    @Transactional
+    public int sendTemplateBulk(String code, List<? extends Map<String, ?>> recipients, List<AttachmentDTO> attachments) {
+        String from = DEFAULT_SENDERS.get(code);
+        List<Map<String, ?>> addressed = new ArrayList<>(recipients.size());
+        List<String> to = new ArrayList<>(recipients.size());
+        for (Map<String, ?> recipient : recipients) {
+            Object email = recipient.get("email");
+            if (email == null || !StringUtils.hasText(email.toString())) {
+                logger.warn("⚠️ Destinataire sans email ignoré pour le modèle {}", code);
+                continue;
+            }
+            addressed.add(recipient);
+            to.add(email.toString().trim());
+        }
+        if (addressed.isEmpty()) {
+            return 0;
+        }
+        List<SpooledAttachment> shared = mailAttachmentStore.share(attachments);
+        List<RenderedEmail> rendered = emailTemplateService.renderAll(code, addressed);
+        for (int i = 0; i < rendered.size(); i++) {
+            RenderedEmail email = rendered.get(i);
+            save(to.get(i), from, email.getSubject(), email.getBody(), email.isHtml(), copies(shared));
+        }
+        return rendered.size();
+    }
 
-        helper.setText(body, true);
+    // 📝 Email rendu depuis un modèle (compilé une fois, voir EmailTemplateService)
+    @Transactional
+    public EmailOutbox sendTemplate(String code, String to, String from, Map<String, ?> variables, List<AttachmentDTO> attachments) {
+        RenderedEmail rendered = emailTemplateService.render(code, variables);
+        return enqueue(to, from, rendered.getSubject(), rendered.getBody(), rendered.isHtml(), attachments);
+    }
 
-        for (AttachmentDTO file : files) {
-            helper.addAttachment(file.getFilename(), new ByteArrayResource(file.getFileBytes()));
+    /**
+     * 📮 Met un email en file d'envoi. Les pièces jointes restent sur disque (MailAttachmentStore) :
+     * la ligne en base ne contient que leurs chemins.
+     */
+    @Transactional
+    public EmailOutbox enqueue(String to, String from, String subject, String body, boolean html, List<AttachmentDTO> attachments) {
+        if (!StringUtils.hasText(to)) {
+            throw new IllegalArgumentException("Destinataire manquant");
         }
+        return save(to, from, subject, body, html, mailAttachmentStore.share(attachments));
+    }
 
-        mailSender.send(message);
+    private EmailOutbox save(String to, String from, String subject, String body, boolean html, List<SpooledAttachment> attachments) {
+        EmailOutbox email = new EmailOutbox();
+        email.setRecipient(to);
+        email.setSender(from);
+        email.setSubject(subject);
+        email.setBody(body);
+        email.setHtml(html);
+        email.setAttachments(attachments);
+
+        LocalDateTime now = LocalDateTime.now();
+        email.setCreatedAt(now);
+        email.setNextAttemptAt(now);
+        EmailOutbox saved = emailOutboxRepository.save(email);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                emailOutboxDispatcher.wakeUp();
+            }
+        });
+        return saved;
+    }
+
+    // Une collection d'éléments embarqués ne se partage pas entre entités : une copie par email
+    private static List<SpooledAttachment> copies(List<SpooledAttachment> shared) {
+        List<SpooledAttachment> copies = new ArrayList<>(shared.size());
+        for (SpooledAttachment attachment : shared) {
+            copies.add(new SpooledAttachment(attachment.getFilename(), attachment.getPath(), attachment.getContentType()));
+        }
+        return copies;
+    }
+
+    // Un répertoire par email, supprimé si la transaction échoue
+    private Path createSpoolDirectory() {
+        Path dir = Paths.get(spoolDir, UUID.randomUUID().toString());
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur création du répertoire de spool", e);
+        }
+        deleteOnRollback(dir);
+        return dir;
+    }
+
+    private static void deleteOnRollback(Path dir) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    try {
+                        FileSystemUtils.deleteRecursively(dir);
+                    } catch (IOException ignored) {
+                        // nettoyage au mieux
+                    }
+                }
+            }
+        });
+    }
+
+    private static String safeName(String filename) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(filename != null ? filename : ""));
+        return StringUtils.hasText(name) ? name : "piece-jointe";
     }
    /* public void sendEmailWithAttachments(String to, String subject, String htmlBody, String sender, List<AttachmentDTO> attachments) throws Exception {
         MimeMessage message = javaMailSender.createMimeMessage();
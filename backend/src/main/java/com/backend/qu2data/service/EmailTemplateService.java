@@ -0,0 +1,210 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.EmailTemplate;
+import com.backend.qu2data.entites.Prospect;
+import com.backend.qu2data.model.RenderedEmail;
+import com.backend.qu2data.repository.EmailTemplateRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.samskivert.mustache.Mustache;
+import com.samskivert.mustache.MustacheException;
+import com.samskivert.mustache.Template;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rendu des emails à partir de modèles Mustache.
+ * Un modèle est compilé une seule fois puis gardé en cache (Caffeine, expiration courte pour
+ * voir les modifications faites sur une autre instance) ; le rendu ne fait que parcourir
+ * l'arbre compilé. renderAll rend tout un lot de destinataires avec le même modèle compilé.
+ * Les variables sont échappées dans les modèles HTML, jamais dans le sujet.
+ */
+@Service
+public class EmailTemplateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmailTemplateService.class);
+
+    private static final String SUBJECT_SEPARATOR = "\n---\n";
+
+    private final EmailTemplateRepository emailTemplateRepository;
+    private final Cache<String, CompiledTemplate> cache;
+
+    private final Mustache.Compiler textCompiler = Mustache.compiler().defaultValue("").emptyStringIsFalse(true).escapeHTML(false);
+    private final Mustache.Compiler htmlCompiler = Mustache.compiler().defaultValue("").emptyStringIsFalse(true).escapeHTML(true);
+
+    public EmailTemplateService(
+        EmailTemplateRepository emailTemplateRepository,
+        MeterRegistry meterRegistry,
+        @Value("${mail.templates.cache-ttl-seconds:300}") long ttlSeconds
+    ) {
+        this.emailTemplateRepository = emailTemplateRepository;
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .maximumSize(500)
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "emailTemplates");
+    }
+
+    public RenderedEmail render(String code, Map<String, ?> variables) {
+        return compiled(code).render(variables, new StringWriter());
+    }
+
+    // 📨 Rendu en masse : un seul modèle compilé, tampon dimensionné sur le rendu précédent
+    public List<RenderedEmail> renderAll(String code, List<? extends Map<String, ?>> variables) {
+        CompiledTemplate template = compiled(code);
+        List<RenderedEmail> rendered = new ArrayList<>(variables.size());
+        int capacity = 256;
+        for (Map<String, ?> vars : variables) {
+            RenderedEmail email = template.render(vars, new StringWriter(capacity));
+            capacity = email.getBody().length() + 64;
+            rendered.add(email);
+        }
+        return rendered;
+    }
+
+    public List<EmailTemplate> findAll() {
+        return emailTemplateRepository.findAll();
+    }
+
+    public EmailTemplate findByCode(String code) {
+        return emailTemplateRepository.findByCode(code)
+            .orElseThrow(() -> new IllegalArgumentException("Modèle d'email inconnu : " + code));
+    }
+
+    // ✏️ Création / modification : le modèle est compilé avant d'être enregistré (400 si invalide) ;
+    // le cache n'est mis à jour qu'après commit (un rollback ne laisse pas un modèle fantôme en cache)
+    @Transactional
+    public EmailTemplate save(String code, EmailTemplate input) {
+        CompiledTemplate compiled = compile(input.getSubject(), input.getBody(), Boolean.TRUE.equals(input.getHtml()));
+
+        EmailTemplate template = emailTemplateRepository.findByCode(code).orElseGet(EmailTemplate::new);
+        template.setCode(code);
+        template.setSubject(input.getSubject());
+        template.setBody(input.getBody());
+        template.setHtml(Boolean.TRUE.equals(input.getHtml()));
+        template.setUpdatedAt(LocalDateTime.now());
+        EmailTemplate saved = emailTemplateRepository.save(template);
+        runAfterCommit(() -> cache.put(code, compiled));
+        return saved;
+    }
+
+    // Variables standard d'un prospect, utilisées par les modèles par défaut
+    public static Map<String, Object> variablesFor(Prospect prospect) {
+        Map<String, Object> vars = new HashMap<>();
+        vars.put("firstName", prospect.getFirstName());
+        vars.put("lastName", prospect.getLastName());
+        vars.put("fullName", prospect.getFirstName() + " " + prospect.getLastName());
+        vars.put("email", prospect.getEmail());
+        vars.put("company", prospect.getSociete());
+        vars.put("phone", prospect.getPhone());
+        vars.put("city", prospect.getVille());
+        vars.put("country", prospect.getPays());
+        return vars;
+    }
+
+    // 🔁 Au démarrage : les modèles par défaut absents de la base y sont ajoutés (jamais écrasés,
+    // INSERT ... ON CONFLICT DO NOTHING : sans course entre instances qui démarrent ensemble)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void seedDefaults() {
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:email-templates/*.mustache");
+            for (Resource resource : resources) {
+                String filename = resource.getFilename();
+                String code = filename.substring(0, filename.indexOf('.'));
+                String content = resource.getContentAsString(StandardCharsets.UTF_8).replace("\r\n", "\n");
+                int separator = content.indexOf(SUBJECT_SEPARATOR);
+                if (separator < 0) {
+                    logger.warn("⚠️ Modèle {} ignoré : sujet manquant", filename);
+                    continue;
+                }
+                int inserted = emailTemplateRepository.insertIfAbsent(code,
+                    content.substring(0, separator).trim(),
+                    content.substring(separator + SUBJECT_SEPARATOR.length()),
+                    filename.endsWith(".html.mustache"));
+                if (inserted > 0) {
+                    logger.info("✅ Modèle d'email par défaut ajouté : {}", code);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("❌ Lecture des modèles d'email impossible : {}", e.getMessage(), e);
+        }
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private CompiledTemplate compiled(String code) {
+        return cache.get(code, key -> {
+            EmailTemplate template = findByCode(key);
+            return compile(template.getSubject(), template.getBody(), Boolean.TRUE.equals(template.getHtml()));
+        });
+    }
+
+    private CompiledTemplate compile(String subject, String body, boolean html) {
+        if (subject == null || body == null) {
+            throw new IllegalArgumentException("Sujet et corps du modèle obligatoires");
+        }
+        try {
+            return new CompiledTemplate(
+                textCompiler.compile(subject),
+                (html ? htmlCompiler : textCompiler).compile(body),
+                html);
+        } catch (MustacheException e) {
+            throw new IllegalArgumentException("Modèle invalide : " + e.getMessage(), e);
+        }
+    }
+
+    private static final class CompiledTemplate {
+
+        private final Template subject;
+        private final Template body;
+        private final boolean html;
+
+        private CompiledTemplate(Template subject, Template body, boolean html) {
+            this.subject = subject;
+            this.body = body;
+            this.html = html;
+        }
+
+        private RenderedEmail render(Map<String, ?> variables, StringWriter out) {
+            body.execute(variables, out);
+            return new RenderedEmail(subject.execute(variables).trim(), out.toString(), html);
+        }
+    }
+}
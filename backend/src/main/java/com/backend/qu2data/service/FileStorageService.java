@@ -1,40 +1,230 @@
 package com.backend.qu2data.service;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.UUID;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
 
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.backend.qu2data.entites.Attachment;
+import com.backend.qu2data.repository.StoredBlobRepository;
 
+/**
+ * Moteur de stockage unique des pièces jointes, adressé par contenu.
+ * Chaque fichier est stocké une fois sous la clé blobs/ab/cd/{sha256} et partagé par toutes
+ * les pièces jointes identiques (compteur de références dans stored_blobs).
+ * L'upload est d'abord haché en flux : si le contenu est déjà connu, rien n'est écrit.
+ * Sinon il est transmis en flux au {@link BlobStore} configuré (disque ou S3) : la mémoire
+ * utilisée ne dépend pas de la taille du fichier.
+ * Upload et suppression d'un même contenu sont sérialisés par un verrou transactionnel sur le hash :
+ * un upload qui trouve le fichier existant ne peut pas le voir supprimé par un nettoyage concurrent.
+ */
 @Service
 public class FileStorageService {
 
+    public static final String PUBLIC_PREFIX = "/uploads/";
+    private static final String BLOBS_DIR = "blobs";
+    private static final String DERIVATIVES_DIR = "derivatives";
+
+    @Autowired
+    private StoredBlobRepository storedBlobRepository;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${storage.presigned-url-ttl:PT5M}")
+    private Duration presignedUrlTtl;
+
+    @Value("${storage.upload-dir:uploads}")
+    private String uploadDir;
+
+    // Transaction de l'appelant (ou la sienne) : le verrou du hash est gardé jusqu'au commit de la référence
+    @Transactional
     public Attachment saveFile(MultipartFile file) {
         try {
-            String filename = UUID.randomUUID() + "_" + file.getOriginalFilename();
-            Path filePath = Paths.get("uploads", filename);
+            // 1) Empreinte du contenu (le multipart est déjà sur disque côté serveur, relu en flux)
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+                size = in.transferTo(OutputStream.nullOutputStream());
+            }
+            String hash = HexFormat.of().formatHex(sha256.digest());
+            String contentType = file.getContentType() != null ? file.getContentType() : "application/octet-stream";
 
-            Files.createDirectories(filePath.getParent());
-            Files.write(filePath, file.getBytes());
+            // 2) Contenu inconnu (ou objet absent) : écriture ; sinon simple référence de plus
+            String key = blobKey(hash);
+            storedBlobRepository.lock(hash);
+            if (!blobStore.exists(key)) {
+                try (InputStream in = file.getInputStream()) {
+                    blobStore.put(key, in, size, contentType);
+                }
+                deleteOnRollback(hash);
+            }
+            storedBlobRepository.acquire(hash, size);
 
             Attachment attachment = new Attachment();
-            attachment.setPath("/uploads/" + filename); // ✅ correspond à ton champ `path`
-            attachment.setName(filename);
-            attachment.setType(file.getContentType());
-            attachment.setSize((int) file.getSize()); // ou chemin absolu selon ton app
-            attachment.setType(file.getContentType());
+            attachment.setPath(publicPath(key));
+            attachment.setName(safeName(file.getOriginalFilename()));
+            attachment.setType(contentType);
+            attachment.setSize(Math.toIntExact(size));
+            attachment.setChecksum(hash);
 
             return attachment;
 
-        } catch (IOException e) {
+        } catch (IOException | NoSuchAlgorithmException | ArithmeticException e) {
             throw new RuntimeException("Erreur sauvegarde fichier", e);
         }
     }
-}
 
+    /**
+     * 🗑️ Retire la référence d'une pièce jointe ; le fichier n'est supprimé qu'avec la dernière,
+     * après commit. Les anciens fichiers (hors blobs/) ne sont pas touchés.
+     */
+    public void release(Attachment attachment) {
+        String hash = attachment.getChecksum();
+        if (hash == null || !attachment.getPath().startsWith(PUBLIC_PREFIX + BLOBS_DIR + "/")) {
+            return;
+        }
+        storedBlobRepository.release(hash);
+        if (storedBlobRepository.deleteIfUnreferenced(hash) > 0) {
+            runAfterCommit(() -> deleteIfUnreferenced(hash, true));
+        }
+    }
+
+    /**
+     * 📂 Fichier local d'un chemin stocké en base ; vide si le contenu est dans un stockage distant.
+     * IllegalArgumentException si le chemin sort de storage.upload-dir ("..", chemin absolu quelconque).
+     */
+    public Optional<Path> localFile(String path) {
+        String key = keyOf(path);
+        return key != null ? blobStore.localPath(checkedKey(key)) : Optional.of(legacyFile(path));
+    }
+
+    public InputStream open(String path) throws IOException {
+        String key = keyOf(path);
+        return key != null ? blobStore.open(checkedKey(key)) : Files.newInputStream(legacyFile(path));
+    }
+
+    // 🔗 URL de téléchargement direct (S3), valable storage.presigned-url-ttl
+    public Optional<String> presignedUrl(String path, String contentDisposition, String contentType) {
+        String key = keyOf(path);
+        return key != null ? blobStore.presignedUrl(checkedKey(key), presignedUrlTtl, contentDisposition, contentType) : Optional.empty();
+    }
+
+    // 🔒 Ancien fichier (uploads/{uuid}_{nom} ou chemin absolu) : uniquement sous storage.upload-dir
+    public Path legacyFile(String path) {
+        Path root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        String key = keyOf(path);
+        Path file = (key != null ? root.resolve(key) : Paths.get(path)).toAbsolutePath().normalize();
+        if (!file.startsWith(root)) {
+            throw new IllegalArgumentException("Chemin hors du stockage : " + path);
+        }
+        return file;
+    }
+
+    // "/uploads/blobs/..." -> "blobs/..." ; null pour un ancien chemin absolu
+    public static String keyOf(String path) {
+        return path.startsWith(PUBLIC_PREFIX) ? path.substring(PUBLIC_PREFIX.length()) : null;
+    }
+
+    private static String checkedKey(String key) {
+        Path normalized = Paths.get(key).normalize();
+        if (key.isEmpty() || normalized.isAbsolute() || normalized.startsWith("..")) {
+            throw new IllegalArgumentException("Clé de stockage invalide : " + key);
+        }
+        return key;
+    }
+
+    public static String publicPath(String key) {
+        return PUBLIC_PREFIX + key;
+    }
+
+    // blobs/ab/cd/abcd... : deux niveaux de 256 préfixes
+    public static String blobKey(String hash) {
+        return BLOBS_DIR + "/" + shard(hash);
+    }
+
+    // 🖼️ Dérivés d'un contenu (miniatures...) : derivatives/ab/cd/{sha256}/{nom}
+    public static String derivativeKey(String hash, String name) {
+        return derivativePrefix(hash) + name;
+    }
+
+    private static String derivativePrefix(String hash) {
+        return DERIVATIVES_DIR + "/" + shard(hash) + "/";
+    }
+
+    private static String shard(String hash) {
+        return hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    private static String safeName(String originalFilename) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(originalFilename != null ? originalFilename : ""));
+        return StringUtils.hasText(name) ? name : "fichier";
+    }
+
+    // Si la transaction du message échoue, un blob écrit pour rien ne doit pas rester orphelin
+    void deleteOnRollback(String hash) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    deleteIfUnreferenced(hash, false);
+                }
+            }
+        });
+    }
+
+    // 🔒 Sous le verrou du hash : un upload concurrent a pu recréer la référence entre-temps
+    private void deleteIfUnreferenced(String hash, boolean withDerivatives) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        tx.executeWithoutResult(status -> {
+            storedBlobRepository.lock(hash);
+            if (!storedBlobRepository.existsById(hash)) {
+                blobStore.delete(blobKey(hash));
+                if (withDerivatives) {
+                    blobStore.deletePrefix(derivativePrefix(hash));
+                }
+            }
+        });
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,196 @@
+package com.backend.qu2data.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import javax.ws.rs.ClientErrorException;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.ServerErrorException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 🛡️ Protection des appels vers Keycloak : cloison (bulkhead) + disjoncteur + métriques par opération.
+ *
+ * - Cloison : au plus keycloak.bulkhead.max-concurrent appels simultanés ; au-delà, attente
+ *   bornée (keycloak.bulkhead.max-wait) puis repli. Un Keycloak lent ne peut plus occuper tous
+ *   les threads Tomcat.
+ * - Disjoncteur : après keycloak.circuit.failure-threshold échecs consécutifs (I/O, délai, 5xx),
+ *   les appels sont court-circuités pendant keycloak.circuit.open-duration ; ensuite un seul
+ *   appel d'essai décide de la réouverture ou de la fermeture. Les 4xx ne comptent pas ; les autres
+ *   exceptions (bogue local, réponse illisible...) sont relancées sans toucher au disjoncteur.
+ * - Repli : la valeur dégradée fournie par l'appelant (copie locale de l'annuaire...) ; sans repli,
+ *   une RuntimeException est levée.
+ * Métriques : keycloak.calls{operation, outcome=success|failure|error|rejected|short_circuited},
+ * keycloak.circuit.open (1 = ouvert).
+ */
+@Service
+public class KeycloakCallGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeycloakCallGuard.class);
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final MeterRegistry meterRegistry;
+    private final Semaphore bulkhead;
+    private final Duration maxWait;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAtNanos;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean trialInFlight = new AtomicBoolean(false);
+
+    public KeycloakCallGuard(
+            MeterRegistry meterRegistry,
+            @Value("${keycloak.bulkhead.max-concurrent:10}") int maxConcurrent,
+            @Value("${keycloak.bulkhead.max-wait:PT0.2S}") Duration maxWait,
+            @Value("${keycloak.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${keycloak.circuit.open-duration:PT30S}") Duration openDuration) {
+        this.meterRegistry = meterRegistry;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.maxWait = maxWait;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        Gauge.builder("keycloak.circuit.open", this, guard -> guard.state == State.CLOSED ? 0 : 1)
+            .register(meterRegistry);
+    }
+
+    public <T> T call(String operation, Supplier<T> action) {
+        return call(operation, action, null);
+    }
+
+    public <T> T call(String operation, Supplier<T> action, Supplier<T> fallback) {
+        boolean trial = false;
+        if (state != State.CLOSED) {
+            trial = tryStartTrial();
+            if (!trial) {
+                record(operation, "short_circuited", 0);
+                return degrade(operation, fallback, "circuit ouvert");
+            }
+        }
+
+        if (!acquire()) {
+            if (trial) {
+                trialInFlight.set(false);
+            }
+            record(operation, "rejected", 0);
+            return degrade(operation, fallback, "trop d'appels simultanés");
+        }
+
+        long start = System.nanoTime();
+        try {
+            T result = action.get();
+            onSuccess();
+            record(operation, "success", System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            if (isClientError(e)) {
+                onSuccess(); // Keycloak a répondu : erreur fonctionnelle, à traiter par l'appelant
+                record(operation, "success", System.nanoTime() - start);
+                throw e;
+            }
+            if (!isFailure(e)) {
+                record(operation, "error", System.nanoTime() - start);
+                throw e;
+            }
+            onFailure(operation, e);
+            record(operation, "failure", System.nanoTime() - start);
+            if (fallback == null) {
+                throw e;
+            }
+            return fallback.get();
+        } finally {
+            bulkhead.release();
+            if (trial) {
+                trialInFlight.set(false);
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return state == State.OPEN && System.nanoTime() - openedAtNanos < openDuration.toNanos();
+    }
+
+    // Ouvert depuis assez longtemps : un seul appel d'essai à la fois
+    private boolean tryStartTrial() {
+        if (isOpen()) {
+            return false;
+        }
+        if (!trialInFlight.compareAndSet(false, true)) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        return true;
+    }
+
+    private boolean acquire() {
+        try {
+            return bulkhead.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void onSuccess() {
+        consecutiveFailures.set(0);
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            logger.info("✅ Keycloak répond de nouveau : disjoncteur fermé");
+        }
+    }
+
+    private void onFailure(String operation, RuntimeException e) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                logger.warn("⚠️ Disjoncteur Keycloak ouvert après {} échec(s) ({} : {})", failures, operation, e.getMessage());
+            }
+            openedAtNanos = System.nanoTime();
+            state = State.OPEN;
+        }
+    }
+
+    // Délai, connexion refusée, 5xx (client JAX-RS ou RestTemplate) : échec
+    private static boolean isFailure(RuntimeException e) {
+        return e instanceof ProcessingException
+            || e instanceof ServerErrorException
+            || e instanceof ResourceAccessException
+            || e instanceof HttpServerErrorException;
+    }
+
+    // 4xx : Keycloak fonctionne
+    private static boolean isClientError(RuntimeException e) {
+        return e instanceof ClientErrorException || e instanceof HttpClientErrorException;
+    }
+
+    private <T> T degrade(String operation, Supplier<T> fallback, String reason) {
+        if (fallback == null) {
+            throw new RuntimeException("Keycloak indisponible (" + reason + ") : " + operation);
+        }
+        return fallback.get();
+    }
+
+    private void record(String operation, String outcome, long nanos) {
+        Timer.builder("keycloak.calls")
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .register(meterRegistry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
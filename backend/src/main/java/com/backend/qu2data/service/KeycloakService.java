@@ -1,11 +1,11 @@
 package com.backend.qu2data.service;
 
 import com.backend.qu2data.controller.UserDto;
-import jakarta.annotation.PostConstruct;
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.repository.UsersRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.keycloak.admin.client.Keycloak;
-import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.admin.client.resource.ClientResource;
@@ -13,23 +13,33 @@ import org.keycloak.representations.idm.CredentialRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.core.Response;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Appels d'administration Keycloak. Chaque appel passe par KeycloakCallGuard (cloison + disjoncteur) :
+ * quand Keycloak est lent ou indisponible, les lectures sont servies depuis la copie locale de
+ * l'annuaire (table users) et les écritures échouent vite au lieu de bloquer le thread HTTP.
+ */
 @Service
 public class KeycloakService {
     private static final Logger logger = LoggerFactory.getLogger(KeycloakService.class);
@@ -37,8 +47,25 @@ public class KeycloakService {
     @Autowired
     private Keycloak keycloak;
 
+    @Autowired
+    private UserDirectorySync userDirectorySync;
+
+    @Autowired
+    private KeycloakTokenManager keycloakTokenManager;
+
+    @Autowired
+    private KeycloakCallGuard keycloakCallGuard;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
     private final String realm = "qu2data-realm";
 
+    // IDs absents de la copie locale : lectures unitaires jusqu'à ce nombre, sinon parcours paginé borné
+    private static final int DIRECT_LOOKUP_THRESHOLD = 20;
+    private static final int BULK_PAGE_SIZE = 200;
+    private static final int MAX_SCAN_PAGES = 10;
+
     /**
      * ✅ Créer un utilisateur dans Keycloak
      */
@@ -61,7 +88,7 @@ public class KeycloakService {
             passwordCred.setValue(userDto.getPassword());
             newUser.setCredentials(Collections.singletonList(passwordCred));
 
-            Response response = usersResource.create(newUser);
+            Response response = keycloakCallGuard.call("createUser", () -> usersResource.create(newUser));
             if (response.getStatus() != 201) {
                 logger.error("❌ Error creating user: {}", response.getStatusInfo().getReasonPhrase());
                 return null;
@@ -75,6 +102,7 @@ public class KeycloakService {
 
             String userId = locationHeader.substring(locationHeader.lastIndexOf("/") + 1);
             logger.info("✅ User created successfully with ID: {}", userId);
+            userDirectorySync.syncUser(userId);
             return userId;
 
         } catch (Exception e) {
@@ -88,40 +116,45 @@ public class KeycloakService {
      */
     public boolean assignRoleToUser(String userId, String roleName) {
         try {
-            RealmResource realmResource = keycloak.realm(realm);
-            UsersResource usersResource = realmResource.users();
+            return keycloakCallGuard.call("assignRole", () -> assignRole(userId, roleName));
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de l'attribution du rôle '{}' à l'utilisateur ID '{}': {}", roleName, userId, e.getMessage());
+            return false;
+        }
+    }
 
-            // Vérifier si l'utilisateur existe
-            UserRepresentation user = usersResource.get(userId).toRepresentation();
-            if (user == null) {
-                logger.error("❌ Utilisateur avec l'ID '{}' introuvable dans Keycloak.", userId);
-                return false;
-            }
+    private boolean assignRole(String userId, String roleName) {
+        RealmResource realmResource = keycloak.realm(realm);
+        UsersResource usersResource = realmResource.users();
 
-            // Vérifier si le rôle est un rôle de Realm (niveau global)
-            RoleRepresentation realmRole = realmResource.roles().get(roleName).toRepresentation();
-            if (realmRole != null) {
-                usersResource.get(userId).roles().realmLevel().add(Collections.singletonList(realmRole));
-                logger.info("✅ Rôle de Realm '{}' attribué avec succès à l'utilisateur ID: {}", roleName, userId);
-                return true;
-            }
+        // Vérifier si l'utilisateur existe
+        UserRepresentation user = usersResource.get(userId).toRepresentation();
+        if (user == null) {
+            logger.error("❌ Utilisateur avec l'ID '{}' introuvable dans Keycloak.", userId);
+            return false;
+        }
 
-            // Vérifier si le rôle est un rôle de Client (niveau client)
-            String clientId = keycloak.realm(realm).clients().findByClientId("qu2data-client").get(0).getId();
-            ClientResource clientResource = realmResource.clients().get(clientId);
-            RoleRepresentation clientRole = clientResource.roles().get(roleName).toRepresentation();
-            if (clientRole != null) {
-                usersResource.get(userId).roles().clientLevel(clientId).add(Collections.singletonList(clientRole));
-                logger.info("✅ Rôle de Client '{}' attribué avec succès à l'utilisateur ID: {}", roleName, userId);
-                return true;
-            }
+        // Vérifier si le rôle est un rôle de Realm (niveau global)
+        RoleRepresentation realmRole = realmResource.roles().get(roleName).toRepresentation();
+        if (realmRole != null) {
+            usersResource.get(userId).roles().realmLevel().add(Collections.singletonList(realmRole));
+            logger.info("✅ Rôle de Realm '{}' attribué avec succès à l'utilisateur ID: {}", roleName, userId);
+            userDirectorySync.syncUser(userId);
+            return true;
+        }
 
-            logger.error("❌ Le rôle '{}' n'existe ni en tant que rôle de Realm ni en tant que rôle de Client.", roleName);
-            return false;
-        } catch (Exception e) {
-            logger.error("❌ Erreur lors de l'attribution du rôle '{}' à l'utilisateur ID '{}': {}", roleName, userId, e.getMessage());
-            return false;
+        // Vérifier si le rôle est un rôle de Client (niveau client)
+        String clientId = keycloak.realm(realm).clients().findByClientId("qu2data-client").get(0).getId();
+        ClientResource clientResource = realmResource.clients().get(clientId);
+        RoleRepresentation clientRole = clientResource.roles().get(roleName).toRepresentation();
+        if (clientRole != null) {
+            usersResource.get(userId).roles().clientLevel(clientId).add(Collections.singletonList(clientRole));
+            logger.info("✅ Rôle de Client '{}' attribué avec succès à l'utilisateur ID: {}", roleName, userId);
+            return true;
         }
+
+        logger.error("❌ Le rôle '{}' n'existe ni en tant que rôle de Realm ni en tant que rôle de Client.", roleName);
+        return false;
     }
     public UserRepresentation getUserByEmail(String email) {
         try {
@@ -130,7 +163,9 @@ public class KeycloakService {
 
             logger.info("🔍 Recherche utilisateur par email (query = {}):", email);
 
-            List<UserRepresentation> users = usersResource.search(email, 0, 50); // ✅ sans filtre strict
+            List<UserRepresentation> users = keycloakCallGuard.call("searchUsers",
+                    () -> usersResource.search(email, 0, 50), // ✅ sans filtre strict
+                    () -> usersRepository.findFirstByEmailIgnoreCase(email).map(KeycloakService::fromDirectory).stream().toList());
 
             logger.info("➡️ {} utilisateur(s) potentiellement trouvés.", users.size());
 
@@ -156,7 +191,8 @@ public class KeycloakService {
         try {
             RealmResource realmResource = keycloak.realm(realm);
             UsersResource usersResource = realmResource.users();
-            List<UserRepresentation> users = usersResource.list();
+            List<UserRepresentation> users = keycloakCallGuard.call("listUsers", usersResource::list,
+                    () -> usersRepository.findDirectory().stream().map(KeycloakService::fromDirectory).toList());
             logger.info("✅ Récupération des utilisateurs réussie : {}", users.size());
             return users;
         } catch (Exception e) {
@@ -164,24 +200,97 @@ public class KeycloakService {
             return Collections.emptyList();
         }
     }
+    /**
+     * ✅ Résoudre plusieurs utilisateurs en une seule passe (clé = ID Keycloak)
+     * D'abord la copie locale de l'annuaire (UserDirectorySync) ; Keycloak n'est interrogé que pour
+     * les IDs qui n'y sont pas : lectures unitaires s'ils sont peu nombreux, sinon parcours paginé
+     * limité à MAX_SCAN_PAGES pages.
+     */
+    public Map<String, UserRepresentation> getUsersByIds(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        try {
+            Map<String, UserRepresentation> found = fromDirectory(userIds);
+            Set<String> missing = new HashSet<>(userIds);
+            missing.removeAll(found.keySet());
+            if (!missing.isEmpty()) {
+                found.putAll(keycloakCallGuard.call("getUsersByIds", () -> loadUsersByIds(missing), HashMap::new));
+            }
+            return found;
+        } catch (Exception e) {
+            logger.error("❌ Erreur lors de la résolution groupée des utilisateurs : {}", e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private Map<String, UserRepresentation> loadUsersByIds(Set<String> userIds) {
+        Map<String, UserRepresentation> found = new HashMap<>();
+        UsersResource usersResource = keycloak.realm(realm).users();
+
+        if (userIds.size() <= DIRECT_LOOKUP_THRESHOLD) {
+            for (String userId : userIds) {
+                try {
+                    found.put(userId, usersResource.get(userId).toRepresentation());
+                } catch (NotFoundException e) {
+                    logger.warn("⚠️ Utilisateur Keycloak introuvable : {}", userId);
+                }
+            }
+            return found;
+        }
+
+        Set<String> remaining = new HashSet<>(userIds);
+        int first = 0;
+        for (int pages = 0; !remaining.isEmpty() && pages < MAX_SCAN_PAGES; pages++) {
+            List<UserRepresentation> page = usersResource.list(first, BULK_PAGE_SIZE);
+            for (UserRepresentation user : page) {
+                if (remaining.remove(user.getId())) {
+                    found.put(user.getId(), user);
+                }
+            }
+            if (page.size() < BULK_PAGE_SIZE) {
+                break;
+            }
+            first += BULK_PAGE_SIZE;
+        }
+        logger.info("✅ Résolution groupée Keycloak : {}/{} utilisateur(s)", found.size(), userIds.size());
+        return found;
+    }
+
     public Set<String> getUserRoles(String userId) {
         try {
             RealmResource realmResource = keycloak.realm(realm);
             UsersResource usersResource = realmResource.users();
-            List<RoleRepresentation> roles = usersResource.get(userId).roles().realmLevel().listEffective();
-            return roles.stream().map(RoleRepresentation::getName).collect(Collectors.toSet());
+            return keycloakCallGuard.call("getUserRoles",
+                    () -> usersResource.get(userId).roles().realmLevel().listEffective().stream()
+                            .map(RoleRepresentation::getName).collect(Collectors.toSet()),
+                    () -> usersRepository.findByIdKeycloak(userId).map(KeycloakService::rolesOf).orElse(Collections.emptySet()));
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la récupération des rôles de l'utilisateur: {}", e.getMessage());
             return Collections.emptySet();
         }
     }
-    @Value("${keycloak.backend-url}") // ajouter dans application.properties
+    @Value("${keycloak.backend-url:${keycloak.server-url:http://localhost:8080}}")
     private String keycloakBaseUrl;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    @Qualifier("keycloakRestTemplate")
+    private RestTemplate restTemplate;
 
-    public Map<String, Object> getUserById(String keycloakId, String token) {
+    // 🔑 Jeton du compte de service mis en cache (KeycloakTokenManager) : aucune demande de jeton par appel
+    public Map<String, Object> getUserById(String keycloakId) {
+        try {
+            return keycloakCallGuard.call("getUserById", () -> fetchUserById(keycloakId),
+                    () -> usersRepository.findByIdKeycloak(keycloakId).map(KeycloakService::profileOf).orElseGet(KeycloakService::unknownUser));
+        } catch (HttpClientErrorException e) {
+            logger.warn("⚠️ Utilisateur Keycloak {} non lu : {}", keycloakId, e.getMessage());
+            return unknownUser();
+        }
+    }
+
+    private Map<String, Object> fetchUserById(String keycloakId) {
         String url = keycloakBaseUrl + "/admin/realms/" + realm + "/users/" + keycloakId;
+        String token = keycloakTokenManager.getToken();
 
         HttpHeaders headers = new HttpHeaders();
         headers.setBearerAuth(token);
@@ -199,16 +308,68 @@ public class KeycloakService {
 
             Map<String, Object> responseBody = response.getBody();
 
-            System.out.println("🧪 Infos Keycloak de " + keycloakId + " : " + responseBody);
+            logger.debug("🧪 Infos Keycloak de {} : {}", keycloakId, responseBody);
 
             return responseBody;
-        } catch (Exception e) {
-            System.err.println("❌ Erreur lors de la récupération de l'utilisateur Keycloak : " + e.getMessage());
-            Map<String, Object> fallback = new HashMap<>();
-            fallback.put("firstName", "Inconnu");
-            fallback.put("lastName", "Utilisateur");
-            return fallback;
+        } catch (HttpClientErrorException.Unauthorized e) {
+            keycloakTokenManager.invalidate(token);
+            logger.warn("⚠️ Jeton Keycloak refusé, il sera redemandé : {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * @deprecated le jeton fourni est ignoré : utiliser {@link #getUserById(String)}
+     */
+    @Deprecated
+    public Map<String, Object> getUserById(String keycloakId, String token) {
+        return getUserById(keycloakId);
+    }
+
+    private static Map<String, Object> unknownUser() {
+        Map<String, Object> fallback = new HashMap<>();
+        fallback.put("firstName", "Inconnu");
+        fallback.put("lastName", "Utilisateur");
+        return fallback;
+    }
+
+    // 📇 Profils dégradés lus dans la copie locale de l'annuaire (UserDirectorySync)
+    private Map<String, UserRepresentation> fromDirectory(Collection<String> userIds) {
+        Map<String, UserRepresentation> found = new HashMap<>();
+        for (Users user : usersRepository.findByIdKeycloakIn(userIds)) {
+            found.put(user.getIdKeycloak(), fromDirectory(user));
         }
+        return found;
+    }
+
+    private static UserRepresentation fromDirectory(Users user) {
+        UserRepresentation representation = new UserRepresentation();
+        representation.setId(user.getIdKeycloak());
+        representation.setUsername(user.getUsername());
+        representation.setEmail(user.getEmail());
+        representation.setFirstName(user.getFirstName());
+        representation.setLastName(user.getLastName());
+        representation.setEnabled(user.getEnabled());
+        representation.setRealmRoles(List.copyOf(rolesOf(user)));
+        return representation;
+    }
+
+    private static Map<String, Object> profileOf(Users user) {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("id", user.getIdKeycloak());
+        profile.put("username", user.getUsername());
+        profile.put("email", user.getEmail());
+        profile.put("firstName", user.getFirstName() != null ? user.getFirstName() : "Inconnu");
+        profile.put("lastName", user.getLastName() != null ? user.getLastName() : "Utilisateur");
+        profile.put("enabled", user.getEnabled());
+        return profile;
+    }
+
+    private static Set<String> rolesOf(Users user) {
+        if (user.getRoles() == null || user.getRoles().isBlank()) {
+            return Collections.emptySet();
+        }
+        return Set.of(user.getRoles().split(","));
     }
 
 
@@ -219,7 +380,8 @@ public class KeycloakService {
         try {
             RealmResource realmResource = keycloak.realm(realm);
             UsersResource usersResource = realmResource.users();
-            UserRepresentation user = usersResource.get(userId).toRepresentation();
+            UserRepresentation user = keycloakCallGuard.call("getUser", () -> usersResource.get(userId).toRepresentation(),
+                    () -> usersRepository.findByIdKeycloak(userId).map(KeycloakService::fromDirectory).orElse(null));
             logger.info("✅ Utilisateur trouvé avec l'ID : {}", userId);
             return user;
         } catch (Exception e) {
@@ -239,7 +401,7 @@ public class KeycloakService {
 
             RealmResource realmResource = keycloak.realm(realm);
             UsersResource usersResource = realmResource.users();
-            UserRepresentation user = usersResource.get(userId).toRepresentation();
+            UserRepresentation user = keycloakCallGuard.call("getUser", () -> usersResource.get(userId).toRepresentation());
 
             if (user == null) {
                 logger.error("🚫 Utilisateur introuvable dans Keycloak avec ID: {}", userId);
@@ -251,8 +413,12 @@ public class KeycloakService {
             user.setEmail(userDto.getEmail());
             user.setUsername(userDto.getUserName());
 
-            usersResource.get(userId).update(user);
+            keycloakCallGuard.call("updateUser", () -> {
+                usersResource.get(userId).update(user);
+                return null;
+            });
             logger.info("✅ Utilisateur mis à jour dans Keycloak avec succès: {}", userId);
+            userDirectorySync.syncUser(userId);
             return true;
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la mise à jour de l'utilisateur dans Keycloak: {}", e.getMessage());
@@ -273,7 +439,10 @@ public class KeycloakService {
             UsersResource usersResource = realmResource.users();
 
             // Supprimer l'utilisateur de Keycloak
-            usersResource.get(userId).remove();
+            keycloakCallGuard.call("deleteUser", () -> {
+                usersResource.get(userId).remove();
+                return null;
+            });
             logger.info("✅ Utilisateur supprimé avec succès dans Keycloak: {}", userId);
             return "Utilisateur supprimé avec succès";
         } catch (Exception e) {
@@ -281,23 +450,4 @@ public class KeycloakService {
             return "Erreur lors de la suppression de l'utilisateur: " + e.getMessage();
         }
     }
-
-
-
-    /**
-     * ✅ Instancier Keycloak avec les informations d'authentification
-     */
-    @PostConstruct
-    @Bean
-    public static Keycloak getKeycloakInstance() {
-        return KeycloakBuilder.builder()
-                .serverUrl("http://localhost:8080")
-                .realm("qu2data-realm")
-                .clientId("qu2data-client")
-                .clientSecret("q8eCXqHnzBMuon4lkRjAAfbRhsGsXPdP")
-                .grantType("client_credentials")
-                .username("yassine")
-                .password("222")
-                .build();
-    }
 }
@@ -0,0 +1,181 @@
+package com.backend.qu2data.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🔑 Jeton du compte de service Keycloak (client_credentials), partagé par tous les appels d'administration.
+ *
+ * Le jeton est mis en cache et renouvelé en arrière-plan keycloak.token.refresh-ahead avant son
+ * expiration : un appel normal ne demande jamais de jeton. Si plusieurs threads ont besoin d'un
+ * jeton en même temps (démarrage, jeton révoqué), une seule requête part vers Keycloak et tous
+ * attendent son résultat.
+ */
+@Service
+public class KeycloakTokenManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeycloakTokenManager.class);
+
+    // Marge sous laquelle un jeton n'est plus servi (temps de transit de la requête)
+    private static final Duration MIN_VALIDITY = Duration.ofSeconds(5);
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final RestTemplate restTemplate;
+    private final TaskScheduler taskScheduler;
+    private final String tokenUrl;
+    private final String clientId;
+    private final String clientSecret;
+    private final Duration refreshAhead;
+
+    private final Counter fetchCounter;
+    private final Counter failureCounter;
+
+    private volatile CachedToken current;
+    private final AtomicReference<CompletableFuture<CachedToken>> inFlight = new AtomicReference<>();
+
+    public KeycloakTokenManager(
+            @Qualifier("keycloakRestTemplate") RestTemplate restTemplate,
+            @Qualifier("taskScheduler") TaskScheduler taskScheduler,
+            MeterRegistry meterRegistry,
+            @Value("${keycloak.server-url:http://localhost:8080}") String serverUrl,
+            @Value("${keycloak.realm:qu2data-realm}") String realm,
+            @Value("${keycloak.client-id:qu2data-client}") String clientId,
+            @Value("${keycloak.client-secret:q8eCXqHnzBMuon4lkRjAAfbRhsGsXPdP}") String clientSecret,
+            @Value("${keycloak.token.refresh-ahead:PT30S}") Duration refreshAhead) {
+        this.restTemplate = restTemplate;
+        this.taskScheduler = taskScheduler;
+        this.tokenUrl = serverUrl + "/realms/" + realm + "/protocol/openid-connect/token";
+        this.clientId = clientId;
+        this.clientSecret = clientSecret;
+        this.refreshAhead = refreshAhead;
+        this.fetchCounter = meterRegistry.counter("keycloak.token.fetch");
+        this.failureCounter = meterRegistry.counter("keycloak.token.failures");
+    }
+
+    public String getToken() {
+        CachedToken token = current;
+        if (token != null && token.isValidAt(Instant.now().plus(MIN_VALIDITY))) {
+            return token.value;
+        }
+        try {
+            return refresh().join().value;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // 🚫 Jeton refusé par Keycloak (401) : le prochain appel en redemandera un
+    public void invalidate(String token) {
+        CachedToken cached = current;
+        if (cached != null && cached.value.equals(token)) {
+            current = null;
+        }
+    }
+
+    // Une seule demande en cours ; les appelants concurrents reçoivent la même
+    private CompletableFuture<CachedToken> refresh() {
+        while (true) {
+            CompletableFuture<CachedToken> pending = inFlight.get();
+            if (pending != null) {
+                return pending;
+            }
+            CompletableFuture<CachedToken> mine = new CompletableFuture<>();
+            if (!inFlight.compareAndSet(null, mine)) {
+                continue;
+            }
+            try {
+                CachedToken token = fetch();
+                current = token;
+                scheduleRefresh(token);
+                mine.complete(token);
+            } catch (RuntimeException e) {
+                failureCounter.increment();
+                mine.completeExceptionally(e);
+            } finally {
+                inFlight.set(null);
+            }
+            return mine;
+        }
+    }
+
+    private void scheduleRefresh(CachedToken token) {
+        // Jeton de courte durée : renouvelé à mi-vie plutôt qu'en boucle
+        Duration halfLife = Duration.between(token.issuedAt, token.expiresAt).dividedBy(2);
+        Instant at = token.expiresAt.minus(refreshAhead.compareTo(halfLife) > 0 ? halfLife : refreshAhead);
+        taskScheduler.schedule(() -> backgroundRefresh(token), at.isAfter(Instant.now()) ? at : Instant.now());
+    }
+
+    private void backgroundRefresh(CachedToken expected) {
+        if (current != expected) {
+            return; // déjà renouvelé (ou invalidé) entre-temps
+        }
+        refresh().whenComplete((token, error) -> {
+            if (error != null) {
+                logger.warn("⚠️ Renouvellement anticipé du jeton Keycloak échoué : {}", error.getMessage());
+                if (expected.isValidAt(Instant.now().plus(RETRY_DELAY))) {
+                    taskScheduler.schedule(() -> backgroundRefresh(expected), Instant.now().plus(RETRY_DELAY));
+                }
+            }
+        });
+    }
+
+    private CachedToken fetch() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
+
+        MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+        body.add("client_id", clientId);
+        body.add("client_secret", clientSecret);
+        body.add("grant_type", "client_credentials");
+
+        Instant requestedAt = Instant.now();
+        ResponseEntity<Map> response = restTemplate.exchange(tokenUrl, HttpMethod.POST, new HttpEntity<>(body, headers), Map.class);
+        fetchCounter.increment();
+
+        Map<?, ?> payload = response.getBody();
+        if (payload == null || payload.get("access_token") == null) {
+            throw new RuntimeException("Erreur : Impossible d'obtenir le token JWT de Keycloak.");
+        }
+        Object expiresIn = payload.get("expires_in");
+        long seconds = expiresIn instanceof Number number ? number.longValue() : 60;
+        return new CachedToken(payload.get("access_token").toString(), requestedAt, requestedAt.plusSeconds(seconds));
+    }
+
+    private static final class CachedToken {
+        private final String value;
+        private final Instant issuedAt;
+        private final Instant expiresAt;
+
+        private CachedToken(String value, Instant issuedAt, Instant expiresAt) {
+            this.value = value;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isValidAt(Instant instant) {
+            return expiresAt.isAfter(instant);
+        }
+    }
+}
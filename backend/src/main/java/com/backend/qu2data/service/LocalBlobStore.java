@@ -0,0 +1,105 @@
+package com.backend.qu2data.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Backend disque : les clés sont des chemins sous storage.upload-dir (déjà répartis en ab/cd/).
+ * Écriture en flux par FileChannel.transferFrom (blocs bornés) puis renommage atomique.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+    private final long transferChunkBytes;
+
+    public LocalBlobStore(
+            @Value("${storage.upload-dir:uploads}") String uploadDir,
+            @Value("${storage.transfer-chunk-bytes:1048576}") long transferChunkBytes) {
+        this.root = Paths.get(uploadDir);
+        this.transferChunkBytes = transferChunkBytes;
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(pathOf(key));
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        Path target = pathOf(key);
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), ".upload-", ".part");
+        try {
+            long position = 0;
+            try (ReadableByteChannel source = Channels.newChannel(content);
+                 FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long transferred;
+                while ((transferred = channel.transferFrom(source, position, transferChunkBytes)) > 0) {
+                    position += transferred;
+                }
+            }
+            // Même clé => même contenu : remplacer une écriture concurrente est sans risque
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(pathOf(key));
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(pathOf(key));
+        } catch (IOException ignored) {
+            // nettoyage au mieux
+        }
+    }
+
+    @Override
+    public void deletePrefix(String prefix) {
+        try {
+            FileSystemUtils.deleteRecursively(pathOf(prefix));
+        } catch (IOException ignored) {
+            // nettoyage au mieux
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.of(pathOf(key));
+    }
+
+    @Override
+    public Optional<String> presignedUrl(String key, Duration ttl, String contentDisposition, String contentType) {
+        return Optional.empty(); // servi par l'application (sendfile / Range)
+    }
+
+    private Path pathOf(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root.normalize())) {
+            throw new IllegalArgumentException("Clé de stockage invalide : " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,162 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.AttachmentDTO;
+import com.backend.qu2data.entites.SpooledAttachment;
+import com.backend.qu2data.repository.EmailOutboxRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 📎 Pièces jointes partagées de l'outbox email.
+ * Un upload est déposé une seule fois dans {spool}/shared/{uuid}/ (transferTo : simple déplacement
+ * du fichier temporaire du multipart quand c'est possible) ; tous les emails qui l'envoient
+ * référencent ce même fichier, lu en flux au moment de l'envoi SMTP.
+ * Un répertoire partagé n'est supprimé que lorsqu'aucun email en base ne le référence plus
+ * et qu'il a dépassé mail.outbox.shared-retention (une campagne peut encore l'utiliser entre deux lots).
+ */
+@Service
+public class MailAttachmentStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MailAttachmentStore.class);
+
+    private static final String SHARED_DIR = "shared";
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Value("${mail.outbox.spool-dir:mail-spool}")
+    private String spoolDir;
+
+    @Value("${mail.outbox.shared-retention:PT1H}")
+    private Duration sharedRetention;
+
+    public List<AttachmentDTO> stage(List<MultipartFile> files) {
+        List<AttachmentDTO> staged = new ArrayList<>();
+        if (files == null || files.isEmpty()) {
+            return staged;
+        }
+        Path dir = createSharedDirectory();
+        try {
+            int index = 0;
+            for (MultipartFile file : files) {
+                String name = safeName(file.getOriginalFilename());
+                // Préfixe d'index : deux fichiers du même nom ne s'écrasent pas
+                Path target = dir.resolve(index++ + "-" + name);
+                file.transferTo(target.toFile());
+                staged.add(new AttachmentDTO(name, target, file.getContentType(), Files.size(target)));
+            }
+            return staged;
+        } catch (IOException e) {
+            deleteQuietly(dir);
+            throw new RuntimeException("Erreur mise en file des pièces jointes", e);
+        }
+    }
+
+    /**
+     * Pièces jointes prêtes à être référencées par un ou plusieurs emails. Un fichier hors du
+     * répertoire partagé (fourni par l'appelant) y est d'abord copié en flux, une seule fois.
+     */
+    public List<SpooledAttachment> share(List<AttachmentDTO> attachments) {
+        List<SpooledAttachment> shared = new ArrayList<>();
+        if (attachments == null || attachments.isEmpty()) {
+            return shared;
+        }
+        Path dir = null;
+        try {
+            int index = 0;
+            for (AttachmentDTO attachment : attachments) {
+                Path path = attachment.getPath().toAbsolutePath();
+                String name = safeName(attachment.getFilename());
+                if (!isShared(path)) {
+                    if (dir == null) {
+                        dir = createSharedDirectory();
+                    }
+                    Path target = dir.resolve(index++ + "-" + name);
+                    Files.copy(path, target);
+                    path = target.toAbsolutePath();
+                }
+                shared.add(new SpooledAttachment(name, path.toString(), attachment.getContentType()));
+            }
+            return shared;
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur mise en file des pièces jointes", e);
+        }
+    }
+
+    public boolean isShared(Path path) {
+        return path.toAbsolutePath().normalize().startsWith(sharedRoot());
+    }
+
+    // 🧹 Répertoires partagés expirés et plus référencés (envoyés, ou requête abandonnée)
+    @Scheduled(fixedDelayString = "${mail.outbox.shared-sweep-interval-ms:600000}")
+    public void sweep() {
+        Path root = sharedRoot();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        Instant expiredBefore = Instant.now().minus(sharedRetention);
+        int deleted = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root)) {
+            for (Path dir : dirs) {
+                if (Files.getLastModifiedTime(dir).toInstant().isAfter(expiredBefore)) {
+                    continue;
+                }
+                if (emailOutboxRepository.countAttachmentsUnder(dir + "/%") == 0 && deleteQuietly(dir)) {
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ Nettoyage des pièces jointes partagées interrompu : {}", e.getMessage());
+        }
+        if (deleted > 0) {
+            logger.info("🧹 {} répertoire(s) de pièces jointes partagées supprimé(s)", deleted);
+        }
+    }
+
+    private Path sharedRoot() {
+        return Paths.get(spoolDir, SHARED_DIR).toAbsolutePath().normalize();
+    }
+
+    private Path createSharedDirectory() {
+        Path dir = sharedRoot().resolve(UUID.randomUUID().toString());
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new RuntimeException("Erreur création du répertoire de spool", e);
+        }
+        return dir;
+    }
+
+    private static boolean deleteQuietly(Path dir) {
+        try {
+            return FileSystemUtils.deleteRecursively(dir);
+        } catch (IOException e) {
+            logger.warn("⚠️ Spool {} non supprimé : {}", dir, e.getMessage());
+            return false;
+        }
+    }
+
+    private static String safeName(String filename) {
+        String name = StringUtils.getFilename(StringUtils.cleanPath(filename != null ? filename : ""));
+        return StringUtils.hasText(name) ? name : "piece-jointe";
+    }
+}
@@ -0,0 +1,186 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.OutboxMessage;
+import com.backend.qu2data.repository.OutboxMessageRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.MimeType;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Vide l'outbox vers les destinations STOMP, hors du thread HTTP.
+ *
+ * Un seul thread de relève réclame un lot (FOR UPDATE SKIP LOCKED + bail), répartit les lignes
+ * par destination sur le pool borné "outboxExecutor" et attend la fin du lot avant le suivant :
+ * l'ordre est conservé par destination. Les lignes envoyées sont supprimées ; les échecs sont
+ * replanifiés avec un délai exponentiel, puis passés en DEAD après outbox.max-attempts.
+ * Un crash entre l'envoi et la suppression provoque un renvoi à l'expiration du bail (au moins une fois).
+ */
+@Service
+public class MessageOutboxDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageOutboxDispatcher.class);
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    @Qualifier("outboxExecutor")
+    private ThreadPoolTaskExecutor outboxExecutor;
+
+    @Autowired
+    @Qualifier("taskScheduler")
+    private TaskScheduler taskScheduler;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${outbox.batch-size:200}")
+    private int batchSize;
+
+    @Value("${outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry-base-ms:500}")
+    private long retryBaseMs;
+
+    private final AtomicBoolean wakeRequested = new AtomicBoolean(false);
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    // 🔔 Appelé après commit : relève immédiate au lieu d'attendre le prochain tick
+    public void wakeUp() {
+        if (wakeRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(this::poll, Instant.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        wakeRequested.set(false);
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int claimed;
+            do {
+                claimed = drainBatch();
+            } while (claimed == batchSize);
+        } catch (Exception e) {
+            logger.error("❌ Relève de l'outbox interrompue : {}", e.getMessage(), e);
+        } finally {
+            draining.set(false);
+        }
+    }
+
+    private int drainBatch() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<OutboxMessage> batch = tx.execute(status -> {
+            List<OutboxMessage> rows = outboxMessageRepository.claimBatch(LocalDateTime.now(), batchSize);
+            LocalDateTime leaseUntil = LocalDateTime.now().plusSeconds(leaseSeconds);
+            rows.forEach(row -> row.setNextAttemptAt(leaseUntil));
+            return rows;
+        });
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<OutboxMessage>> byDestination = new LinkedHashMap<>();
+        for (OutboxMessage row : batch) {
+            byDestination.computeIfAbsent(row.getDestination(), d -> new ArrayList<>()).add(row);
+        }
+
+        Queue<Long> sent = new ConcurrentLinkedQueue<>();
+        Queue<OutboxMessage> failed = new ConcurrentLinkedQueue<>();
+        List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        for (List<OutboxMessage> rows : byDestination.values()) {
+            deliveries.add(CompletableFuture.runAsync(() -> deliver(rows, sent, failed), outboxExecutor));
+        }
+        CompletableFuture.allOf(deliveries.toArray(new CompletableFuture[0])).join();
+
+        tx.executeWithoutResult(status -> {
+            if (!sent.isEmpty()) {
+                outboxMessageRepository.deleteAllByIdInBatch(sent);
+            }
+            for (OutboxMessage row : failed) {
+                reschedule(row);
+            }
+        });
+        return batch.size();
+    }
+
+    // Envoi dans l'ordre ; au premier échec, le reste de la destination est replanifié avec lui
+    private void deliver(List<OutboxMessage> rows, Queue<Long> sent, Queue<OutboxMessage> failed) {
+        for (int i = 0; i < rows.size(); i++) {
+            OutboxMessage row = rows.get(i);
+            try {
+                send(row);
+                sent.add(row.getId());
+            } catch (Exception e) {
+                logger.warn("⚠️ Envoi vers {} échoué (tentative {}) : {}",
+                    row.getDestination(), row.getAttempts() + 1, e.getMessage());
+                for (OutboxMessage remaining : rows.subList(i, rows.size())) {
+                    remaining.setLastError(e.getMessage());
+                    failed.add(remaining);
+                }
+                return;
+            }
+        }
+    }
+
+    private void send(OutboxMessage row) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeType.valueOf(row.getContentType()));
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(row.getDestination(),
+            MessageBuilder.createMessage(row.getPayload().getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders()));
+    }
+
+    private void reschedule(OutboxMessage row) {
+        int attempts = row.getAttempts() + 1;
+        row.setAttempts(attempts);
+        if (row.getLastError() != null && row.getLastError().length() > 1000) {
+            row.setLastError(row.getLastError().substring(0, 1000));
+        }
+        if (attempts >= maxAttempts) {
+            row.setStatus(OutboxMessage.Status.DEAD);
+            logger.error("❌ Notification {} vers {} abandonnée après {} tentatives",
+                row.getId(), row.getDestination(), attempts);
+        } else {
+            long delayMs = retryBaseMs * (1L << Math.min(attempts - 1, 10));
+            row.setNextAttemptAt(LocalDateTime.now().plusNanos(delayMs * 1_000_000));
+        }
+        outboxMessageRepository.save(row);
+    }
+}
@@ -0,0 +1,90 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.OutboxMessage;
+import com.backend.qu2data.repository.OutboxMessageRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Point d'entrée de l'outbox : enregistre la notification dans la transaction de l'envoi
+ * (le message et sa notification sont validés ensemble) et réveille le dispatcher après commit.
+ */
+@Service
+public class MessageOutboxService {
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private MessageOutboxDispatcher messageOutboxDispatcher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String destination, Object payload) {
+        OutboxMessage outbox = new OutboxMessage();
+        outbox.setDestination(destination);
+        // Même rendu que convertAndSend : texte brut pour une String, JSON sinon
+        if (payload instanceof String text) {
+            outbox.setContentType("text/plain;charset=UTF-8");
+            outbox.setPayload(text);
+        } else {
+            outbox.setContentType("application/json");
+            outbox.setPayload(toJson(payload));
+        }
+        // 📏 Taille par type de topic : sérialisé une fois, réutilisé pour tous les abonnés
+        DistributionSummary.builder("websocket.payload.bytes")
+            .baseUnit("bytes")
+            .tag("topic", topicOf(destination))
+            .register(meterRegistry)
+            .record(outbox.getPayload().getBytes(StandardCharsets.UTF_8).length);
+
+        LocalDateTime now = LocalDateTime.now();
+        outbox.setCreatedAt(now);
+        outbox.setNextAttemptAt(now);
+        outboxMessageRepository.save(outbox);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                messageOutboxDispatcher.wakeUp();
+            }
+        });
+    }
+
+    private String toJson(Object payload) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Notification non sérialisable : " + e.getMessage(), e);
+        } finally {
+            sample.stop(meterRegistry.timer("websocket.payload.serialization",
+                "type", payload.getClass().getSimpleName()));
+        }
+    }
+
+    // "/topic/group/12" -> "group"
+    private static String topicOf(String destination) {
+        String[] parts = destination.split("/");
+        return parts.length > 2 ? parts[2] : destination;
+    }
+}
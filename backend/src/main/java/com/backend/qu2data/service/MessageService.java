@@ -353,6 +353,7 @@ import com.backend.qu2data.entites.Users;
 
 import com.backend.qu2data.controller.WebSocketMessageController;
 import com.backend.qu2data.entites.*;
+import com.backend.qu2data.model.UserProfile;
 import com.backend.qu2data.repository.*;
 
 import jakarta.persistence.EntityManager;
@@ -360,11 +361,15 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.transaction.Transactional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.File;
 import java.io.IOException;
@@ -374,6 +379,10 @@ import java.util.stream.Collectors;
 
 @Service
 public class MessageService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int INBOX_PREVIEW_LENGTH = 120;
+
 	@Autowired
 	private AttachmentRepository attachmentRepository; // 🔥 ajoute l'injection du repository
 	@PersistenceContext
@@ -391,6 +400,10 @@ public class MessageService {
     @Autowired
     private KeycloakService keycloakService;
     @Autowired
+    private UserProfileCache userProfileCache;
+    @Autowired
+    private UnreadCounterService unreadCounterService;
+    @Autowired
     private GroupRepository groupRepository;
     @Autowired
     private FileStorageService fileStorageService;
@@ -418,11 +431,15 @@ public class MessageService {
         message.setTimestamp(LocalDateTime.now());
         return messageRepository.save(message);
     }*/
+    @Transactional
     public Message createMessage(Message message) {
         message.setTimestamp(LocalDateTime.now());
         Message savedMessage = messageRepository.save(message);
 
-        // ✅ Envoie une notification en temps réel au destinataire
+        // ✅ +1 non-lu pour le destinataire (même transaction que le message)
+        unreadCounterService.onPrivateMessage(savedMessage.getSentBy().getId(), savedMessage.getReceivedBy().getId());
+
+        // ✅ Notification temps réel au destinataire, poussée après commit par l'outbox
         webSocketMessageController.sendPrivateNotification(
         		 savedMessage.getReceivedBy().getId().longValue(),
         	    "💬 Nouveau message de " + savedMessage.getSentBy().getFirstName()
@@ -442,8 +459,13 @@ public class MessageService {
         }).orElseThrow(() -> new RuntimeException("Message not found"));
     }
 
+    @Transactional
     public void deleteMessage(Long id) {
-        messageRepository.deleteById(id);
+        messageRepository.findById(id).ifPresent(message -> {
+            // 🗑️ Les pièces jointes partent en cascade : on libère leurs blobs avant
+            message.getAttachments().forEach(fileStorageService::release);
+            messageRepository.delete(message);
+        });
     }
 
     public Message markMessageAsDeleted(Long id) {
@@ -457,6 +479,73 @@ public class MessageService {
     public List<Message> getMessagesBetweenUsers(Integer user1Id, Integer user2Id) {
         return messageRepository.findMessagesBetweenUsers(user1Id, user2Id);
     }
+
+    // 📄 Historique privé paginé par curseur (before = plus anciens, after = plus récents)
+    public MessagePage<Message> getMessagesBetweenUsers(Integer user1Id, Integer user2Id,
+                                                        Long beforeId, LocalDateTime beforeTimestamp,
+                                                        Long afterId, LocalDateTime afterTimestamp,
+                                                        int limit) {
+        Long user1 = user1Id.longValue();
+        Long user2 = user2Id.longValue();
+        int size = clampPageSize(limit);
+        Pageable page = PageRequest.of(0, size + 1);
+
+        if (afterId != null) {
+            LocalDateTime timestamp = resolveCursorTimestamp(afterId, afterTimestamp);
+            return toPage(messageRepository.findBetweenUsersAfter(user1, user2, timestamp, afterId, page), size, true);
+        }
+        if (beforeId != null) {
+            LocalDateTime timestamp = resolveCursorTimestamp(beforeId, beforeTimestamp);
+            return toPage(messageRepository.findBetweenUsersBefore(user1, user2, timestamp, beforeId, page), size, false);
+        }
+        return toPage(messageRepository.findLatestBetweenUsers(user1, user2, page), size, false);
+    }
+
+    // 📄 Historique de groupe paginé par curseur
+    public MessagePage<Message> getGroupMessages(Integer groupId,
+                                                 Long beforeId, LocalDateTime beforeTimestamp,
+                                                 Long afterId, LocalDateTime afterTimestamp,
+                                                 int limit) {
+        int size = clampPageSize(limit);
+        Pageable page = PageRequest.of(0, size + 1);
+
+        if (afterId != null) {
+            LocalDateTime timestamp = resolveCursorTimestamp(afterId, afterTimestamp);
+            return toPage(messageRepository.findInGroupAfter(groupId, timestamp, afterId, page), size, true);
+        }
+        if (beforeId != null) {
+            LocalDateTime timestamp = resolveCursorTimestamp(beforeId, beforeTimestamp);
+            return toPage(messageRepository.findInGroupBefore(groupId, timestamp, beforeId, page), size, false);
+        }
+        return toPage(messageRepository.findLatestInGroup(groupId, page), size, false);
+    }
+
+    private int clampPageSize(int limit) {
+        if (limit <= 0) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    // Le client peut n'envoyer que l'id du curseur : on relit alors son timestamp (lookup par clé primaire)
+    private LocalDateTime resolveCursorTimestamp(Long messageId, LocalDateTime timestamp) {
+        if (timestamp != null) {
+            return timestamp;
+        }
+        return messageRepository.findById(messageId)
+            .map(Message::getTimestamp)
+            .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "Message curseur introuvable : " + messageId));
+    }
+
+    // On charge size + 1 lignes pour savoir s'il reste des messages au-delà de la page
+    private MessagePage<Message> toPage(List<Message> fetched, int size, boolean ascending) {
+        boolean hasMore = fetched.size() > size;
+        List<Message> messages = new ArrayList<>(hasMore ? fetched.subList(0, size) : fetched);
+        if (ascending) {
+            Collections.reverse(messages);
+        }
+        return MessagePage.of(messages, hasMore);
+    }
     @Transactional
     public Message createMessageWithAttachment(String content, Long sentById, Long receivedById, MultipartFile file) {
         // Fetch users from the database
@@ -469,20 +558,15 @@ public class MessageService {
 
         // Save the message first to ensure it has an ID
         Message savedMessage = messageRepository.save(message);
+        unreadCounterService.onPrivateMessage(sentBy.getId(), receivedBy.getId());
 
         // Now handle the file attachment if present
         if (file != null && !file.isEmpty()) {
-            // Save the file and return an Attachment object
-            Attachment attachment = fileStorageService.saveFile(file);
-
-            // Associate the saved message with the attachment
-            attachment.setMessage(savedMessage);  // Link attachment to the saved message
-
-            // Save the attachment in the database
-            attachmentRepository.save(attachment);
+            // Save the file, link it to the saved message and persist the attachment
+            Attachment attachment = attachmentService.saveAttachment(file.getContentType(), file, savedMessage);
 
             // Optionally, update the message with the attachment
-            savedMessage.setAttachments(Collections.singletonList(attachment)); // Add attachment to the message
+            savedMessage.getAttachments().add(attachment); // Add attachment to the message (même collection gérée par Hibernate)
         }
 
         // Return the saved message
@@ -527,17 +611,11 @@ public class MessageService {
             throw new IllegalArgumentException("Message avec l'ID " + messageId + " n'existe pas.");
         }
 
-        // Créer un attachement après la validation du message
+        // Créer un attachement après la validation du message (le fichier est réellement écrit)
         Message message = messageOptional.get();
-        Attachment attachment = new Attachment();
-        attachment.setMessage(message);
-        attachment.setName(file.getOriginalFilename());
-        attachment.setPath("uploads/" + file.getOriginalFilename());
-        attachment.setSize((int) file.getSize());
-        attachment.setType(file.getContentType());
-        
+
         // Sauvegarder l'attachement
-        attachmentRepository.save(attachment);
+        attachmentService.saveAttachment(file.getContentType(), file, message);
     }
 
 
@@ -594,6 +672,7 @@ public class MessageService {
 
 
 
+    @Transactional
     public Message sendMessageToGroup(MessageGroupDTO dto) {
         Users sender = usersRepository.findById(dto.getSenderId().longValue())
             .orElseThrow(() -> new RuntimeException("Expéditeur non trouvé"));
@@ -608,7 +687,9 @@ public class MessageService {
         message.setIsDeleted(false);
         message.setIsUpdated(false);
 
-        return messageRepository.save(message);
+        Message savedMessage = messageRepository.save(message);
+        unreadCounterService.onGroupMessage(group.getId(), sender.getId());
+        return savedMessage;
     }
 
     public List<Group> findGroupsWithMessagesForUser(Integer userId) {
@@ -618,6 +699,7 @@ public class MessageService {
             .collect(Collectors.toList());
     }
 
+    @Transactional
     public Message sendMessageToGroupWithFile(String content, Integer senderId, Integer groupId, MultipartFile file) {
         Users sender = usersRepository.findById(senderId.longValue())
             .orElseThrow(() -> new RuntimeException("Sender not found"));
@@ -635,104 +717,81 @@ public class MessageService {
         message.setIsDeleted(false);
         message.setIsUpdated(false);
 
+        // ✅ Le message d'abord : la pièce jointe référence un message déjà persisté
+        Message savedMessage = messageRepository.save(message);
+
         if (file != null && !file.isEmpty()) {
-            Attachment attachment = attachmentService.saveAttachment(file.getContentType(), file, message);
-            attachment.setMessage(message);
-            message.setAttachments(Collections.singletonList(attachment));
+            Attachment attachment = attachmentService.saveAttachment(file.getContentType(), file, savedMessage);
+            savedMessage.getAttachments().add(attachment);
         }
 
-        return messageRepository.save(message);
+        // ✅ +1 non-lu pour tous les membres sauf l'expéditeur (une seule requête)
+        unreadCounterService.onGroupMessage(group.getId(), sender.getId());
+
+        // ✅ Diffusion temps réel via l'outbox (même transaction que le message)
+        webSocketMessageController.notifyGroupMessage(groupId, savedMessage);
+        return savedMessage;
     }
 
     public String getSenderFullNameFromKeycloak(String keycloakId) {
-        Map<String, Object> userData = keycloakService.getUserById(keycloakId, "YOUR_AUTH_TOKEN_HERE");
-        String firstName = (String) userData.get("firstName");
-        String lastName = (String) userData.get("lastName");
-
-        if (firstName == null || lastName == null) {
-            Users user = usersRepository.findByIdKeycloak(keycloakId).orElseThrow(() -> new RuntimeException("User not found"));
-            firstName = user.getFirstName();
-            lastName = user.getLastName();
-        }
-
-        if (firstName == null || lastName == null) {
-            return "Unknown User";
-        }
-
-        return firstName + " " + lastName;
+        // ✅ Profil servi par le cache (Keycloak puis repli PostgreSQL en cas d'absence)
+        return userProfileCache.get(keycloakId).getFullName();
+    }
+    // 📥 Boîte de réception paginée : une requête SQL + une résolution groupée des noms
+    public List<Map<String, Object>> getInbox(Long userId, int offset, int limit) {
+        return toConversationMaps(messageRepository.findInbox(
+            userId, INBOX_PREVIEW_LENGTH, clampPageSize(limit), Math.max(offset, 0)));
     }
-    public List<Map<String, Object>> findGroupChatDtos(Integer userId) {
-        List<Group> groups = groupService.getGroupsForUser(userId);
-        List<Map<String, Object>> groupDtos = new ArrayList<>();
 
-        for (Group group : groups) {
-            List<Message> messages = messageRepository.findByGroupId(group.getId());
-            if (!messages.isEmpty()) {
-                Message lastMessage = messages.get(messages.size() - 1);
-                Map<String, Object> dto = new HashMap<>();
-                dto.put("type", "group");
-                dto.put("groupId", group.getId());
-                dto.put("name", group.getName());
-                dto.put("lastMessageTime", lastMessage.getTimestamp());
-                groupDtos.add(dto);
-            }
-        }
+    public List<Map<String, Object>> findGroupChatDtos(Integer userId) {
+        List<InboxConversationView> rows = messageRepository.findInbox(
+            userId.longValue(), INBOX_PREVIEW_LENGTH, Integer.MAX_VALUE, 0);
+        return toConversationMaps(rows.stream().filter(row -> "group".equals(row.getType())).toList());
+    }
 
-        return groupDtos;
+    public List<Map<String, Object>> findAllConversations(Long userId) {
+        // ✅ Déjà trié par date du dernier message (plus récent d'abord)
+        return toConversationMaps(messageRepository.findInbox(userId, INBOX_PREVIEW_LENGTH, Integer.MAX_VALUE, 0));
     }
-    public List<Map<String, Object>> findAllConversations(Long userId, String token) {
-        List<UserChatDto> users = findConversationUserDtos(userId, token);
-        List<Map<String, Object>> groups = findGroupChatDtos(userId.intValue());
 
-        List<Map<String, Object>> conversations = new ArrayList<>();
+    private List<Map<String, Object>> toConversationMaps(List<InboxConversationView> rows) {
+        Map<String, UserProfile> profiles = userProfileCache.getAll(rows.stream()
+            .map(InboxConversationView::getIdKeycloak)
+            .filter(Objects::nonNull)
+            .toList());
 
-        // utilisateurs
-        for (UserChatDto user : users) {
+        List<Map<String, Object>> conversations = new ArrayList<>();
+        for (InboxConversationView row : rows) {
             Map<String, Object> map = new HashMap<>();
-            map.put("type", "user");
-            map.put("postgresId", user.getPostgresId());
-            map.put("idKeycloak", user.getIdKeycloak());
-            map.put("firstName", user.getFirstName());
-            map.put("lastName", user.getLastName());
-            map.put("lastMessageTime", user.getLastMessageTime());
+            map.put("type", row.getType());
+
+            if ("user".equals(row.getType())) {
+                // Noms Keycloak si disponibles, sinon ceux de PostgreSQL
+                UserProfile profile = profiles.get(row.getIdKeycloak());
+                boolean known = profile != null && profile.isKnown();
+                map.put("postgresId", row.getConversationId());
+                map.put("idKeycloak", row.getIdKeycloak());
+                map.put("firstName", known ? profile.getFirstName() : row.getFirstName());
+                map.put("lastName", known ? profile.getLastName() : row.getLastName());
+            } else {
+                map.put("groupId", row.getConversationId().intValue());
+                map.put("name", row.getGroupName());
+            }
+
+            map.put("lastMessageId", row.getLastMessageId());
+            map.put("preview", row.getPreview());
+            map.put("lastMessageTime", row.getLastMessageTime());
+            map.put("unreadCount", row.getUnreadCount());
             conversations.add(map);
         }
-
-        // groupes déjà sous forme Map
-        conversations.addAll(groups);
-
-        // tri final
-        conversations.sort((a, b) -> {
-            LocalDateTime timeA = (LocalDateTime) a.get("lastMessageTime");
-            LocalDateTime timeB = (LocalDateTime) b.get("lastMessageTime");
-            return timeB.compareTo(timeA);
-        });
-
         return conversations;
     }
 
     public Map<Long, Integer> getUnreadPrivateMessages(Long currentUserId) {
         if (currentUserId == null) throw new IllegalArgumentException("The given id must not be null");
 
-        Users currentUser = usersRepository.findById(currentUserId)
-            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        List<Message> receivedMessages = messageRepository.findByReceivedById(currentUserId.intValue());
-
-        Map<Long, Integer> result = new HashMap<>();
-
-        for (Message message : receivedMessages) {
-            // Correction ici : comparer par ID (et pas par objet)
-            boolean alreadySeen = message.getSeenBy().stream()
-                .anyMatch(user -> user.getId().equals(currentUserId));
-
-            if (!alreadySeen) {
-                Long senderId = message.getSentBy().getId();
-                result.put(senderId, result.getOrDefault(senderId, 0) + 1);
-            }
-        }
-
-        return result;
+        // ✅ Lecture directe des compteurs (plus de parcours de l'historique)
+        return unreadCounterService.getUnreadPrivate(currentUserId);
     }
 
     public Map<Long, Integer> findUnreadMessageCountBySender(Long currentUserId) {
@@ -740,24 +799,7 @@ public class MessageService {
             throw new IllegalArgumentException("The given id must not be null");
         }
 
-        Users currentUser = usersRepository.findById(currentUserId)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        List<Message> receivedMessages = messageRepository.findByReceivedById(currentUserId.intValue());
-
-        Map<Long, Integer> senderUnreadCount = new HashMap<>();
-
-        for (Message message : receivedMessages) {
-            boolean alreadySeen = message.getSeenBy().stream()
-                .anyMatch(user -> user.getId().equals(currentUserId));
-
-            if (!alreadySeen) {
-                Long senderId = message.getSentBy().getId();
-                senderUnreadCount.put(senderId, senderUnreadCount.getOrDefault(senderId, 0) + 1);
-            }
-        }
-
-        return senderUnreadCount;
+        return unreadCounterService.getUnreadPrivate(currentUserId);
     }
 
     public Map<Long, Integer> findMyUnseenMessagesByReceivers(Long currentUserId) {
@@ -765,128 +807,121 @@ public class MessageService {
             throw new IllegalArgumentException("The given id must not be null");
         }
 
-        Users currentUser = usersRepository.findById(currentUserId)
-                .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        List<Message> sentMessages = messageRepository.findBySentById(currentUserId.intValue());
+        // 🔥 Compteurs des destinataires dont je suis l'expéditeur
+        return unreadCounterService.getUnseenSentByReceiver(currentUserId);
+    }
 
-        Map<Long, Integer> unseenMessagesByReceiver = new HashMap<>();
 
-        for (Message message : sentMessages) {
-            // 🔥 Vérifier si le message est un message privé
-            if (message.getReceivedBy() == null) {
-                continue; // ➔ ce message est pour un groupe, on l'ignore
-            }
 
-            Long receiverId = message.getReceivedBy().getId();
+    /**
+     * Avance le pointeur de lecture (conversation_status.last_seen_message_id) jusqu'à
+     * upToMessageId inclus, par défaut le dernier message reçu, puis envoie un accusé de lecture.
+     * Aucune ligne n'est écrite par message : "vu" se déduit par comparaison d'id.
+     */
+    @Transactional
+    public int markMessagesAsSeen(Long currentUserId, Long otherUserId, Long upToMessageId) {
+        Long lastReceivedId = messageRepository.findLastReceivedMessageId(currentUserId, otherUserId);
+        if (lastReceivedId == null) {
+            return 0;
+        }
+        Long highWaterMark = upToMessageId != null ? Math.min(upToMessageId, lastReceivedId) : lastReceivedId;
+
+        // Ligne verrouillée : deux onglets ne comptent pas deux fois les mêmes messages ;
+        // l'upsert (GREATEST) ne fait jamais reculer le pointeur
+        Long locked = conversationStatusRepository.lockLastSeenPrivate(currentUserId, otherUserId);
+        long previous = locked != null ? locked : 0L;
+        if (highWaterMark <= previous) {
+            return 0; // déjà vu : idempotent
+        }
+        LocalDateTime readAt = LocalDateTime.now();
+        conversationStatusRepository.advancePrivatePointer(currentUserId, otherUserId, highWaterMark);
 
-            boolean isSeen = message.getSeenBy().stream()
-                .anyMatch(user -> user.getId().equals(receiverId));
+        int marked = messageRepository.countReceivedBetween(currentUserId, otherUserId, previous, highWaterMark);
 
-            if (!isSeen) {
-                unseenMessagesByReceiver.put(receiverId, unseenMessagesByReceiver.getOrDefault(receiverId, 0) + 1);
-            }
+        if (highWaterMark.equals(lastReceivedId)) {
+            unreadCounterService.markPrivateAsRead(currentUserId, otherUserId);
+        } else {
+            unreadCounterService.setPrivateUnread(currentUserId, otherUserId,
+                messageRepository.countReceivedAfter(currentUserId, otherUserId, highWaterMark));
         }
 
-        return unseenMessagesByReceiver;
+        if (marked > 0) {
+            Map<String, Object> receipt = new HashMap<>();
+            receipt.put("readerId", currentUserId);
+            receipt.put("upToMessageId", highWaterMark);
+            receipt.put("count", marked);
+            receipt.put("readAt", readAt);
+            webSocketMessageController.sendReadReceipt(otherUserId, receipt);
+        }
+        return marked;
     }
 
-
-
-    public void markMessagesAsSeen(Long currentUserId, Long otherUserId) {
-        List<Message> messages = messageRepository.findMessagesBetweenUsers(
-            currentUserId.intValue(), otherUserId.intValue()
-        );
-
-        for (Message message : messages) {
-            if (message.getReceivedBy() != null && message.getReceivedBy().getId().equals(currentUserId)) {
-                message.getSeenBy().add(usersRepository.findById(currentUserId)
-                    .orElseThrow(() -> new RuntimeException("User not found")));
-                messageRepository.save(message);
-            }
-        }
+    /**
+     * État de lecture d'une conversation privée : un message est vu par son destinataire
+     * si son id est <= au pointeur correspondant (null = rien de vu).
+     */
+    public Map<String, Long> getReadState(Long currentUserId, Long otherUserId) {
+        Map<String, Long> state = new HashMap<>();
+        state.put("lastSeenByMe", conversationStatusRepository.findLastSeenPrivate(currentUserId, otherUserId));
+        state.put("lastSeenByOther", conversationStatusRepository.findLastSeenPrivate(otherUserId, currentUserId));
+        return state;
     }
 
 
 
     public Map<Integer, Integer> getUnreadGroupMessages(Long currentUserId) {
-        Map<Integer, Integer> result = new HashMap<>();
-        Users currentUser = usersRepository.findById(currentUserId)
-            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
-
-        List<Group> groups = groupService.getGroupsForUser(currentUserId.intValue());
-
-        for (Group group : groups) {
-            LocalDateTime lastReadAt = conversationStatusRepository
-                .findByUserAndGroup(currentUser, group)
-                .map(ConversationStatus::getLastReadAt)
-                .orElse(LocalDateTime.MIN);
-
-            int count = messageRepository.countUnreadGroupMessagesExcludingSender(
-                group.getId(), currentUser, lastReadAt, currentUser);
-
-            result.put(group.getId(), count);
+        if (currentUserId == null) {
+            throw new IllegalArgumentException("The given id must not be null");
         }
-        return result;
+
+        // ✅ Une seule lecture indexée au lieu d'un COUNT par groupe
+        return unreadCounterService.getUnreadGroups(currentUserId);
     }
   
     public void updatePrivateLastRead(Long currentUserId, String otherUserKeycloakId) {
-        Users currentUser = usersRepository.findById(currentUserId)
-            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        updatePrivateLastRead(usersRepository.findById(currentUserId)
+            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé")), otherUserKeycloakId);
+    }
 
+    // currentUser déjà résolu (@CurrentUser) : pas de relecture
+    public void updatePrivateLastRead(Users currentUser, String otherUserKeycloakId) {
         Users otherUser = usersRepository.findByIdKeycloak(otherUserKeycloakId)
             .orElseThrow(() -> new RuntimeException("Autre utilisateur non trouvé"));
 
-        ConversationStatus status = conversationStatusRepository
-            .findByUserAndOtherUser(currentUser, otherUser)
-            .orElse(new ConversationStatus());
-
-        status.setUser(currentUser);
-        status.setOtherUser(otherUser);
-        status.setLastReadAt(LocalDateTime.now());
-
-        conversationStatusRepository.save(status);
+        Long lastReceivedId = messageRepository.findLastReceivedMessageId(currentUser.getId(), otherUser.getId());
+        conversationStatusRepository.advancePrivatePointer(currentUser.getId(), otherUser.getId(), lastReceivedId);
+        unreadCounterService.markPrivateAsRead(currentUser.getId(), otherUser.getId());
     }
 
     public void updateGroupLastRead(Long currentUserId, Integer groupId) {
-        Users currentUser = usersRepository.findById(currentUserId)
-            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé"));
+        updateGroupLastRead(usersRepository.findById(currentUserId)
+            .orElseThrow(() -> new RuntimeException("Utilisateur non trouvé")), groupId);
+    }
 
+    public void updateGroupLastRead(Users currentUser, Integer groupId) {
         Group group = groupRepository.findById(groupId)
             .orElseThrow(() -> new RuntimeException("Groupe non trouvé"));
 
-        ConversationStatus status = conversationStatusRepository
-            .findByUserAndGroup(currentUser, group)
-            .orElse(new ConversationStatus());
-
-        status.setUser(currentUser);
-        status.setGroup(group);
-        status.setLastReadAt(LocalDateTime.now());
-
-        conversationStatusRepository.save(status);
+        Long lastGroupMessageId = messageRepository.findLastGroupMessageId(groupId);
+        conversationStatusRepository.advanceGroupPointer(currentUser.getId(), group.getId(), lastGroupMessageId);
+        unreadCounterService.markGroupAsRead(currentUser.getId(), group.getId());
     }
-    public List<UserChatDto> findConversationUserDtos(Long currentUserId, String bearerToken) {
-        List<Long> ids = messageRepository.findAllUserIdsInConversationWith(currentUserId);
-        List<Users> users = usersRepository.findAllById(ids);
+    public List<UserChatDto> findConversationUserDtos(Long currentUserId) {
+        // ✅ Interlocuteurs + date du dernier message en une requête, noms via le cache de profils
+        List<InboxConversationView> rows = messageRepository.findInbox(
+            currentUserId, INBOX_PREVIEW_LENGTH, Integer.MAX_VALUE, 0);
 
         List<UserChatDto> dtos = new ArrayList<>();
-        for (Users user : users) {
-            Map<String, Object> keycloakUser = keycloakService.getUserById(user.getIdKeycloak(), bearerToken);
-            String firstName = (String) keycloakUser.get("firstName");
-            String lastName = (String) keycloakUser.get("lastName");
-
-            LocalDateTime lastMsgTime = messageRepository.findLastMessageTimeBetween(currentUserId, user.getId().longValue());
-
+        for (Map<String, Object> conversation : toConversationMaps(
+                rows.stream().filter(row -> "user".equals(row.getType())).toList())) {
             dtos.add(new UserChatDto(
-                user.getId().longValue(),
-                user.getIdKeycloak(),
-                firstName,
-                lastName,
-                lastMsgTime
+                (Long) conversation.get("postgresId"),
+                (String) conversation.get("idKeycloak"),
+                (String) conversation.get("firstName"),
+                (String) conversation.get("lastName"),
+                (LocalDateTime) conversation.get("lastMessageTime")
             ));
         }
-
-        dtos.sort((a, b) -> b.getLastMessageTime().compareTo(a.getLastMessageTime()));
         return dtos;
     }
 
@@ -0,0 +1,85 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Prospect;
+import com.backend.qu2data.model.OfferDocument;
+import com.backend.qu2data.repository.ProspectRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 📄 Offres commerciales par prospect : génération unitaire ou en masse.
+ * En masse, chaque offre (PDF + email en file) est produite sur le pool borné "pdfExecutor",
+ * dans sa propre transaction : un prospect en échec n'empêche pas les autres.
+ */
+@Service
+public class OfferService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfferService.class);
+
+    @Autowired
+    private ProspectRepository prospectRepository;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    @Qualifier("pdfExecutor")
+    private ThreadPoolTaskExecutor pdfExecutor;
+
+    public Optional<OfferDocument> offerFor(Long prospectId, OfferDocument template) {
+        return prospectRepository.findById(prospectId).map(prospect -> offerFor(prospect, template));
+    }
+
+    // { sent, skipped (sans email / introuvable), failed }
+    public Map<String, Integer> sendToProspects(List<Long> prospectIds, OfferDocument template) {
+        List<Prospect> prospects = prospectRepository.findAllById(prospectIds);
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        int skipped = prospectIds.size() - prospects.size();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (Prospect prospect : prospects) {
+            if (!StringUtils.hasText(prospect.getEmail())) {
+                skipped++;
+                continue;
+            }
+            OfferDocument offer = offerFor(prospect, template);
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    emailService.sendOfferDocument(offer);
+                    sent.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    logger.warn("⚠️ Offre non envoyée au prospect {} : {}", prospect.getId(), e.getMessage());
+                }
+            }, pdfExecutor));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("sent", sent.get());
+        result.put("skipped", skipped);
+        result.put("failed", failed.get());
+        logger.info("📄 Offres en masse : {}", result);
+        return result;
+    }
+
+    private static OfferDocument offerFor(Prospect prospect, OfferDocument template) {
+        return template.copyFor(prospect.getFirstName() + " " + prospect.getLastName(),
+            prospect.getSociete(), prospect.getEmail());
+    }
+}
@@ -1,31 +1,240 @@
 package com.backend.qu2data.service;
 
+import com.backend.qu2data.model.OfferDocument;
 import com.itextpdf.text.*;
+import com.itextpdf.text.html.WebColors;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.ColumnText;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfPageEventHelper;
 import com.itextpdf.text.pdf.PdfWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
 
+/**
+ * 📄 Génération des offres commerciales (iText 5).
+ * Polices, logo et couleurs sont chargés une seule fois au démarrage puis partagés par tous
+ * les documents. Le PDF est écrit directement dans le flux fourni (réponse HTTP, fichier de
+ * spool d'email) : iText libère chaque page terminée, et le tableau des lignes est ajouté par
+ * tranches de TABLE_FLUSH_ROWS lignes (PdfPTable incomplet), donc seules les lignes pas encore
+ * posées sur une page restent en mémoire, en plus de l'OfferDocument fourni par l'appelant.
+ * Mise en page : en-tête de marque et pied de page numéroté sur chaque page, tableau des lignes
+ * dont l'en-tête est répété à chaque saut de page, puis totaux HT / TVA / TTC.
+ */
 @Service
 public class PdfService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PdfService.class);
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    // Lignes accumulées avant de passer le tableau au document (les lignes posées sont libérées)
+    private static final int TABLE_FLUSH_ROWS = 50;
+
+    private final Font titleFont;
+    private final Font headingFont;
+    private final Font bodyFont;
+    private final Font tableHeaderFont;
+    private final Font footerFont;
+    private final BaseColor brandColor;
+    private final String brandName;
+    private final BigDecimal vatRate;
+    private final byte[] logo;
+
+    public PdfService(
+            @Value("${pdf.font-path:}") String fontPath,
+            @Value("${pdf.bold-font-path:}") String boldFontPath,
+            @Value("${pdf.logo:}") String logoLocation,
+            @Value("${pdf.brand-name:Qu2Data}") String brandName,
+            @Value("${pdf.brand-color:#1C7ED6}") String brandColor,
+            @Value("${pdf.vat-rate:0.20}") BigDecimal vatRate) throws DocumentException, IOException {
+        // Police TrueType embarquée si configurée, sinon Helvetica standard (CP1252 : accents et €)
+        BaseFont regular = fontPath.isBlank()
+            ? BaseFont.createFont(BaseFont.HELVETICA, BaseFont.CP1252, BaseFont.NOT_EMBEDDED)
+            : BaseFont.createFont(fontPath, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+        BaseFont bold = boldFontPath.isBlank()
+            ? (fontPath.isBlank() ? BaseFont.createFont(BaseFont.HELVETICA_BOLD, BaseFont.CP1252, BaseFont.NOT_EMBEDDED) : regular)
+            : BaseFont.createFont(boldFontPath, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+
+        this.brandColor = WebColors.getRGBColor(brandColor);
+        this.brandName = brandName;
+        this.vatRate = vatRate;
+        this.titleFont = new Font(bold, 18, Font.NORMAL, this.brandColor);
+        this.headingFont = new Font(bold, 11);
+        this.bodyFont = new Font(regular, 10);
+        this.tableHeaderFont = new Font(bold, 10, Font.NORMAL, BaseColor.WHITE);
+        this.footerFont = new Font(regular, 8, Font.NORMAL, BaseColor.GRAY);
+        this.logo = loadLogo(logoLocation);
+    }
+
+    // Ancienne signature : offre texte simple, rendue en mémoire
     public byte[] generateOfferPdf(String fullName, String company, String offerContent) throws Exception {
+        OfferDocument offer = new OfferDocument();
+        offer.setFullName(fullName);
+        offer.setCompany(company);
+        offer.setIntroduction(offerContent);
+
         ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeOfferPdf(offer, out);
+        return out.toByteArray();
+    }
 
-        Document document = new Document();
-        PdfWriter.getInstance(document, out);
+    /**
+     * Écrit l'offre dans out, page par page. Le flux n'est pas fermé (il appartient à l'appelant).
+     */
+    public void writeOfferPdf(OfferDocument offer, OutputStream out) throws DocumentException, IOException {
+        Document document = new Document(PageSize.A4, 40, 40, 80, 50);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
+        writer.setPageEvent(new BrandPageEvent());
         document.open();
+        try {
+            if (logo != null) {
+                Image image = Image.getInstance(logo);
+                image.scaleToFit(140, 50);
+                document.add(image);
+            }
+            document.add(new Paragraph("Offre commerciale", titleFont));
+            document.add(Chunk.NEWLINE);
 
-        document.add(new Paragraph("Offre commerciale", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18)));
-        document.add(new Paragraph(" "));
-        document.add(new Paragraph("Client : " + fullName));
-        document.add(new Paragraph("Société : " + company));
-        document.add(new Paragraph("Date : " + java.time.LocalDate.now()));
-        document.add(new Paragraph(" "));
-        document.add(new Paragraph("Détail de l’offre :"));
-        document.add(new Paragraph(offerContent));
+            document.add(new Paragraph("Client : " + nullToEmpty(offer.getFullName()), bodyFont));
+            document.add(new Paragraph("Société : " + nullToEmpty(offer.getCompany()), bodyFont));
+            LocalDate today = LocalDate.now();
+            document.add(new Paragraph("Date : " + today.format(DATE), bodyFont));
+            if (offer.getValidityDays() != null) {
+                document.add(new Paragraph("Valable jusqu'au : " + today.plusDays(offer.getValidityDays()).format(DATE), bodyFont));
+            }
+            document.add(Chunk.NEWLINE);
 
-        document.close();
-        return out.toByteArray();
+            if (offer.getIntroduction() != null && !offer.getIntroduction().isBlank()) {
+                document.add(new Paragraph("Détail de l’offre :", headingFont));
+                document.add(new Paragraph(offer.getIntroduction(), bodyFont));
+                document.add(Chunk.NEWLINE);
+            }
+
+            if (!offer.getLines().isEmpty()) {
+                addLines(document, offer);
+            }
+        } finally {
+            document.close();
+        }
+    }
+
+    private void addLines(Document document, OfferDocument offer) throws DocumentException {
+        NumberFormat money = NumberFormat.getCurrencyInstance(Locale.FRANCE); // non thread-safe : un par document
+        NumberFormat quantity = NumberFormat.getNumberInstance(Locale.FRANCE);
+
+        PdfPTable table = new PdfPTable(new float[] {6, 1.5f, 2.5f, 2.5f});
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1); // en-tête répété sur chaque page
+        table.setSplitLate(false);
+        table.setComplete(false); // ajouté par tranches : iText écrit puis retire les lignes déjà posées
+        for (String header : new String[] {"Désignation", "Qté", "Prix unitaire HT", "Total HT"}) {
+            PdfPCell cell = new PdfPCell(new Phrase(header, tableHeaderFont));
+            cell.setBackgroundColor(brandColor);
+            cell.setPadding(5);
+            table.addCell(cell);
+        }
+
+        BigDecimal totalHt = BigDecimal.ZERO;
+        int pending = 0;
+        for (OfferDocument.OfferLine line : offer.getLines()) {
+            table.addCell(cell(nullToEmpty(line.getDescription()), Element.ALIGN_LEFT));
+            table.addCell(cell(quantity.format(line.getQuantity()), Element.ALIGN_RIGHT));
+            table.addCell(cell(money.format(line.getUnitPrice()), Element.ALIGN_RIGHT));
+            table.addCell(cell(money.format(line.getTotal()), Element.ALIGN_RIGHT));
+            totalHt = totalHt.add(line.getTotal());
+            if (++pending == TABLE_FLUSH_ROWS) {
+                document.add(table);
+                pending = 0;
+            }
+        }
+        table.setComplete(true);
+        document.add(table);
+
+        BigDecimal vat = totalHt.multiply(vatRate).setScale(2, RoundingMode.HALF_UP);
+        PdfPTable totals = new PdfPTable(new float[] {8, 2.5f});
+        totals.setWidthPercentage(100);
+        totals.setSpacingBefore(8);
+        totals.setKeepTogether(true);
+        addTotal(totals, "Total HT", money.format(totalHt), bodyFont);
+        addTotal(totals, "TVA " + vatRate.movePointRight(2).stripTrailingZeros().toPlainString() + " %", money.format(vat), bodyFont);
+        addTotal(totals, "Total TTC", money.format(totalHt.add(vat)), headingFont);
+        document.add(totals);
+    }
+
+    private PdfPCell cell(String text, int alignment) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, bodyFont));
+        cell.setHorizontalAlignment(alignment);
+        cell.setPadding(4);
+        return cell;
+    }
+
+    private static void addTotal(PdfPTable table, String label, String value, Font font) {
+        PdfPCell labelCell = new PdfPCell(new Phrase(label, font));
+        labelCell.setBorder(Rectangle.NO_BORDER);
+        labelCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        PdfPCell valueCell = new PdfPCell(new Phrase(value, font));
+        valueCell.setBorder(Rectangle.NO_BORDER);
+        valueCell.setHorizontalAlignment(Element.ALIGN_RIGHT);
+        table.addCell(labelCell);
+        table.addCell(valueCell);
+    }
+
+    private static byte[] loadLogo(String location) {
+        if (location.isBlank()) {
+            return null;
+        }
+        Resource resource = new DefaultResourceLoader().getResource(location);
+        try {
+            return resource.getContentAsByteArray();
+        } catch (IOException e) {
+            logger.warn("⚠️ Logo PDF introuvable ({}) : {}", location, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    // En-tête de marque et numéro de page, dessinés sur chaque page
+    private class BrandPageEvent extends PdfPageEventHelper {
+
+        @Override
+        public void onEndPage(PdfWriter writer, Document document) {
+            PdfContentByte canvas = writer.getDirectContent();
+            float top = document.getPageSize().getTop() - 40;
+
+            ColumnText.showTextAligned(canvas, Element.ALIGN_LEFT,
+                new Phrase(brandName, headingFont), document.left(), top, 0);
+            canvas.saveState();
+            canvas.setColorStroke(brandColor);
+            canvas.setLineWidth(1.5f);
+            canvas.moveTo(document.left(), top - 6);
+            canvas.lineTo(document.right(), top - 6);
+            canvas.stroke();
+            canvas.restoreState();
+
+            ColumnText.showTextAligned(canvas, Element.ALIGN_RIGHT,
+                new Phrase("Page " + writer.getPageNumber(), footerFont),
+                document.right(), document.getPageSize().getBottom() + 25, 0);
+        }
     }
 }
@@ -0,0 +1,46 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.repository.ConversationStatusRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reprise unique de l'ancienne table message_seen_by (une ligne par message et par lecteur)
+ * vers conversation_status.last_seen_message_id (un pointeur par utilisateur et par conversation).
+ * Les requêtes ne font qu'avancer les pointeurs : relancer la migration est sans effet.
+ * Sous verrou consultatif : deux nœuds qui démarrent ensemble ne la font qu'une fois. Sur une base
+ * antérieure aux contraintes uniques, les doublons sont d'abord fusionnés puis les index uniques créés.
+ * Une fois la reprise faite, message_seen_by n'est plus lue et peut être supprimée.
+ */
+@Service
+public class ReadPointerMigration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadPointerMigration.class);
+
+    @Autowired
+    private ConversationStatusRepository conversationStatusRepository;
+
+    // Appelée au démarrage par UnreadCounterService, avant la reconstruction des compteurs qui s'appuie sur les pointeurs
+    @Transactional
+    public void backfillFromSeenBy() {
+        conversationStatusRepository.lockMigration();
+        if (!conversationStatusRepository.uniquePointersExist()) {
+            int merged = conversationStatusRepository.deleteDuplicatePointers();
+            conversationStatusRepository.createPrivatePointerIndex();
+            conversationStatusRepository.createGroupPointerIndex();
+            logger.info("✅ Pointeurs de lecture dédoublonnés ({} ligne(s) fusionnée(s)), index uniques créés", merged);
+        }
+        if (!conversationStatusRepository.seenByTableExists() || conversationStatusRepository.existsAnyLastSeen()) {
+            return;
+        }
+        int privateRows = conversationStatusRepository.backfillPrivatePointers()
+            + conversationStatusRepository.insertMissingPrivatePointers();
+        int groupRows = conversationStatusRepository.backfillGroupPointers()
+            + conversationStatusRepository.insertMissingGroupPointers();
+        logger.info("✅ Pointeurs de lecture repris depuis message_seen_by : {} privé(s), {} groupe(s)", privateRows, groupRows);
+    }
+}
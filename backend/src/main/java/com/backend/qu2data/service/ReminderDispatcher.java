@@ -0,0 +1,278 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.controller.WebSocketMessageController;
+import com.backend.qu2data.entites.Action;
+import com.backend.qu2data.entites.Reminder;
+import com.backend.qu2data.entites.Task;
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.repository.ActionRepository;
+import com.backend.qu2data.repository.ReminderRepository;
+import com.backend.qu2data.repository.TaskRepository;
+import com.backend.qu2data.repository.UsersRepository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ⏰ Déclenchement des rappels.
+ *
+ * Toutes les reminders.poll-interval-ms, l'instance réclame les rappels des prochaines
+ * reminders.window-seconds (FOR UPDATE SKIP LOCKED, bail jusqu'à l'heure prévue + reminders.lease-seconds)
+ * et les range dans une DelayQueue ; un thread dédié les déclenche à l'heure exacte.
+ * Le passage en SENT est conditionné au bail et fait dans la même transaction que la mise en file
+ * de la notification WebSocket et de l'email (outbox) : un rappel part une seule fois, et
+ * si l'instance s'arrête, une autre le reprend à l'expiration du bail.
+ */
+@Service
+public class ReminderDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReminderDispatcher.class);
+
+    private static final DateTimeFormatter DISPLAY = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private ActionRepository actionRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Autowired
+    private UsersRepository usersRepository;
+
+    @Autowired
+    private KeycloakService keycloakService;
+
+    @Autowired
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private WebSocketMessageController webSocketMessageController;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${reminders.window-seconds:120}")
+    private long windowSeconds;
+
+    @Value("${reminders.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${reminders.batch-size:500}")
+    private int batchSize;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final DelayQueue<DueReminder> queue = new DelayQueue<>();
+    private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+    private volatile Thread firingThread;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Gauge.builder("reminders.queue", queue, DelayQueue::size).register(meterRegistry);
+        firingThread = new Thread(this::fireLoop, "reminder-fire");
+        firingThread.setDaemon(true);
+        firingThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (firingThread != null) {
+            firingThread.interrupt();
+        }
+    }
+
+    // 📥 Réclame la prochaine fenêtre de rappels pour cette instance
+    @Scheduled(fixedDelayString = "${reminders.poll-interval-ms:30000}")
+    public void loadWindow() {
+        if (firingThread == null) {
+            return; // pas encore démarré
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<DueReminder> claimed = tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Reminder> rows = reminderRepository.claimDue(now, now.plusSeconds(windowSeconds), batchSize);
+            for (Reminder row : rows) {
+                LocalDateTime start = row.getFireAt().isAfter(now) ? row.getFireAt() : now;
+                row.setOwner(instanceId);
+                row.setLeaseUntil(start.plusSeconds(leaseSeconds));
+            }
+            return rows.stream().map(DueReminder::new).toList();
+        });
+        if (claimed == null) {
+            return;
+        }
+        for (DueReminder due : claimed) {
+            if (queued.add(due.id)) {
+                queue.put(due);
+            }
+        }
+    }
+
+    private void fireLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                DueReminder due = queue.take();
+                queued.remove(due.id);
+                fire(due);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                logger.error("❌ Rappel non déclenché : {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void fire(DueReminder due) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(status -> {
+            if (reminderRepository.markSent(due.id, instanceId, LocalDateTime.now()) == 0) {
+                return; // annulé, replanifié ou repris par une autre instance
+            }
+            boolean delivered = due.sourceType == Reminder.SourceType.ACTION
+                ? deliverAction(due)
+                : deliverTask(due);
+            if (!delivered) {
+                reminderRepository.findById(due.id).ifPresent(r -> r.setStatus(Reminder.Status.CANCELLED));
+                return;
+            }
+            meterRegistry.counter("reminders.fired", "kind", due.kind.name()).increment();
+        });
+    }
+
+    private boolean deliverAction(DueReminder due) {
+        Action action = actionRepository.findById(due.sourceId).orElse(null);
+        if (action == null || isDone(action.getStatut())) {
+            return false;
+        }
+        String title = (due.kind == Reminder.Kind.ECHEANCE ? "📅 Échéance : " : "⏰ Rappel : ") + action.getObjet();
+        String details = action.getContact() != null ? "Contact : " + action.getContact() : "";
+        Long userId = userIdForEmail(action.getManagerEmail());
+        notify(due, userId, action.getManagerEmail(), title, details, due.fireAt);
+        return true;
+    }
+
+    private boolean deliverTask(DueReminder due) {
+        Task task = taskRepository.findById(due.sourceId).orElse(null);
+        if (task == null || isDone(task.getStatus())) {
+            return false;
+        }
+        Users user = task.getAssignedTo() != null ? task.getAssignedTo() : task.getCreatedBy();
+        if (user == null) {
+            return false;
+        }
+        LocalDateTime dueAt = task.getAppointmentTimeStart() != null ? task.getAppointmentTimeStart() : due.fireAt;
+        String email = userProfileCache.get(user.getIdKeycloak()).getEmail();
+        notify(due, user.getId(), email, "📅 Rendez-vous : " + task.getTitle(),
+            task.getDescription() != null ? task.getDescription() : "", dueAt);
+        return true;
+    }
+
+    private void notify(DueReminder due, Long userId, String email, String title, String details, LocalDateTime dueAt) {
+        if (userId != null) {
+            Map<String, Object> event = new HashMap<>();
+            event.put("type", "reminder");
+            event.put("reminderId", due.id);
+            event.put("sourceType", due.sourceType.name());
+            event.put("sourceId", due.sourceId);
+            event.put("kind", due.kind.name());
+            event.put("title", title);
+            event.put("dueAt", dueAt.toString());
+            webSocketMessageController.sendReminder(userId, event);
+        }
+        if (email != null && !email.isBlank()) {
+            Map<String, Object> vars = new HashMap<>();
+            vars.put("title", title);
+            vars.put("details", details);
+            vars.put("dueAt", dueAt.format(DISPLAY));
+            emailService.sendTemplate("reminder", email, null, vars, List.of());
+        }
+    }
+
+    // managerEmail -> id PostgreSQL de l'utilisateur (via Keycloak), null si inconnu
+    private Long userIdForEmail(String email) {
+        if (email == null || email.isBlank()) {
+            return null;
+        }
+        try {
+            UserRepresentation user = keycloakService.getUserByEmail(email);
+            if (user == null) {
+                return null;
+            }
+            return usersRepository.findByIdKeycloak(user.getId()).map(Users::getId).orElse(null);
+        } catch (Exception e) {
+            logger.warn("⚠️ Destinataire du rappel introuvable ({}) : {}", email, e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isDone(String status) {
+        if (status == null) {
+            return false;
+        }
+        String normalized = status.trim().toLowerCase(Locale.ROOT);
+        return normalized.equals("termine") || normalized.equals("terminé");
+    }
+
+    private static final class DueReminder implements Delayed {
+
+        private final Long id;
+        private final Reminder.SourceType sourceType;
+        private final Long sourceId;
+        private final Reminder.Kind kind;
+        private final LocalDateTime fireAt;
+
+        private DueReminder(Reminder reminder) {
+            this.id = reminder.getId();
+            this.sourceType = reminder.getSourceType();
+            this.sourceId = reminder.getSourceId();
+            this.kind = reminder.getKind();
+            this.fireAt = reminder.getFireAt();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Duration.between(LocalDateTime.now(), fireAt));
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return fireAt.compareTo(((DueReminder) other).fireAt);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Action;
+import com.backend.qu2data.entites.Reminder;
+import com.backend.qu2data.entites.Task;
+import com.backend.qu2data.repository.ReminderRepository;
+import com.backend.qu2data.repository.TaskRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matérialise les rappels dans la table reminders, sur une fenêtre glissante (reminders.horizon-hours).
+ * - Action : dateRappel et dateEcheance (dates sans heure) déclenchées à reminders.action-time ;
+ * - Task : Task.reminder, soit une date-heure ISO, soit un délai avant appointmentTimeStart
+ *   ("15", "15 min", "2h", "1 jour", "PT30M").
+ * Les actions sont reprises en une requête ensembliste ; une création / modification appelle
+ * aussi syncAction / syncTask pour ne pas attendre la prochaine réconciliation.
+ * Le déclenchement est fait par ReminderDispatcher.
+ */
+@Service
+public class ReminderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReminderService.class);
+
+    private static final Pattern LEAD_TIME = Pattern.compile(
+        "^(\\d+)\\s*(m|mn|min|mins|minutes?|h|heures?|hours?|j|jours?|d|days?)?$");
+
+    @Autowired
+    private ReminderRepository reminderRepository;
+
+    @Autowired
+    private TaskRepository taskRepository;
+
+    @Value("${reminders.action-time:09:00}")
+    private String actionTime;
+
+    @Value("${reminders.horizon-hours:48}")
+    private long horizonHours;
+
+    @Value("${reminders.task-max-lead-days:7}")
+    private long taskMaxLeadDays;
+
+    // 🔁 Réconciliation : tout ce qui entre dans la fenêtre (y compris les actions créées par lot JDBC)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${reminders.reconcile-interval-ms:300000}", initialDelayString = "${reminders.reconcile-interval-ms:300000}")
+    @Transactional
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusHours(horizonHours);
+
+        int actions = reminderRepository.upsertActionRappels(now.toLocalDate(), until.toLocalDate(), actionTime, null)
+            + reminderRepository.upsertActionEcheances(now.toLocalDate(), until.toLocalDate(), actionTime, null);
+
+        int tasks = 0;
+        for (Task task : taskRepository.findByReminderIsNotNullAndAppointmentTimeStartBetween(now, until.plusDays(taskMaxLeadDays))) {
+            tasks += upsertTask(task, until);
+        }
+        if (actions + tasks > 0) {
+            logger.info("⏰ Rappels planifiés : {} action(s), {} tâche(s)", actions, tasks);
+        }
+    }
+
+    @Transactional
+    public void syncAction(Action action) {
+        reminderRepository.cancelForSource(Reminder.SourceType.ACTION, action.getId());
+        LocalDate today = LocalDate.now();
+        LocalDate until = LocalDateTime.now().plusHours(horizonHours).toLocalDate();
+        reminderRepository.upsertActionRappels(today, until, actionTime, action.getId());
+        reminderRepository.upsertActionEcheances(today, until, actionTime, action.getId());
+    }
+
+    @Transactional
+    public void syncTask(Task task) {
+        reminderRepository.cancelForSource(Reminder.SourceType.TASK, task.getId());
+        upsertTask(task, LocalDateTime.now().plusHours(horizonHours));
+    }
+
+    @Transactional
+    public void cancel(Reminder.SourceType sourceType, Long sourceId) {
+        reminderRepository.cancelForSource(sourceType, sourceId);
+    }
+
+    private int upsertTask(Task task, LocalDateTime until) {
+        Optional<LocalDateTime> fireAt = taskFireTime(task);
+        if (fireAt.isEmpty() || fireAt.get().isAfter(until)) {
+            return 0; // au-delà de la fenêtre : repris par une prochaine réconciliation
+        }
+        return reminderRepository.upsert(
+            Reminder.SourceType.TASK.name(), task.getId(), Reminder.Kind.RENDEZVOUS.name(), fireAt.get());
+    }
+
+    // Heure de déclenchement du rappel d'une tâche ; vide si Task.reminder est absent ou illisible
+    public static Optional<LocalDateTime> taskFireTime(Task task) {
+        String reminder = task.getReminder();
+        if (reminder == null || reminder.isBlank()) {
+            return Optional.empty();
+        }
+        String value = reminder.trim();
+        try {
+            return Optional.of(LocalDateTime.parse(value));
+        } catch (DateTimeParseException ignored) {
+            // pas une date-heure : délai avant le rendez-vous
+        }
+        if (task.getAppointmentTimeStart() == null) {
+            return Optional.empty();
+        }
+        return leadTime(value).map(lead -> task.getAppointmentTimeStart().minus(lead));
+    }
+
+    private static Optional<Duration> leadTime(String value) {
+        try {
+            return Optional.of(Duration.parse(value.toUpperCase(Locale.ROOT)));
+        } catch (DateTimeParseException ignored) {
+            // format libre
+        }
+        Matcher matcher = LEAD_TIME.matcher(value.toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            logger.debug("Rappel de tâche illisible : {}", value);
+            return Optional.empty();
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        String unit = matcher.group(2) == null ? "m" : matcher.group(2);
+        if (unit.startsWith("h")) {
+            return Optional.of(Duration.ofHours(amount));
+        }
+        if (unit.startsWith("j") || unit.startsWith("d")) {
+            return Optional.of(Duration.ofDays(amount));
+        }
+        return Optional.of(Duration.ofMinutes(amount));
+    }
+}
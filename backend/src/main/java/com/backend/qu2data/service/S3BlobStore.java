@@ -0,0 +1,217 @@
+package com.backend.qu2data.service;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Backend S3 (AWS, MinIO ou tout service compatible via storage.s3.endpoint + path-style).
+ * Les gros fichiers partent en upload multipart, une partie à la fois : la mémoire est bornée
+ * à storage.s3.part-size-bytes par upload. Les téléchargements se font par URL présignée.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3")
+public class S3BlobStore implements BlobStore, DisposableBean {
+
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024; // minimum imposé par S3
+
+    private final S3Client s3;
+    private final S3Presigner presigner;
+    private final String bucket;
+    private final String keyPrefix;
+    private final int partSize;
+
+    public S3BlobStore(
+            @Value("${storage.s3.bucket}") String bucket,
+            @Value("${storage.s3.region:us-east-1}") String region,
+            @Value("${storage.s3.endpoint:}") String endpoint,
+            @Value("${storage.s3.access-key:}") String accessKey,
+            @Value("${storage.s3.secret-key:}") String secretKey,
+            @Value("${storage.s3.path-style:false}") boolean pathStyle,
+            @Value("${storage.s3.key-prefix:}") String keyPrefix,
+            @Value("${storage.s3.part-size-bytes:8388608}") int partSize) {
+        this.bucket = bucket;
+        this.keyPrefix = keyPrefix;
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+            ? DefaultCredentialsProvider.create()
+            : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3Configuration configuration = S3Configuration.builder()
+            .pathStyleAccessEnabled(pathStyle)
+            .build();
+
+        S3ClientBuilder clientBuilder = S3Client.builder()
+            .region(Region.of(region))
+            .credentialsProvider(credentials)
+            .serviceConfiguration(configuration);
+        S3Presigner.Builder presignerBuilder = S3Presigner.builder()
+            .region(Region.of(region))
+            .credentialsProvider(credentials)
+            .serviceConfiguration(configuration);
+        if (!endpoint.isBlank()) {
+            clientBuilder.endpointOverride(URI.create(endpoint));
+            presignerBuilder.endpointOverride(URI.create(endpoint));
+        }
+        this.s3 = clientBuilder.build();
+        this.presigner = presignerBuilder.build();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void put(String key, InputStream content, long size, String contentType) throws IOException {
+        if (size <= partSize) {
+            s3.putObject(PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(objectKey(key))
+                    .contentType(contentType)
+                    .contentLength(size)
+                    .build(),
+                RequestBody.fromInputStream(content, size));
+            return;
+        }
+        putMultipart(objectKey(key), content, contentType);
+    }
+
+    private void putMultipart(String objectKey, InputStream content, String contentType) throws IOException {
+        String uploadId = s3.createMultipartUpload(CreateMultipartUploadRequest.builder()
+            .bucket(bucket)
+            .key(objectKey)
+            .contentType(contentType)
+            .build()).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            byte[] buffer = new byte[partSize];
+            int partNumber = 1;
+            int read;
+            while ((read = content.readNBytes(buffer, 0, partSize)) > 0) {
+                String etag = s3.uploadPart(UploadPartRequest.builder()
+                        .bucket(bucket)
+                        .key(objectKey)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength((long) read)
+                        .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, read), read)).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(etag).build());
+                partNumber++;
+            }
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(objectKey)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                .build());
+        } catch (IOException | RuntimeException e) {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(objectKey)
+                .uploadId(uploadId)
+                .build());
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+        } catch (NoSuchKeyException e) {
+            throw new IOException("Objet introuvable : " + key, e);
+        }
+    }
+
+    @Override
+    public void delete(String key) {
+        s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(objectKey(key)).build());
+    }
+
+    @Override
+    public void deletePrefix(String prefix) {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+            .bucket(bucket)
+            .prefix(objectKey(prefix.endsWith("/") ? prefix : prefix + "/"))
+            .build();
+        for (ListObjectsV2Response page : s3.listObjectsV2Paginator(request)) {
+            if (page.contents().isEmpty()) {
+                continue;
+            }
+            List<ObjectIdentifier> objects = page.contents().stream()
+                .map(object -> ObjectIdentifier.builder().key(object.key()).build())
+                .toList();
+            s3.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .delete(Delete.builder().objects(objects).quiet(true).build())
+                .build());
+        }
+    }
+
+    @Override
+    public Optional<Path> localPath(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<String> presignedUrl(String key, Duration ttl, String contentDisposition, String contentType) {
+        GetObjectRequest request = GetObjectRequest.builder()
+            .bucket(bucket)
+            .key(objectKey(key))
+            .responseContentType(contentType)
+            .responseContentDisposition(contentDisposition)
+            .build();
+        return Optional.of(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                .signatureDuration(ttl)
+                .getObjectRequest(request)
+                .build())
+            .url()
+            .toString());
+    }
+
+    @Override
+    public void destroy() {
+        presigner.close();
+        s3.close();
+    }
+
+    private String objectKey(String key) {
+        return keyPrefix.isBlank() ? key : keyPrefix + "/" + key;
+    }
+}
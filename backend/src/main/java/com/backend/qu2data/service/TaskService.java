@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import com.backend.qu2data.entites.Project;
+import com.backend.qu2data.entites.Reminder;
 import com.backend.qu2data.entites.Task;
 import com.backend.qu2data.entites.TaskCreationDto;
 import com.backend.qu2data.entites.TaskCreationResponseDto;
@@ -30,6 +31,9 @@ public class TaskService {
 
 	    @Autowired
 	    private ProjectRepository projectRepository;
+
+	    @Autowired
+	    private ReminderService reminderService;
 	  
 
 	    public TaskCreationResponseDto createTaskAndReturnDto(TaskCreationDto dto) {
@@ -126,12 +130,18 @@ public class TaskService {
         task.setStatus(updatedTask.getStatus());
         task.setAssignedTo(updatedTask.getAssignedTo());
         task.setIsPersonalTodo(updatedTask.getIsPersonalTodo());
+        task.setAppointmentTimeStart(updatedTask.getAppointmentTimeStart());
+        task.setAppointmentTimeEnd(updatedTask.getAppointmentTimeEnd());
+        task.setReminder(updatedTask.getReminder());
 
-        return taskRepository.save(task);
+        Task saved = taskRepository.save(task);
+        reminderService.syncTask(saved); // ⏰ replanifie le rappel du rendez-vous
+        return saved;
     }
 
     public void deleteTask(Long id) {
         Task task = getTaskById(id);
         taskRepository.delete(task);
+        reminderService.cancel(Reminder.SourceType.TASK, id);
     }
 }
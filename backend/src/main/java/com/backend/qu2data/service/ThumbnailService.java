@@ -0,0 +1,199 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Attachment;
+import com.backend.qu2data.repository.AttachmentRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Miniatures des images jointes, générées en arrière-plan après le commit de la pièce jointe.
+ * Le décodage est sous-échantillonné (mémoire bornée même pour une très grande image) et le
+ * résultat est rangé dans les dérivés du blob (disque ou S3) : un contenu identique n'est réduit qu'une fois.
+ * Formats lus par ImageIO uniquement (PNG, JPEG, GIF, BMP) ; WebP n'est pas pris en charge par le JDK.
+ * Une seule génération en cours par contenu ; une image illisible ou trop grande est marquée
+ * (thumbnail_failed) et n'est plus jamais remise en file.
+ */
+@Service
+public class ThumbnailService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThumbnailService.class);
+
+    private static final Set<String> SUPPORTED_TYPES = Set.of(
+        "image/png", "image/jpeg", "image/jpg", "image/gif", "image/bmp");
+
+    @Autowired
+    private AttachmentRepository attachmentRepository;
+
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    @Qualifier("thumbnailExecutor")
+    private ThreadPoolTaskExecutor thumbnailExecutor;
+
+    @Value("${thumbnails.max-edge:320}")
+    private int maxEdge;
+
+    @Value("${thumbnails.max-source-pixels:50000000}")
+    private long maxSourcePixels;
+
+    // Empreintes en cours de génération : une miniature absente demandée en boucle ne remplit pas la file
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public boolean supports(Attachment attachment) {
+        return attachment.getChecksum() != null
+            && attachment.getType() != null
+            && SUPPORTED_TYPES.contains(attachment.getType().toLowerCase(Locale.ROOT));
+    }
+
+    // 🖼️ Planifie la miniature une fois la pièce jointe visible en base
+    public void scheduleAfterCommit(Attachment attachment) {
+        if (!supports(attachment) || Boolean.TRUE.equals(attachment.getThumbnailFailed())) {
+            return;
+        }
+        Integer attachmentId = attachment.getId();
+        String checksum = attachment.getChecksum();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            submit(attachmentId, checksum);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                submit(attachmentId, checksum);
+            }
+        });
+    }
+
+    private void submit(Integer attachmentId, String checksum) {
+        if (!inFlight.add(checksum)) {
+            return; // déjà en file pour ce contenu
+        }
+        try {
+            thumbnailExecutor.execute(() -> {
+                try {
+                    generate(attachmentId);
+                } finally {
+                    inFlight.remove(checksum);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            inFlight.remove(checksum);
+            logger.warn("⚠️ File des miniatures pleine, pièce jointe {} ignorée", attachmentId);
+        }
+    }
+
+    private void generate(Integer attachmentId) {
+        Attachment attachment = attachmentRepository.findById(attachmentId).orElse(null);
+        if (attachment == null || attachment.getThumbnailPath() != null || Boolean.TRUE.equals(attachment.getThumbnailFailed())) {
+            return;
+        }
+        boolean png = !attachment.getType().toLowerCase(Locale.ROOT).contains("jpeg")
+            && !attachment.getType().toLowerCase(Locale.ROOT).contains("jpg");
+        String format = png ? "png" : "jpg";
+        String target = FileStorageService.derivativeKey(attachment.getChecksum(), "thumb-" + maxEdge + "." + format);
+
+        try {
+            if (!blobStore.exists(target) && !render(attachment.getPath(), target, format, png)) {
+                attachmentRepository.markThumbnailFailed(attachmentId);
+                return;
+            }
+            attachmentRepository.updateThumbnailPath(attachmentId, FileStorageService.publicPath(target));
+        } catch (IIOException e) {
+            // Image corrompue : le même contenu échouera toujours
+            logger.warn("⚠️ Image illisible, pas de miniature pour la pièce jointe {} : {}", attachmentId, e.getMessage());
+            attachmentRepository.markThumbnailFailed(attachmentId);
+        } catch (Exception e) {
+            logger.warn("⚠️ Miniature impossible pour la pièce jointe {} : {}", attachmentId, e.getMessage());
+        }
+    }
+
+    private boolean render(String sourcePath, String target, String format, boolean keepAlpha) throws IOException {
+        try (InputStream source = fileStorageService.open(sourcePath);
+             ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return false;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    logger.warn("⚠️ Image {}x{} trop grande pour une miniature", width, height);
+                    return false;
+                }
+
+                // Décodage direct à ~2x la taille cible : la pleine résolution n'est jamais en mémoire
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (maxEdge * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+
+                double scale = Math.min(1.0, (double) maxEdge / Math.max(decoded.getWidth(), decoded.getHeight()));
+                int thumbWidth = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+                int thumbHeight = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+
+                BufferedImage thumbnail = new BufferedImage(thumbWidth, thumbHeight,
+                    keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+                Graphics2D g = thumbnail.createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                    if (!keepAlpha) {
+                        g.setColor(Color.WHITE);
+                        g.fillRect(0, 0, thumbWidth, thumbHeight);
+                    }
+                    g.drawImage(decoded, 0, 0, thumbWidth, thumbHeight, null);
+                } finally {
+                    g.dispose();
+                }
+
+                // Fichier temporaire local : la taille exacte est connue avant l'envoi au stockage
+                Path tmp = Files.createTempFile("thumb-", "." + format);
+                try {
+                    ImageIO.write(thumbnail, format, tmp.toFile());
+                    try (InputStream in = Files.newInputStream(tmp)) {
+                        blobStore.put(target, in, Files.size(tmp), keepAlpha ? "image/png" : "image/jpeg");
+                    }
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+                return true;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.UnreadCounter;
+import com.backend.qu2data.repository.UnreadCounterRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compteurs de non-lus dénormalisés : incrémentés à l'envoi, remis à zéro à la lecture.
+ * Les badges du frontend sont servis par une seule lecture indexée par utilisateur.
+ */
+@Service
+public class UnreadCounterService implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnreadCounterService.class);
+
+    @Autowired
+    private UnreadCounterRepository unreadCounterRepository;
+
+    @Autowired
+    private ReadPointerMigration readPointerMigration;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Transactional
+    public void onPrivateMessage(Long senderId, Long receiverId) {
+        unreadCounterRepository.incrementPrivate(receiverId, senderId, UnreadCounter.privateKey(senderId));
+    }
+
+    @Transactional
+    public void onGroupMessage(Integer groupId, Long senderId) {
+        unreadCounterRepository.incrementGroup(groupId, UnreadCounter.groupKey(groupId), senderId);
+    }
+
+    @Transactional
+    public void markPrivateAsRead(Long currentUserId, Long otherUserId) {
+        unreadCounterRepository.reset(currentUserId, UnreadCounter.privateKey(otherUserId));
+    }
+
+    // Lecture partielle : il reste "remaining" messages non lus au-delà du curseur
+    @Transactional
+    public void setPrivateUnread(Long currentUserId, Long otherUserId, int remaining) {
+        unreadCounterRepository.setCount(currentUserId, UnreadCounter.privateKey(otherUserId), remaining);
+    }
+
+    @Transactional
+    public void markGroupAsRead(Long currentUserId, Integer groupId) {
+        unreadCounterRepository.reset(currentUserId, UnreadCounter.groupKey(groupId));
+    }
+
+    // { idExpéditeur -> nombre de messages non lus }
+    public Map<Long, Integer> getUnreadPrivate(Long currentUserId) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (UnreadCounter counter : unreadCounterRepository.findPrivateUnread(currentUserId)) {
+            result.put(counter.getOtherUserId(), counter.getUnreadCount());
+        }
+        return result;
+    }
+
+    // { idGroupe -> nombre de messages non lus }
+    public Map<Integer, Integer> getUnreadGroups(Long currentUserId) {
+        Map<Integer, Integer> result = new HashMap<>();
+        for (UnreadCounter counter : unreadCounterRepository.findGroupUnread(currentUserId)) {
+            result.put(counter.getGroupId(), counter.getUnreadCount());
+        }
+        return result;
+    }
+
+    // { idDestinataire -> nombre de mes messages qu'il n'a pas encore lus }
+    public Map<Long, Integer> getUnseenSentByReceiver(Long currentUserId) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (UnreadCounter counter : unreadCounterRepository.findUnreadSentBy(currentUserId)) {
+            result.put(counter.getUserId(), counter.getUnreadCount());
+        }
+        return result;
+    }
+
+    /**
+     * 🔁 Premier démarrage : on initialise les compteurs depuis l'historique existant.
+     * Exécuté avant l'ouverture du port HTTP (et avant les tâches planifiées) : ce nœud ne peut pas
+     * incrémenter pendant la reconstruction. Les pointeurs repris de message_seen_by sont commités d'abord.
+     * Sous verrou consultatif, avec re-vérification : un second nœud qui démarre ne refait rien.
+     * Limite connue : si un autre nœud sert déjà du trafic sur une table vide, une conversation qu'il a
+     * incrémentée avant la reconstruction garde son compteur partiel (sous-compte jusqu'à la prochaine lecture).
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        readPointerMigration.backfillFromSeenBy();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> rebuildIfEmpty());
+    }
+
+    private void rebuildIfEmpty() {
+        if (unreadCounterRepository.count() > 0) {
+            return;
+        }
+        unreadCounterRepository.lockRebuild();
+        if (unreadCounterRepository.count() > 0) {
+            return; // reconstruit par un autre nœud pendant l'attente du verrou
+        }
+        int privateRows = unreadCounterRepository.rebuildPrivate();
+        int groupRows = unreadCounterRepository.rebuildGroups();
+        logger.info("✅ Compteurs de non-lus initialisés : {} privé(s), {} groupe(s)", privateRows, groupRows);
+    }
+}
@@ -0,0 +1,315 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.repository.UsersRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleResource;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * 📇 Copie de l'annuaire Keycloak dans la table users (username, email, noms, rôles, enabled).
+ *
+ * Passage complet planifié (keycloak.sync.interval-ms) : l'API d'administration n'offre pas de filtre
+ * "modifié depuis", donc chaque passage relit tout l'annuaire, par pages de keycloak.sync.page-size,
+ * chaque page étant écrite en un seul batch JDBC. L'upsert ne modifie une ligne que si l'une des
+ * valeurs a changé : un passage sans changement n'écrit rien.
+ * Les rôles sont les rôles de realm effectifs (directs, via un groupe ou un sous-groupe, ou un rôle composite),
+ * calculés rôle par rôle (membres directs, groupes porteurs et leurs membres) : le nombre d'appels
+ * d'administration dépend du nombre de rôles et de groupes, pas du nombre d'utilisateurs.
+ * Tous les appels passent par KeycloakCallGuard (cloison + disjoncteur).
+ * Un compte absent de Keycloak est désactivé, jamais supprimé, et seulement après un passage stable
+ * (même nombre d'utilisateurs avant et après, tous vus) : la pagination par décalage peut sauter
+ * des comptes si le realm change pendant le passage.
+ * syncUser rafraîchit un seul compte juste après sa création / modification.
+ */
+@Service
+public class UserDirectorySync {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserDirectorySync.class);
+
+    private static final String UPSERT_USER = """
+            INSERT INTO users (id_keycloak, username, email, first_name, last_name, roles, enabled, directory_synced_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (id_keycloak) DO UPDATE SET
+                username = EXCLUDED.username,
+                email = EXCLUDED.email,
+                first_name = EXCLUDED.first_name,
+                last_name = EXCLUDED.last_name,
+                roles = EXCLUDED.roles,
+                enabled = EXCLUDED.enabled,
+                directory_synced_at = EXCLUDED.directory_synced_at
+            WHERE (users.username, users.email, users.first_name, users.last_name, users.roles, users.enabled)
+                IS DISTINCT FROM
+                  (EXCLUDED.username, EXCLUDED.email, EXCLUDED.first_name, EXCLUDED.last_name, EXCLUDED.roles, EXCLUDED.enabled)
+        """;
+
+    private static final int[] UPSERT_USER_TYPES = {
+        Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+        Types.BOOLEAN, Types.TIMESTAMP
+    };
+
+    private final Keycloak keycloak;
+    private final UsersRepository usersRepository;
+    private final CurrentUserCache currentUserCache;
+    private final KeycloakCallGuard keycloakCallGuard;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String realm;
+    private final int pageSize;
+
+    private final Counter changedCounter;
+    private final Timer syncTimer;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public UserDirectorySync(
+            Keycloak keycloak,
+            UsersRepository usersRepository,
+            CurrentUserCache currentUserCache,
+            KeycloakCallGuard keycloakCallGuard,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${keycloak.realm:qu2data-realm}") String realm,
+            @Value("${keycloak.sync.page-size:200}") int pageSize) {
+        this.keycloak = keycloak;
+        this.usersRepository = usersRepository;
+        this.currentUserCache = currentUserCache;
+        this.keycloakCallGuard = keycloakCallGuard;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.realm = realm;
+        this.pageSize = pageSize;
+        this.changedCounter = meterRegistry.counter("keycloak.sync.changed");
+        this.syncTimer = meterRegistry.timer("keycloak.sync.duration");
+    }
+
+    @Scheduled(initialDelayString = "${keycloak.sync.initial-delay-ms:10000}",
+               fixedDelayString = "${keycloak.sync.interval-ms:300000}")
+    public void scheduledSync() {
+        if (keycloakCallGuard.isOpen()) {
+            logger.warn("⏸️ Keycloak indisponible (disjoncteur ouvert) : synchronisation de l'annuaire reportée");
+            return;
+        }
+        try {
+            syncAll();
+        } catch (Exception e) {
+            logger.error("❌ Synchronisation de l'annuaire Keycloak échouée : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Passage complet. Retourne { seen, changed, disabled } ; vide si un passage est déjà en cours.
+     */
+    public Map<String, Integer> syncAll() {
+        if (!running.compareAndSet(false, true)) {
+            return Map.of();
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            RealmResource realmResource = keycloak.realm(realm);
+            int countBefore = keycloakCallGuard.call("syncCountUsers", () -> realmResource.users().count());
+            Map<String, Set<String>> roles = effectiveRolesByUser(realmResource);
+
+            Set<String> seen = new HashSet<>();
+            int changed = 0;
+            int first = 0;
+            while (true) {
+                int offset = first;
+                List<UserRepresentation> page = keycloakCallGuard.call("syncListUsers",
+                    () -> realmResource.users().list(offset, pageSize));
+                changed += upsert(page, roles);
+                page.forEach(user -> seen.add(user.getId()));
+                if (page.size() < pageSize) {
+                    break;
+                }
+                first += pageSize;
+            }
+
+            int disabled = 0;
+            int countAfter = keycloakCallGuard.call("syncCountUsers", () -> realmResource.users().count());
+            if (countBefore == countAfter && seen.size() == countAfter) {
+                List<String> missing = new ArrayList<>(usersRepository.findEnabledKeycloakIds());
+                missing.removeAll(seen);
+                if (!missing.isEmpty()) {
+                    disabled = transactionTemplate.execute(status -> usersRepository.disableAll(missing));
+                    currentUserCache.invalidateAll(missing);
+                }
+            } else {
+                logger.info("📇 Annuaire modifié pendant le passage ({} -> {} comptes, {} vus) : désactivations reportées",
+                    countBefore, countAfter, seen.size());
+            }
+
+            Map<String, Integer> result = new LinkedHashMap<>();
+            result.put("seen", seen.size());
+            result.put("changed", changed);
+            result.put("disabled", disabled);
+            if (changed > 0 || disabled > 0) {
+                logger.info("📇 Annuaire Keycloak synchronisé : {}", result);
+            }
+            return result;
+        } finally {
+            sample.stop(syncTimer);
+            running.set(false);
+        }
+    }
+
+    // 🔁 Un seul compte, juste après une écriture dans Keycloak (le passage planifié rattrape un échec)
+    public void syncUser(String keycloakId) {
+        try {
+            RealmResource realmResource = keycloak.realm(realm);
+            UserRepresentation user = keycloakCallGuard.call("getUser",
+                () -> realmResource.users().get(keycloakId).toRepresentation());
+            Set<String> names = new TreeSet<>();
+            keycloakCallGuard.call("getUserRoles",
+                    () -> realmResource.users().get(keycloakId).roles().realmLevel().listEffective())
+                .forEach(role -> names.add(role.getName()));
+            upsert(List.of(user), Map.of(keycloakId, names));
+        } catch (Exception e) {
+            logger.warn("⚠️ Utilisateur {} non synchronisé depuis Keycloak : {}", keycloakId, e.getMessage());
+        }
+    }
+
+    /**
+     * Rôles effectifs de tout le realm, rôle par rôle : chaque rôle est déplié avec ses composites,
+     * puis attribué à ses membres directs et aux membres de ses groupes (sous-groupes compris).
+     * Triés pour un texte stable.
+     */
+    private Map<String, Set<String>> effectiveRolesByUser(RealmResource realmResource) {
+        List<RoleRepresentation> realmRoles = keycloakCallGuard.call("syncListRoles", () -> realmResource.roles().list());
+
+        // Composites directs (realm) de chaque rôle composite, puis fermeture en mémoire
+        Map<String, Set<String>> composites = new HashMap<>();
+        for (RoleRepresentation role : realmRoles) {
+            Set<String> children = new HashSet<>();
+            if (role.isComposite()) {
+                keycloakCallGuard.call("syncRoleComposites",
+                        () -> realmResource.roles().get(role.getName()).getRealmRoleComposites())
+                    .forEach(child -> children.add(child.getName()));
+            }
+            composites.put(role.getName(), children);
+        }
+
+        Map<String, List<String>> subGroups = new HashMap<>();
+        indexSubGroups(keycloakCallGuard.call("syncListGroups", () -> realmResource.groups().groups()), subGroups);
+        Map<String, List<UserRepresentation>> groupMembers = new HashMap<>();
+
+        Map<String, Set<String>> rolesByUser = new HashMap<>();
+        for (RoleRepresentation role : realmRoles) {
+            Set<String> granted = expand(role.getName(), composites, new TreeSet<>());
+            RoleResource roleResource = realmResource.roles().get(role.getName());
+
+            for (UserRepresentation user : pages("syncRoleUsers", roleResource::getUserMembers)) {
+                rolesByUser.computeIfAbsent(user.getId(), id -> new TreeSet<>()).addAll(granted);
+            }
+            List<GroupRepresentation> groups = pages("syncRoleGroups",
+                (first, max) -> new ArrayList<>(roleResource.getRoleGroupMembers(first, max)));
+            for (String groupId : withSubGroups(groups, subGroups)) {
+                List<UserRepresentation> members = groupMembers.computeIfAbsent(groupId,
+                    id -> pages("syncGroupMembers", (first, max) -> realmResource.groups().group(id).members(first, max)));
+                for (UserRepresentation user : members) {
+                    rolesByUser.computeIfAbsent(user.getId(), id -> new TreeSet<>()).addAll(granted);
+                }
+            }
+        }
+        return rolesByUser;
+    }
+
+    private static Set<String> expand(String role, Map<String, Set<String>> composites, Set<String> into) {
+        if (into.add(role)) {
+            for (String child : composites.getOrDefault(role, Set.of())) {
+                expand(child, composites, into);
+            }
+        }
+        return into;
+    }
+
+    private static void indexSubGroups(List<GroupRepresentation> groups, Map<String, List<String>> subGroups) {
+        for (GroupRepresentation group : groups) {
+            List<GroupRepresentation> children = group.getSubGroups() != null ? group.getSubGroups() : List.of();
+            subGroups.put(group.getId(), children.stream().map(GroupRepresentation::getId).toList());
+            indexSubGroups(children, subGroups);
+        }
+    }
+
+    // Un sous-groupe hérite des rôles de ses parents
+    private static Set<String> withSubGroups(List<GroupRepresentation> groups, Map<String, List<String>> subGroups) {
+        Set<String> ids = new HashSet<>();
+        List<String> pending = new ArrayList<>(groups.stream().map(GroupRepresentation::getId).toList());
+        while (!pending.isEmpty()) {
+            String id = pending.remove(pending.size() - 1);
+            if (ids.add(id)) {
+                pending.addAll(subGroups.getOrDefault(id, List.of()));
+            }
+        }
+        return ids;
+    }
+
+    // Liste paginée (first, max) lue en entier, page par page à travers la cloison
+    private <T> List<T> pages(String operation, BiFunction<Integer, Integer, List<T>> page) {
+        List<T> all = new ArrayList<>();
+        int first = 0;
+        while (true) {
+            int offset = first;
+            List<T> batch = keycloakCallGuard.call(operation, () -> page.apply(offset, pageSize));
+            all.addAll(batch);
+            if (batch.size() < pageSize) {
+                return all;
+            }
+            first += pageSize;
+        }
+    }
+
+    private int upsert(List<UserRepresentation> users, Map<String, Set<String>> roles) {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(users.size());
+        for (UserRepresentation user : users) {
+            rows.add(new Object[] {
+                user.getId(), user.getUsername(), user.getEmail(), user.getFirstName(), user.getLastName(),
+                String.join(",", roles.getOrDefault(user.getId(), Set.of())),
+                user.isEnabled() == null || user.isEnabled(), now
+            });
+        }
+        int[] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPSERT_USER, rows, UPSERT_USER_TYPES));
+        int changed = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                currentUserCache.invalidate(users.get(i).getId());
+                changed++;
+            }
+        }
+        changedCounter.increment(changed);
+        return changed;
+    }
+}
@@ -0,0 +1,121 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.model.UserProfile;
+import com.backend.qu2data.repository.UsersRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Cache en mémoire des profils (nom / prénom) utilisé pour afficher les expéditeurs.
+ * Les IDs d'une requête sont dédoublonnés, les absents du cache sont lus dans la copie locale
+ * de l'annuaire (table users) ; Keycloak n'est appelé, en un seul appel groupé, que pour les
+ * comptes pas encore synchronisés. Les profils sont conservés avec une durée de vie et une taille maximale.
+ */
+@Service
+public class UserProfileCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserProfileCache.class);
+
+    private final KeycloakService keycloakService;
+    private final UsersRepository usersRepository;
+    private final Cache<String, UserProfile> cache;
+    private final Timer lookupTimer;
+
+    public UserProfileCache(
+        KeycloakService keycloakService,
+        UsersRepository usersRepository,
+        MeterRegistry meterRegistry,
+        @Value("${profiles.cache.ttl-seconds:600}") long ttlSeconds,
+        @Value("${profiles.cache.max-size:10000}") long maxSize
+    ) {
+        this.keycloakService = keycloakService;
+        this.usersRepository = usersRepository;
+        this.cache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .maximumSize(maxSize)
+            .recordStats()
+            .build();
+        // ✅ hits / misses / évictions exposés sous "cache.*{cache=userProfiles}"
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userProfiles");
+        this.lookupTimer = Timer.builder("user.profiles.lookup")
+            .description("Durée des résolutions groupées de profils Keycloak")
+            .register(meterRegistry);
+    }
+
+    public UserProfile get(String keycloakId) {
+        if (keycloakId == null) {
+            return UserProfile.unknown(null);
+        }
+        return getAll(Set.of(keycloakId)).get(keycloakId);
+    }
+
+    /**
+     * Résout tous les profils demandés : une seule entrée par ID, au plus un appel Keycloak groupé
+     * pour les absents. Les IDs introuvables reçoivent un profil "Inconnu" (non mis en cache).
+     */
+    public Map<String, UserProfile> getAll(Collection<String> keycloakIds) {
+        Set<String> distinctIds = keycloakIds.stream()
+            .filter(Objects::nonNull)
+            .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        Map<String, UserProfile> profiles = new HashMap<>(cache.getAll(distinctIds, this::loadProfiles));
+        for (String id : distinctIds) {
+            profiles.putIfAbsent(id, UserProfile.unknown(id));
+        }
+        return profiles;
+    }
+
+    public void invalidate(String keycloakId) {
+        if (keycloakId != null) {
+            cache.invalidate(keycloakId);
+        }
+    }
+
+    private Map<String, UserProfile> loadProfiles(Set<? extends String> missingIds) {
+        return lookupTimer.record(() -> {
+            Map<String, UserProfile> loaded = new HashMap<>();
+
+            for (Users user : usersRepository.findByIdKeycloakIn(new HashSet<>(missingIds))) {
+                if (user.getFirstName() != null && user.getLastName() != null) {
+                    loaded.put(user.getIdKeycloak(), new UserProfile(user.getIdKeycloak(), user.getUsername(),
+                        user.getEmail(), user.getFirstName(), user.getLastName()));
+                }
+            }
+
+            // 🔁 Repli sur Keycloak pour les comptes que la synchronisation n'a pas encore recopiés
+            Set<String> stillMissing = new HashSet<>(missingIds);
+            stillMissing.removeAll(loaded.keySet());
+            if (!stillMissing.isEmpty()) {
+                Map<String, UserRepresentation> keycloakUsers = keycloakService.getUsersByIds(stillMissing);
+                keycloakUsers.forEach((id, user) -> {
+                    if (user.getFirstName() != null && user.getLastName() != null) {
+                        loaded.put(id, new UserProfile(id, user.getUsername(), user.getEmail(),
+                            user.getFirstName(), user.getLastName()));
+                    }
+                });
+            }
+
+            logger.debug("🧪 Profils résolus : {}/{}", loaded.size(), missingIds.size());
+            return loaded;
+        });
+    }
+}
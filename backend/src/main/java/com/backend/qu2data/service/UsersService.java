@@ -8,10 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.keycloak.representations.idm.UserRepresentation;
 
 import java.util.*;
 
@@ -24,23 +21,30 @@ public class UsersService {
     private UsersRepository usersRepository;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private KeycloakService keycloakService;
 
     @Autowired
-    private KeycloakService keycloakService;
+    private UserProfileCache userProfileCache;
+
+    @Autowired
+    private CurrentUserCache currentUserCache;
 
     private final String keycloakUrl = "http://localhost:8080/admin/realms/qu2data-realm";
 
     // ✅ Créer un utilisateur dans PostgreSQL et Keycloak
     public Users createUser(UserDto userDto) {
         try {
-            Users newUser = new Users();
+            // La ligne peut déjà exister : l'annuaire Keycloak vient d'être recopié (UserDirectorySync)
+            Users newUser = userDto.getId_keycloak() != null
+                ? usersRepository.findByIdKeycloak(userDto.getId_keycloak()).orElseGet(Users::new)
+                : new Users();
             newUser.setJobTitle(userDto.getJobTitle());
             newUser.setPhoneNumber(userDto.getPhoneNumber());
             newUser.setIdKeycloak(userDto.getId_keycloak());
 
             // ✅ Enregistrer l'utilisateur dans PostgreSQL
             Users savedUser = usersRepository.save(newUser);
+            currentUserCache.invalidate(savedUser.getIdKeycloak());
             logger.info("✅ Utilisateur enregistré dans PostgreSQL avec succès: {}", savedUser.getId());
             return savedUser;
         } catch (Exception e) {
@@ -66,23 +70,16 @@ public class UsersService {
         if (userOpt.isPresent()) {
             Users user = userOpt.get();
 
-            // On récupère aussi depuis Keycloak les infos nom/prénom
             UserDto dto = new UserDto();
             dto.setJobTitle(user.getJobTitle());
             dto.setPhoneNumber(user.getPhoneNumber());
             dto.setId_keycloak(user.getIdKeycloak());
 
-            if (user.getIdKeycloak() != null) {
-                try {
-                    UserRepresentation keycloakUser = keycloakService.getUserByIdFromKeycloak(user.getIdKeycloak());
-                    dto.setUserName(keycloakUser.getUsername());
-                    dto.setEmail(keycloakUser.getEmail());
-                    dto.setFirstName(keycloakUser.getFirstName());
-                    dto.setLastName(keycloakUser.getLastName());
-                } catch (Exception e) {
-                    // log error mais on ne bloque pas
-                }
-            }
+            // Noms et email recopiés depuis Keycloak (UserDirectorySync)
+            dto.setUserName(user.getUsername());
+            dto.setEmail(user.getEmail());
+            dto.setFirstName(user.getFirstName());
+            dto.setLastName(user.getLastName());
 
             return Optional.of(dto);
         }
@@ -92,7 +89,7 @@ public class UsersService {
 
     
 
-    // ✅ Récupérer tous les utilisateurs depuis PostgreSQL et Keycloak
+    // ✅ Récupérer tous les utilisateurs (PostgreSQL + annuaire Keycloak recopié)
     public List<Map<String, Object>> getAllUsers() {
         List<Map<String, Object>> combinedUsers = new ArrayList<>();
 
@@ -113,12 +110,12 @@ public class UsersService {
             logger.error("❌ Erreur lors de la récupération des utilisateurs depuis PostgreSQL: {}", e.getMessage());
         }
 
-        // 🔹 Récupérer les utilisateurs depuis Keycloak
+        // 🔹 Comptes Keycloak : servis depuis la copie locale de l'annuaire, sans appel à Keycloak
         try {
-            List<UserRepresentation> keycloakUsers = keycloakService.getUsersFromKeycloak();
-            for (UserRepresentation user : keycloakUsers) {
+            List<Users> directory = usersRepository.findDirectory();
+            for (Users user : directory) {
                 Map<String, Object> userMap = new HashMap<>();
-                userMap.put("id", user.getId());
+                userMap.put("id", user.getIdKeycloak());
                 userMap.put("username", user.getUsername());
                 userMap.put("email", user.getEmail());
                 userMap.put("firstName", user.getFirstName());
@@ -126,9 +123,9 @@ public class UsersService {
                 userMap.put("source", "Keycloak");
                 combinedUsers.add(userMap);
             }
-            logger.info("✅ Récupération des utilisateurs depuis Keycloak réussie: {}", keycloakUsers.size());
+            logger.info("✅ Récupération de l'annuaire Keycloak (copie locale) réussie: {}", directory.size());
         } catch (Exception e) {
-            logger.error("❌ Erreur lors de la récupération des utilisateurs depuis Keycloak: {}", e.getMessage());
+            logger.error("❌ Erreur lors de la récupération de l'annuaire Keycloak: {}", e.getMessage());
         }
 
         return combinedUsers;
@@ -155,6 +152,9 @@ public class UsersService {
 
             // ✅ Enregistrer les modifications dans PostgreSQL
             Users updatedUser = usersRepository.save(existingUser);
+            userProfileCache.invalidate(userId);
+            currentUserCache.invalidate(userId);
+            currentUserCache.invalidate(updatedUser.getIdKeycloak());
             logger.info("✅ Utilisateur mis à jour dans PostgreSQL avec succès: {}", updatedUser.getId());
             return updatedUser;
         } catch (Exception e) {
@@ -171,14 +171,8 @@ public class UsersService {
 
     public Users findByKeycloakId(String idKeycloak) {
         try {
-            // Utiliser l'instance de usersRepository pour appeler findAll()
-            List<Users> usersList = usersRepository.findAll();
-            
-            // Rechercher l'utilisateur avec l'ID Keycloak
-            return usersList.stream()
-                    .filter(user -> idKeycloak.equals(user.getIdKeycloak()))
-                    .findFirst()
-                    .orElse(null);
+            // Lecture indexée (contrainte unique sur id_keycloak), via le cache des utilisateurs connectés
+            return currentUserCache.get(idKeycloak).orElse(null);
         } catch (Exception e) {
             logger.error("❌ Erreur lors de la recherche de l'utilisateur par ID Keycloak: {}", e.getMessage());
             return null;
@@ -202,6 +196,8 @@ public class UsersService {
 
             // ✅ Supprimer l'utilisateur de PostgreSQL
             usersRepository.delete(existingUser);
+            userProfileCache.invalidate(existingUser.getIdKeycloak());
+            currentUserCache.invalidate(existingUser.getIdKeycloak());
             logger.info("✅ Utilisateur supprimé de PostgreSQL avec succès: {}", userId);
 
             // ✅ Supprimer l'utilisateur de Keycloak
@@ -216,26 +212,4 @@ public class UsersService {
             throw new RuntimeException("Erreur lors de la suppression de l'utilisateur");
         }
     }
-
-
-    // ✅ Obtenir un Token JWT valide pour Keycloak
-    private String getAccessToken() {
-        String tokenUrl = "http://localhost:8080/realms/qu2data-realm/protocol/openid-connect/token";
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
-
-        String body = "client_id=qu2data-client"
-                + "&client_secret=q8eCXqHnzBMuon4lkRjAAfbRhsGsXPdP"
-                + "&grant_type=client_credentials";
-
-        HttpEntity<String> entity = new HttpEntity<>(body, headers);
-        ResponseEntity<Map> response = restTemplate.exchange(tokenUrl, HttpMethod.POST, entity, Map.class);
-
-        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-            return response.getBody().get("access_token").toString();
-        } else {
-            throw new RuntimeException("Erreur : Impossible d'obtenir le token JWT de Keycloak.");
-        }
-    }
 }
@@ -0,0 +1,158 @@
+package com.backend.qu2data.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.activemq.artemis.core.config.impl.ConfigurationImpl;
+import org.apache.activemq.artemis.core.server.embedded.EmbeddedActiveMQ;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.DispatcherServletAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.ServletWebServerFactoryAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketMessagingAutoConfiguration;
+import org.springframework.boot.autoconfigure.websocket.servlet.WebSocketServletAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.lang.reflect.Type;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Deux instances en mode relay sur un broker STOMP embarqué : un abonné connecté au nœud A
+// reçoit ce que publie le nœud B (aucune session collante nécessaire)
+class WebSocketRelayIntegrationTest {
+
+    private EmbeddedActiveMQ broker;
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private WebSocketStompClient stompClient;
+    private ThreadPoolTaskScheduler scheduler;
+
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({
+        ServletWebServerFactoryAutoConfiguration.class,
+        DispatcherServletAutoConfiguration.class,
+        WebSocketServletAutoConfiguration.class,
+        JacksonAutoConfiguration.class,
+        WebSocketMessagingAutoConfiguration.class
+    })
+    @Import({WebSocketConfig.class, WebSocketMetrics.class})
+    static class Node {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        int stompPort = freePort();
+        broker = new EmbeddedActiveMQ();
+        broker.setConfiguration(new ConfigurationImpl()
+            .setPersistenceEnabled(false)
+            .setSecurityEnabled(false)
+            .addAcceptorConfiguration("stomp", "tcp://127.0.0.1:" + stompPort + "?protocols=STOMP"));
+        broker.start();
+
+        nodeA = start(stompPort);
+        nodeB = start(stompPort);
+
+        stompClient = new WebSocketStompClient(new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        stompClient.setMessageConverter(new StringMessageConverter());
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.initialize();
+        stompClient.setTaskScheduler(scheduler); // suivi des accusés de réception
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (stompClient != null) {
+            stompClient.stop();
+            scheduler.shutdown();
+        }
+        if (nodeA != null) {
+            nodeA.close();
+        }
+        if (nodeB != null) {
+            nodeB.close();
+        }
+        broker.stop();
+    }
+
+    @Test
+    void subscriberOnNodeAReceivesWhatNodeBPublishes() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        WebSocketHttpHeaders headers = new WebSocketHttpHeaders();
+        headers.setOrigin("http://localhost:3000");
+        StompSession session = stompClient.connectAsync("http://127.0.0.1:" + port(nodeA) + "/ws", headers,
+            new StompSessionHandlerAdapter() {
+            }).get(10, TimeUnit.SECONDS);
+
+        StompHeaders subscribe = new StompHeaders();
+        subscribe.setDestination("/topic/group/42");
+        subscribe.setReceipt("subscribed");
+        BlockingQueue<Boolean> subscribed = new LinkedBlockingQueue<>();
+        session.subscribe(subscribe, new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders stompHeaders) {
+                return String.class;
+            }
+
+            @Override
+            public void handleFrame(StompHeaders stompHeaders, Object payload) {
+                received.add((String) payload);
+            }
+        }).addReceiptTask(() -> subscribed.add(true));
+        assertThat(subscribed.poll(10, TimeUnit.SECONDS)).isTrue();
+
+        nodeB.getBean("brokerMessagingTemplate", SimpMessagingTemplate.class).convertAndSend("/topic/group/42", "bonjour du nœud B");
+
+        assertThat(received.poll(10, TimeUnit.SECONDS)).isEqualTo("bonjour du nœud B");
+        session.disconnect();
+    }
+
+    private static ConfigurableApplicationContext start(int stompPort) {
+        return new SpringApplicationBuilder(Node.class)
+            .properties(
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "websocket.broker.mode=relay",
+                "websocket.broker.relay.host=127.0.0.1",
+                "websocket.broker.relay.port=" + stompPort)
+            .run();
+    }
+
+    private static int port(ConfigurableApplicationContext context) {
+        return ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
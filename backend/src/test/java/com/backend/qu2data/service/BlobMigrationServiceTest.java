@@ -0,0 +1,133 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Attachment;
+import com.backend.qu2data.repository.AttachmentRepository;
+import com.backend.qu2data.repository.StoredBlobRepository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Migration uploads/ -> bouchon S3 : la source n'est supprimée qu'après vérification du SHA-256 de la copie
+class BlobMigrationServiceTest {
+
+    @TempDir
+    Path uploadDir;
+
+    private S3StandIn standIn;
+    private S3BlobStore store;
+    private AttachmentRepository attachmentRepository;
+    private StoredBlobRepository storedBlobRepository;
+    private BlobMigrationService migration;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        standIn = new S3StandIn("attachments");
+        store = new S3BlobStore("attachments", "us-east-1", standIn.endpoint(), "test", "test-secret",
+            true, "", 5 * 1024 * 1024);
+
+        FileStorageService fileStorageService = new FileStorageService();
+        ReflectionTestUtils.setField(fileStorageService, "uploadDir", uploadDir.toString());
+
+        attachmentRepository = mock(AttachmentRepository.class);
+        migration = new BlobMigrationService();
+        ReflectionTestUtils.setField(migration, "attachmentRepository", attachmentRepository);
+        storedBlobRepository = mock(StoredBlobRepository.class);
+        ReflectionTestUtils.setField(migration, "storedBlobRepository", storedBlobRepository);
+        ReflectionTestUtils.setField(migration, "blobStore", store);
+        ReflectionTestUtils.setField(migration, "thumbnailService", mock(ThumbnailService.class));
+        ReflectionTestUtils.setField(migration, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(migration, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(migration, "uploadDir", uploadDir.toString());
+        ReflectionTestUtils.setField(migration, "deleteSource", true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+        standIn.close();
+    }
+
+    @Test
+    void legacyFileIsMovedToTheBucketAndSourceDeletedOnceVerified() throws Exception {
+        Path source = Files.writeString(uploadDir.resolve("0f8fad5b-d9cb-469f-a165-70867728950e_devis.txt"), "devis 42");
+        Attachment attachment = legacyAttachment(1, "/uploads/" + source.getFileName());
+
+        Map<String, Integer> report = migration.migrate();
+
+        assertThat(report).containsEntry("legacyMigrated", 1).containsEntry("legacyFailed", 0);
+        assertThat(attachment.getPath()).startsWith("/uploads/blobs/");
+        assertThat(standIn.objects().get(FileStorageService.keyOf(attachment.getPath()))).isEqualTo("devis 42".getBytes());
+        assertThat(source).doesNotExist();
+        InOrder order = inOrder(storedBlobRepository);
+        order.verify(storedBlobRepository).lock(attachment.getChecksum());
+        order.verify(storedBlobRepository).acquire(attachment.getChecksum(), 8L);
+    }
+
+    @Test
+    void sourceIsKeptWhenTheCopyDoesNotMatch() throws Exception {
+        Path source = Files.writeString(uploadDir.resolve("7c9e6679-7425-40de-944b-e07fc1f90ae7_contrat.txt"), "contrat");
+        legacyAttachment(2, "/uploads/" + source.getFileName());
+        standIn.corruptWrites(true);
+
+        migration.migrate();
+
+        assertThat(source).exists();
+    }
+
+    @Test
+    void pathsOutsideTheUploadDirAreNeverRead() throws Exception {
+        Path outside = Files.createTempFile("secret", ".txt");
+        try {
+            legacyAttachment(3, outside.toString());
+
+            Map<String, Integer> report = migration.migrate();
+
+            assertThat(report).containsEntry("legacyMigrated", 0).containsEntry("legacyFailed", 1);
+            assertThat(standIn.objects()).isEmpty();
+            assertThat(outside).exists();
+        } finally {
+            Files.deleteIfExists(outside);
+        }
+    }
+
+    @Test
+    void localBlobTreeIsCopiedAndVerifiedBeforeDeletion() throws Exception {
+        Path blob = uploadDir.resolve("blobs/ab/cd/abcd");
+        Files.createDirectories(blob.getParent());
+        Files.writeString(blob, "contenu");
+
+        Map<String, Integer> report = migration.migrate();
+
+        assertThat(report).containsEntry("localCopied", 1);
+        assertThat(standIn.objects().get("blobs/ab/cd/abcd")).isEqualTo("contenu".getBytes());
+        assertThat(blob).doesNotExist();
+    }
+
+    private Attachment legacyAttachment(int id, String path) {
+        Attachment attachment = new Attachment();
+        attachment.setId(id);
+        attachment.setPath(path);
+        attachment.setType("text/plain");
+        when(attachmentRepository.findLegacyStoredAfter(eq(0), any())).thenReturn(List.of(attachment));
+        when(attachmentRepository.findById(id)).thenReturn(Optional.of(attachment));
+        return attachment;
+    }
+}
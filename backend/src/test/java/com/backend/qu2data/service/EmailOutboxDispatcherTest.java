@@ -0,0 +1,160 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.EmailOutbox;
+import com.backend.qu2data.entites.SpooledAttachment;
+import com.backend.qu2data.repository.EmailOutboxRepository;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Relève de l'outbox contre un serveur SMTP embarqué (GreenMail)
+class EmailOutboxDispatcherTest {
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    @TempDir
+    Path spool;
+
+    private SimpleMeterRegistry meterRegistry;
+    private EmailOutboxRepository emailOutboxRepository;
+    private ThreadPoolTaskExecutor mailExecutor;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        emailOutboxRepository = mock(EmailOutboxRepository.class);
+        when(emailOutboxRepository.countByStatus(EmailOutbox.Status.PENDING)).thenReturn(7L);
+
+        mailExecutor = new ThreadPoolTaskExecutor();
+        mailExecutor.setCorePoolSize(2);
+        mailExecutor.initialize();
+
+        dispatcher = new EmailOutboxDispatcher(meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "emailOutboxRepository", emailOutboxRepository);
+        ReflectionTestUtils.setField(dispatcher, "mailSender", mailSender(greenMail.getSmtp().getPort()));
+        ReflectionTestUtils.setField(dispatcher, "mailExecutor", mailExecutor);
+        ReflectionTestUtils.setField(dispatcher, "taskScheduler", mock(TaskScheduler.class));
+        ReflectionTestUtils.setField(dispatcher, "transactionManager", mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(dispatcher, "mailAttachmentStore", mock(MailAttachmentStore.class));
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 200);
+        ReflectionTestUtils.setField(dispatcher, "messagesPerConnection", 2);
+        ReflectionTestUtils.setField(dispatcher, "leaseSeconds", 300L);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 8);
+        ReflectionTestUtils.setField(dispatcher, "retryBaseMs", 30000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailExecutor.shutdown();
+    }
+
+    @Test
+    void sendsTheClaimedBatchAndDeletesSentRows() throws Exception {
+        Path dir = Files.createDirectories(spool.resolve("offre-3"));
+        Path pdf = Files.writeString(dir.resolve("offre.pdf"), "%PDF-1.4 offre");
+        EmailOutbox withAttachment = row(3L, "c@test.local");
+        withAttachment.getAttachments().add(new SpooledAttachment("offre.pdf", pdf.toString(), "application/pdf"));
+        when(emailOutboxRepository.claimBatch(any(LocalDateTime.class), anyInt()))
+            .thenReturn(List.of(row(1L, "a@test.local"), row(2L, "b@test.local"), withAttachment));
+
+        dispatcher.poll();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertThat(received).hasSize(3);
+        assertThat(Arrays.stream(received).map(GreenMailUtil::getWholeMessage))
+            .anySatisfy(message -> assertThat(message).contains("offre.pdf").contains("application/pdf"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Long>> deleted = ArgumentCaptor.forClass(List.class);
+        verify(emailOutboxRepository).deleteAllByIdInBatch(deleted.capture());
+        assertThat(deleted.getValue()).containsExactlyInAnyOrder(1L, 2L, 3L);
+        verify(emailOutboxRepository, never()).save(any());
+        assertThat(dir).doesNotExist(); // spool propre à l'email supprimé après envoi
+    }
+
+    @Test
+    void pendingGaugeReadsTheCountTakenByThePoll() {
+        when(emailOutboxRepository.claimBatch(any(LocalDateTime.class), anyInt())).thenReturn(List.of());
+
+        dispatcher.poll();
+
+        assertThat(meterRegistry.get("mail.outbox.pending").gauge().value()).isEqualTo(7.0);
+        assertThat(meterRegistry.get("mail.outbox.pending").gauge().value()).isEqualTo(7.0);
+        verify(emailOutboxRepository, times(1)).countByStatus(EmailOutbox.Status.PENDING);
+    }
+
+    @Test
+    void smtpDownReschedulesTheBatchWithBackoff() throws Exception {
+        ReflectionTestUtils.setField(dispatcher, "mailSender", mailSender(closedPort()));
+        EmailOutbox row = row(1L, "a@test.local");
+        when(emailOutboxRepository.claimBatch(any(LocalDateTime.class), anyInt())).thenReturn(List.of(row));
+
+        dispatcher.poll();
+
+        verify(emailOutboxRepository).save(row);
+        assertThat(row.getAttempts()).isEqualTo(1);
+        assertThat(row.getStatus()).isEqualTo(EmailOutbox.Status.PENDING);
+        assertThat(row.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(20));
+        assertThat(row.getLastError()).isNotBlank();
+        verify(emailOutboxRepository, never()).deleteAllByIdInBatch(any());
+    }
+
+    private static EmailOutbox row(Long id, String recipient) {
+        EmailOutbox row = new EmailOutbox();
+        row.setId(id);
+        row.setRecipient(recipient);
+        row.setSender("crm@test.local");
+        row.setSubject("Sujet " + id);
+        row.setBody("<p>Bonjour</p>");
+        row.setHtml(true);
+        row.setNextAttemptAt(LocalDateTime.now());
+        row.setCreatedAt(LocalDateTime.now());
+        return row;
+    }
+
+    private static JavaMailSenderImpl mailSender(int port) {
+        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(port);
+        sender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "2000");
+        return sender;
+    }
+
+    private static int closedPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
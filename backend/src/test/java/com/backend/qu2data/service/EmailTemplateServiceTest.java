@@ -0,0 +1,68 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.EmailTemplate;
+import com.backend.qu2data.repository.EmailTemplateRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailTemplateServiceTest {
+
+    private EmailTemplateRepository repository;
+    private EmailTemplateService service;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(EmailTemplateRepository.class);
+        when(repository.findByCode("offer")).thenAnswer(invocation -> Optional.of(template("Ancienne offre")));
+        when(repository.save(any(EmailTemplate.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        service = new EmailTemplateService(repository, new SimpleMeterRegistry(), 300);
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void savedTemplateReachesTheCacheOnlyAfterCommit() {
+        assertThat(service.render("offer", Map.of()).getSubject()).isEqualTo("Ancienne offre");
+
+        service.save("offer", template("Nouvelle offre"));
+        assertThat(service.render("offer", Map.of()).getSubject()).isEqualTo("Ancienne offre");
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertThat(service.render("offer", Map.of()).getSubject()).isEqualTo("Nouvelle offre");
+    }
+
+    @Test
+    void rolledBackSaveLeavesTheCacheUntouched() {
+        service.save("offer", template("Offre annulée"));
+
+        TransactionSynchronizationManager.getSynchronizations()
+            .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertThat(service.render("offer", Map.of()).getSubject()).isEqualTo("Ancienne offre");
+    }
+
+    private static EmailTemplate template(String subject) {
+        EmailTemplate template = new EmailTemplate();
+        template.setCode("offer");
+        template.setSubject(subject);
+        template.setBody("Bonjour {{fullName}}");
+        template.setHtml(false);
+        return template;
+    }
+}
@@ -0,0 +1,141 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.config.KeycloakConfig;
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.repository.UsersRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Disjoncteur + délais Keycloak contre un bouchon HTTP lent (aucun serveur Keycloak nécessaire)
+class KeycloakCallGuardTest {
+
+    private static final String USER_PATH = "/admin/realms/qu2data-realm/users/u1";
+    private static final Duration READ_TIMEOUT = Duration.ofMillis(500);
+    private static final Duration OPEN_DURATION = Duration.ofMillis(400);
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private KeycloakStandIn standIn;
+    private RestTemplate restTemplate;
+    private KeycloakCallGuard guard;
+    private KeycloakService keycloakService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        standIn = new KeycloakStandIn();
+        standIn.json(USER_PATH, "{\"id\":\"u1\",\"firstName\":\"Alicia\",\"lastName\":\"Keycloak\"}");
+
+        KeycloakConfig config = new KeycloakConfig();
+        ReflectionTestUtils.setField(config, "maxConnections", 5);
+        ReflectionTestUtils.setField(config, "connectTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(config, "readTimeout", READ_TIMEOUT);
+        ReflectionTestUtils.setField(config, "poolTimeout", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(config, "connectionTtl", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(config, "idleEviction", Duration.ofSeconds(30));
+        restTemplate = config.keycloakRestTemplate();
+
+        guard = new KeycloakCallGuard(new SimpleMeterRegistry(), 10, Duration.ofMillis(200), FAILURE_THRESHOLD, OPEN_DURATION);
+
+        Users mirrored = new Users();
+        mirrored.setIdKeycloak("u1");
+        mirrored.setFirstName("Alice");
+        mirrored.setLastName("Annuaire");
+        UsersRepository usersRepository = mock(UsersRepository.class);
+        when(usersRepository.findByIdKeycloak("u1")).thenReturn(Optional.of(mirrored));
+        KeycloakTokenManager tokenManager = mock(KeycloakTokenManager.class);
+        when(tokenManager.getToken()).thenReturn("test-token");
+
+        keycloakService = new KeycloakService();
+        ReflectionTestUtils.setField(keycloakService, "keycloakCallGuard", guard);
+        ReflectionTestUtils.setField(keycloakService, "usersRepository", usersRepository);
+        ReflectionTestUtils.setField(keycloakService, "keycloakTokenManager", tokenManager);
+        ReflectionTestUtils.setField(keycloakService, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(keycloakService, "keycloakBaseUrl", standIn.endpoint());
+    }
+
+    @AfterEach
+    void tearDown() {
+        standIn.close();
+    }
+
+    @Test
+    void readTimeoutFiresOnASlowKeycloak() {
+        standIn.delay(3000);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> restTemplate.getForObject(standIn.endpoint() + USER_PATH, Map.class))
+            .isInstanceOf(ResourceAccessException.class)
+            .hasRootCauseInstanceOf(SocketTimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void circuitOpensAfterThresholdAndFallbackServesTheUsersMirror() {
+        standIn.delay(3000);
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertThat(keycloakService.getUserById("u1")).containsEntry("firstName", "Alice");
+        }
+        assertThat(guard.isOpen()).isTrue();
+        assertThat(standIn.hits(USER_PATH)).isEqualTo(FAILURE_THRESHOLD);
+
+        // Court-circuité : Keycloak n'est plus appelé, la copie locale répond
+        assertThat(keycloakService.getUserById("u1")).containsEntry("firstName", "Alice");
+        assertThat(standIn.hits(USER_PATH)).isEqualTo(FAILURE_THRESHOLD);
+    }
+
+    @Test
+    void singleHalfOpenTrialClosesTheCircuit() throws Exception {
+        standIn.delay(3000);
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            keycloakService.getUserById("u1");
+        }
+        assertThat(guard.isOpen()).isTrue();
+
+        Thread.sleep(OPEN_DURATION.toMillis() + 100);
+        standIn.delay(200);
+        CompletableFuture<Map<String, Object>> trial = CompletableFuture.supplyAsync(() -> keycloakService.getUserById("u1"));
+        while (standIn.hits(USER_PATH) == FAILURE_THRESHOLD) {
+            Thread.sleep(5);
+        }
+
+        // Pendant l'essai, les autres appels restent court-circuités
+        assertThat(keycloakService.getUserById("u1")).containsEntry("firstName", "Alice");
+        assertThat(trial.get(5, TimeUnit.SECONDS)).containsEntry("firstName", "Alicia");
+        assertThat(standIn.hits(USER_PATH)).isEqualTo(FAILURE_THRESHOLD + 1);
+        assertThat(guard.isOpen()).isFalse();
+
+        assertThat(keycloakService.getUserById("u1")).containsEntry("firstName", "Alicia");
+        assertThat(standIn.hits(USER_PATH)).isEqualTo(FAILURE_THRESHOLD + 2);
+    }
+
+    @Test
+    void clientErrorsAndLocalBugsDoNotTripTheCircuit() {
+        standIn.route(USER_PATH, query -> new KeycloakStandIn.Reply(404, "{}"));
+
+        for (int i = 0; i < FAILURE_THRESHOLD * 2; i++) {
+            assertThat(keycloakService.getUserById("u1")).containsEntry("firstName", "Inconnu");
+            assertThatThrownBy(() -> guard.call("bug", () -> {
+                throw new IllegalStateException("bogue local");
+            }, () -> "repli")).isInstanceOf(IllegalStateException.class);
+        }
+        assertThat(guard.isOpen()).isFalse();
+    }
+}
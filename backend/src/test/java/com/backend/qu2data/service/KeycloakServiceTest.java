@@ -0,0 +1,99 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Users;
+import com.backend.qu2data.repository.UsersRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Résolution groupée : copie locale d'abord, Keycloak (bouchon HTTP) seulement pour le reste
+class KeycloakServiceTest {
+
+    private static final String USERS = "/admin/realms/qu2data-realm/users";
+
+    private KeycloakStandIn standIn;
+    private Keycloak keycloak;
+    private UsersRepository usersRepository;
+    private KeycloakService keycloakService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        standIn = new KeycloakStandIn();
+        keycloak = KeycloakBuilder.builder()
+            .serverUrl(standIn.endpoint())
+            .realm("qu2data-realm")
+            .clientId("test")
+            .authorization("test-token")
+            .build();
+        usersRepository = mock(UsersRepository.class);
+
+        keycloakService = new KeycloakService();
+        ReflectionTestUtils.setField(keycloakService, "keycloak", keycloak);
+        ReflectionTestUtils.setField(keycloakService, "usersRepository", usersRepository);
+        ReflectionTestUtils.setField(keycloakService, "keycloakCallGuard",
+            new KeycloakCallGuard(new SimpleMeterRegistry(), 10, Duration.ofMillis(200), 5, Duration.ofSeconds(30)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.close();
+        standIn.close();
+    }
+
+    @Test
+    void mirroredUsersNeverReachKeycloak() {
+        List<String> ids = new ArrayList<>();
+        List<Users> mirrored = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add("u" + i);
+            mirrored.add(mirrored("u" + i));
+        }
+        when(usersRepository.findByIdKeycloakIn(anyCollection())).thenReturn(mirrored);
+
+        assertThat(keycloakService.getUsersByIds(ids)).hasSize(50);
+        assertThat(standIn.hits(USERS)).isZero();
+    }
+
+    @Test
+    void unmirroredUsersAreReadOneByOneWithoutScanningTheRealm() {
+        List<String> ids = new ArrayList<>();
+        List<Users> mirrored = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            ids.add("u" + i);
+            if (i >= 3) {
+                mirrored.add(mirrored("u" + i));
+            }
+        }
+        when(usersRepository.findByIdKeycloakIn(anyCollection())).thenReturn(mirrored);
+        for (int i = 0; i < 3; i++) {
+            standIn.json(USERS + "/u" + i, "{\"id\":\"u" + i + "\",\"username\":\"kc" + i + "\"}");
+        }
+
+        assertThat(keycloakService.getUsersByIds(ids)).hasSize(40)
+            .hasEntrySatisfying("u0", user -> assertThat(user.getUsername()).isEqualTo("kc0"));
+        assertThat(standIn.hits(USERS)).isZero(); // aucun parcours du realm
+        assertThat(standIn.hits(USERS + "/u0") + standIn.hits(USERS + "/u1") + standIn.hits(USERS + "/u2")).isEqualTo(3);
+    }
+
+    private static Users mirrored(String id) {
+        Users user = new Users();
+        user.setIdKeycloak(id);
+        user.setUsername(id);
+        user.setEnabled(true);
+        return user;
+    }
+}
@@ -0,0 +1,86 @@
+package com.backend.qu2data.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Bouchon HTTP de l'API d'administration Keycloak : réponses JSON par chemin, délai injectable
+class KeycloakStandIn implements AutoCloseable {
+
+    record Reply(int status, String json) {
+    }
+
+    private final HttpServer server;
+    private final Map<String, Function<String, Reply>> routes = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private volatile long delayMillis;
+
+    KeycloakStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Réponse d'un chemin exact (sans la query, passée à la fonction)
+    void route(String path, Function<String, Reply> reply) {
+        routes.put(path, reply);
+    }
+
+    void json(String path, String json) {
+        route(path, query -> new Reply(200, json));
+    }
+
+    void delay(long millis) {
+        this.delayMillis = millis;
+    }
+
+    int hits(String path) {
+        AtomicInteger count = hits.get(path);
+        return count != null ? count.get() : 0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            Function<String, Reply> route = routes.get(path);
+            Reply reply = route != null ? route.apply(query != null ? query : "") : new Reply(404, "{}");
+            byte[] body = reply.json().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(reply.status(), body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException e) {
+                // client parti (délai dépassé)
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
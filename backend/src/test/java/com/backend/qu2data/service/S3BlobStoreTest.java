@@ -0,0 +1,76 @@
+package com.backend.qu2data.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// S3BlobStore contre un bouchon S3 local (aucun compte AWS ni MinIO nécessaire)
+class S3BlobStoreTest {
+
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private S3StandIn standIn;
+    private S3BlobStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        standIn = new S3StandIn("attachments");
+        store = new S3BlobStore("attachments", "us-east-1", standIn.endpoint(), "test", "test-secret",
+            true, "", PART_SIZE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.destroy();
+        standIn.close();
+    }
+
+    @Test
+    void putThenOpenRoundTrips() throws Exception {
+        byte[] content = "bonjour".getBytes();
+
+        assertThat(store.exists("blobs/ab/cd/abcd")).isFalse();
+        store.put("blobs/ab/cd/abcd", new ByteArrayInputStream(content), content.length, "text/plain");
+
+        assertThat(store.exists("blobs/ab/cd/abcd")).isTrue();
+        try (InputStream in = store.open("blobs/ab/cd/abcd")) {
+            assertThat(in.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void largeContentGoesThroughMultipartUpload() throws Exception {
+        byte[] content = new byte[PART_SIZE * 2 + 123];
+        new Random(42).nextBytes(content);
+
+        store.put("blobs/ff/ee/big", new ByteArrayInputStream(content), content.length, "application/octet-stream");
+
+        assertThat(standIn.objects().get("blobs/ff/ee/big")).isEqualTo(content);
+    }
+
+    @Test
+    void deletePrefixRemovesDerivativesOnly() throws Exception {
+        byte[] content = "x".getBytes();
+        store.put("blobs/ab/cd/abcd", new ByteArrayInputStream(content), 1, "text/plain");
+        store.put("derivatives/ab/cd/abcd/thumb.png", new ByteArrayInputStream(content), 1, "image/png");
+
+        store.deletePrefix("derivatives/ab/cd/abcd/");
+
+        assertThat(standIn.objects()).containsOnlyKeys("blobs/ab/cd/abcd");
+    }
+
+    @Test
+    void presignedUrlPointsAtTheStandIn() {
+        assertThat(store.presignedUrl("blobs/ab/cd/abcd", Duration.ofMinutes(5), "inline; filename=\"rapport.pdf\"", "application/pdf"))
+            .hasValueSatisfying(url -> assertThat(url)
+                .startsWith(standIn.endpoint() + "/attachments/blobs/ab/cd/abcd")
+                .contains("X-Amz-Signature="));
+    }
+}
@@ -0,0 +1,236 @@
+package com.backend.qu2data.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bouchon S3 en mémoire (style MinIO, adressage path-style) pour les tests de S3BlobStore :
+ * HEAD / GET / PUT / DELETE d'objet, upload multipart, ListObjectsV2 et DeleteObjects.
+ * corruptWrites=true altère le contenu stocké (copie défectueuse simulée).
+ */
+class S3StandIn implements AutoCloseable {
+
+    private static final Pattern XML_KEY = Pattern.compile("<Key>(.*?)</Key>");
+
+    private final HttpServer server;
+    private final String bucket;
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private volatile boolean corruptWrites;
+
+    S3StandIn(String bucket) throws IOException {
+        this.bucket = bucket;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    String endpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    Map<String, byte[]> objects() {
+        return objects;
+    }
+
+    void corruptWrites(boolean corrupt) {
+        this.corruptWrites = corrupt;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery() != null ? exchange.getRequestURI().getRawQuery() : "";
+            String prefix = "/" + bucket;
+            if (!path.startsWith(prefix)) {
+                send(exchange, 404, "<Error><Code>NoSuchBucket</Code></Error>");
+                return;
+            }
+            String key = path.length() > prefix.length() + 1 ? path.substring(prefix.length() + 1) : "";
+            String method = exchange.getRequestMethod();
+
+            if (key.isEmpty()) {
+                handleBucket(exchange, method, query);
+            } else {
+                handleObject(exchange, method, query, key);
+            }
+        }
+    }
+
+    private void handleBucket(HttpExchange exchange, String method, String query) throws IOException {
+        if ("GET".equals(method) && query.contains("list-type=2")) {
+            String prefix = queryParam(query, "prefix");
+            StringBuilder xml = new StringBuilder("<ListBucketResult><Name>" + bucket + "</Name><IsTruncated>false</IsTruncated>");
+            objects.keySet().stream().sorted().filter(key -> prefix == null || key.startsWith(prefix)).forEach(key ->
+                xml.append("<Contents><Key>").append(key).append("</Key><Size>").append(objects.get(key).length).append("</Size></Contents>"));
+            send(exchange, 200, xml.append("</ListBucketResult>").toString());
+            return;
+        }
+        if ("POST".equals(method) && query.startsWith("delete")) {
+            String body = new String(readBody(exchange), StandardCharsets.UTF_8);
+            Matcher matcher = XML_KEY.matcher(body);
+            while (matcher.find()) {
+                objects.remove(matcher.group(1));
+            }
+            send(exchange, 200, "<DeleteResult></DeleteResult>");
+            return;
+        }
+        send(exchange, 400, "<Error><Code>NotImplemented</Code></Error>");
+    }
+
+    private void handleObject(HttpExchange exchange, String method, String query, String key) throws IOException {
+        String uploadId = queryParam(query, "uploadId");
+        switch (method) {
+            case "HEAD" -> {
+                // Connexion fermée après un HEAD : sinon la requête suivante du client échoue sur la connexion réutilisée
+                exchange.getResponseHeaders().set("Connection", "close");
+                byte[] content = objects.get(key);
+                if (content == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    exchange.getResponseHeaders().set("ETag", etag(content));
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(content.length));
+                    exchange.sendResponseHeaders(200, -1);
+                }
+            }
+            case "GET" -> {
+                byte[] content = objects.get(key);
+                if (content == null) {
+                    send(exchange, 404, "<Error><Code>NoSuchKey</Code><Key>" + key + "</Key></Error>");
+                } else {
+                    exchange.getResponseHeaders().set("ETag", etag(content));
+                    exchange.sendResponseHeaders(200, content.length);
+                    exchange.getResponseBody().write(content);
+                }
+            }
+            case "PUT" -> {
+                byte[] content = readBody(exchange);
+                if (uploadId != null) {
+                    uploads.get(uploadId).put(Integer.parseInt(queryParam(query, "partNumber")), content);
+                } else {
+                    objects.put(key, stored(content));
+                }
+                exchange.getResponseHeaders().set("ETag", etag(content));
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "POST" -> {
+                readBody(exchange);
+                if (query.startsWith("uploads")) {
+                    String id = UUID.randomUUID().toString();
+                    uploads.put(id, new TreeMap<>());
+                    send(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + key
+                        + "</Key><UploadId>" + id + "</UploadId></InitiateMultipartUploadResult>");
+                } else {
+                    ByteArrayOutputStream whole = new ByteArrayOutputStream();
+                    for (byte[] part : uploads.remove(uploadId).values()) {
+                        whole.writeBytes(part);
+                    }
+                    objects.put(key, stored(whole.toByteArray()));
+                    send(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + bucket + "</Bucket><Key>" + key
+                        + "</Key><ETag>\"multipart-1\"</ETag></CompleteMultipartUploadResult>");
+                }
+            }
+            case "DELETE" -> {
+                if (uploadId != null) {
+                    uploads.remove(uploadId);
+                } else {
+                    objects.remove(key);
+                }
+                exchange.sendResponseHeaders(204, -1);
+            }
+            default -> send(exchange, 405, "<Error><Code>MethodNotAllowed</Code></Error>");
+        }
+    }
+
+    private byte[] stored(byte[] content) {
+        if (corruptWrites && content.length > 0) {
+            byte[] corrupted = content.clone();
+            corrupted[0] ^= 0x01;
+            return corrupted;
+        }
+        return content;
+    }
+
+    // Corps éventuellement signé par morceaux (aws-chunked : "taille-hex;chunk-signature=...\r\n données \r\n")
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        byte[] raw;
+        try (InputStream in = exchange.getRequestBody()) {
+            raw = in.readAllBytes();
+        }
+        String sha = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        if (sha == null || !sha.startsWith("STREAMING-")) {
+            return raw;
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        int position = 0;
+        while (position < raw.length) {
+            int lineEnd = indexOfCrlf(raw, position);
+            String header = new String(raw, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int size = Integer.parseInt(header.split(";")[0].trim(), 16);
+            if (size == 0) {
+                break;
+            }
+            decoded.write(raw, lineEnd + 2, size);
+            position = lineEnd + 2 + size + 2;
+        }
+        return decoded.toByteArray();
+    }
+
+    private static int indexOfCrlf(byte[] data, int from) {
+        for (int i = from; i < data.length - 1; i++) {
+            if (data[i] == '\r' && data[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return data.length;
+    }
+
+    private static String queryParam(String query, String name) {
+        for (String pair : query.split("&")) {
+            String[] parts = pair.split("=", 2);
+            if (parts[0].equals(name)) {
+                return parts.length > 1 ? java.net.URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "";
+            }
+        }
+        return null;
+    }
+
+    private static String etag(byte[] content) {
+        try {
+            return "\"" + HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.entites.Attachment;
+import com.backend.qu2data.repository.AttachmentRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ThumbnailServiceTest {
+
+    private static final String CHECKSUM = "ab".repeat(32);
+
+    private AttachmentRepository attachmentRepository;
+    private FileStorageService fileStorageService;
+    private ThreadPoolTaskExecutor executor;
+    private ThumbnailService thumbnailService;
+
+    @BeforeEach
+    void setUp() {
+        attachmentRepository = mock(AttachmentRepository.class);
+        fileStorageService = mock(FileStorageService.class);
+        executor = mock(ThreadPoolTaskExecutor.class);
+
+        thumbnailService = new ThumbnailService();
+        ReflectionTestUtils.setField(thumbnailService, "attachmentRepository", attachmentRepository);
+        ReflectionTestUtils.setField(thumbnailService, "fileStorageService", fileStorageService);
+        ReflectionTestUtils.setField(thumbnailService, "blobStore", mock(BlobStore.class));
+        ReflectionTestUtils.setField(thumbnailService, "thumbnailExecutor", executor);
+        ReflectionTestUtils.setField(thumbnailService, "maxEdge", 320);
+        ReflectionTestUtils.setField(thumbnailService, "maxSourcePixels", 50_000_000L);
+    }
+
+    @Test
+    void repeatedMissesQueueOneGenerationPerContent() {
+        Attachment attachment = image(1);
+
+        thumbnailService.scheduleAfterCommit(attachment);
+        thumbnailService.scheduleAfterCommit(attachment);
+        thumbnailService.scheduleAfterCommit(image(2)); // même contenu
+
+        verify(executor, times(1)).execute(any(Runnable.class));
+    }
+
+    @Test
+    void unreadableImageIsMarkedAndNeverQueuedAgain() throws Exception {
+        Attachment attachment = image(1);
+        when(attachmentRepository.findById(1)).thenReturn(Optional.of(attachment));
+        when(fileStorageService.open(anyString())).thenReturn(new ByteArrayInputStream("pas une image".getBytes()));
+
+        thumbnailService.scheduleAfterCommit(attachment);
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).execute(task.capture());
+        task.getValue().run();
+
+        verify(attachmentRepository).markThumbnailFailed(1);
+        verify(attachmentRepository, never()).updateThumbnailPath(any(), any());
+
+        attachment.setThumbnailFailed(true);
+        thumbnailService.scheduleAfterCommit(attachment);
+        verify(executor, times(1)).execute(any(Runnable.class));
+    }
+
+    private static Attachment image(Integer id) {
+        Attachment attachment = new Attachment();
+        attachment.setId(id);
+        attachment.setType("image/png");
+        attachment.setChecksum(CHECKSUM);
+        attachment.setPath("/uploads/blobs/ab/ab/" + CHECKSUM);
+        return attachment;
+    }
+}
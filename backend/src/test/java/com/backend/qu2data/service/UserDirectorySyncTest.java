@@ -0,0 +1,141 @@
+package com.backend.qu2data.service;
+
+import com.backend.qu2data.repository.UsersRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Keycloak;
+import org.keycloak.admin.client.KeycloakBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Synchronisation de l'annuaire contre un bouchon HTTP de Keycloak (aucun serveur Keycloak nécessaire)
+class UserDirectorySyncTest {
+
+    private static final String USERS = "/admin/realms/test/users";
+    private static final String ROLES = "/admin/realms/test/roles";
+    private static final String GROUPS = "/admin/realms/test/groups";
+
+    private KeycloakStandIn standIn;
+    private Keycloak keycloak;
+    private UsersRepository usersRepository;
+    private JdbcTemplate jdbcTemplate;
+    private UserDirectorySync sync;
+    private final List<Object[]> upserted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        standIn = new KeycloakStandIn();
+        keycloak = KeycloakBuilder.builder()
+            .serverUrl(standIn.endpoint())
+            .realm("test")
+            .clientId("test")
+            .authorization("test-token")
+            .build();
+
+        usersRepository = mock(UsersRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenAnswer(invocation -> {
+            List<Object[]> rows = invocation.getArgument(1);
+            upserted.addAll(rows);
+            int[] counts = new int[rows.size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        });
+
+        sync = new UserDirectorySync(keycloak, usersRepository, mock(CurrentUserCache.class),
+            new KeycloakCallGuard(new SimpleMeterRegistry(), 4, Duration.ofSeconds(1), 5, Duration.ofSeconds(30)), jdbcTemplate, mock(PlatformTransactionManager.class),
+            new SimpleMeterRegistry(), "test", 2);
+
+        // u1 : ADMIN hérité du groupe parent "admins" via le sous-groupe "leads" ; u2 : rôle direct ;
+        // u3 : aucun rôle propre ; default-roles-test (tous) est composite et inclut offline_access
+        standIn.route(USERS, query -> new KeycloakStandIn.Reply(200, query.contains("first=0")
+            ? "[" + user("u1") + "," + user("u2") + "]"
+            : "[" + user("u3") + "]"));
+        standIn.json(ROLES, "[" + role("ADMIN", false) + "," + role("COMMERCIAL", false) + ","
+            + role("default-roles-test", true) + "," + role("offline_access", false) + "]");
+        standIn.json(ROLES + "/default-roles-test/composites/realm", "[" + role("offline_access", false) + "]");
+        standIn.json(ROLES + "/ADMIN/users", "[]");
+        standIn.json(ROLES + "/ADMIN/groups", "[{\"id\":\"admins\"}]");
+        standIn.json(ROLES + "/COMMERCIAL/users", "[" + user("u2") + "]");
+        standIn.json(ROLES + "/COMMERCIAL/groups", "[]");
+        standIn.route(ROLES + "/default-roles-test/users", query -> new KeycloakStandIn.Reply(200, query.contains("first=0")
+            ? "[" + user("u1") + "," + user("u2") + "]"
+            : "[" + user("u3") + "]"));
+        standIn.json(ROLES + "/default-roles-test/groups", "[]");
+        standIn.json(ROLES + "/offline_access/users", "[]");
+        standIn.json(ROLES + "/offline_access/groups", "[]");
+        standIn.json(GROUPS, "[{\"id\":\"admins\",\"subGroups\":[{\"id\":\"leads\",\"subGroups\":[]}]}]");
+        standIn.json(GROUPS + "/admins/members", "[]");
+        standIn.json(GROUPS + "/leads/members", "[" + user("u1") + "]");
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.close();
+        standIn.close();
+    }
+
+    @Test
+    void storesEffectiveRolesIncludingGroupAndCompositeRoles() {
+        standIn.json(USERS + "/count", "3");
+        when(usersRepository.findEnabledKeycloakIds()).thenReturn(List.of());
+
+        sync.syncAll();
+
+        assertThat(upserted).extracting(row -> row[0] + "=" + row[5]).containsExactly(
+            "u1=ADMIN,default-roles-test,offline_access",
+            "u2=COMMERCIAL,default-roles-test,offline_access",
+            "u3=default-roles-test,offline_access");
+        // Aucun appel par utilisateur : les rôles sont lus rôle par rôle
+        assertThat(standIn.hits(USERS + "/u1/role-mappings/realm/composite")).isZero();
+    }
+
+    @Test
+    void disablesMissingAccountsAfterAStablePass() {
+        standIn.json(USERS + "/count", "3");
+        when(usersRepository.findEnabledKeycloakIds()).thenReturn(List.of("u1", "u2", "u3", "gone"));
+
+        sync.syncAll();
+
+        verify(usersRepository).disableAll(List.of("gone"));
+    }
+
+    @Test
+    void keepsAccountsWhenTheRealmChangesDuringThePass() {
+        AtomicInteger counts = new AtomicInteger();
+        standIn.route(USERS + "/count", query -> new KeycloakStandIn.Reply(200, counts.getAndIncrement() == 0 ? "3" : "4"));
+        when(usersRepository.findEnabledKeycloakIds()).thenReturn(List.of("u1", "u2", "u3", "gone"));
+
+        sync.syncAll();
+
+        assertThat(upserted).hasSize(3);
+        verify(usersRepository, never()).disableAll(anyCollection());
+    }
+
+    private static String user(String id) {
+        return "{\"id\":\"" + id + "\",\"username\":\"" + id + "\",\"email\":\"" + id + "@test.local\",\"enabled\":true}";
+    }
+
+    private static String role(String name, boolean composite) {
+        return "{\"name\":\"" + name + "\",\"composite\":" + composite + "}";
+    }
+}
@@ -380,7 +380,9 @@ export default function ChatWindow({ selectedUser, refreshConversationList }: Ch
             const body = JSON.parse(msg.body);
 
             // Afficher une notification uniquement pour les messages reçus d'autres utilisateurs
-            if (body.sentBy && body.sentBy.id !== currentUserId) {
+            // (évènement MessageEvent : senderId à plat, sentBy pour l'ancien format)
+            const senderId = body.senderId ?? body.sentBy?.id;
+            if (senderId && senderId !== currentUserId) {
               // C'est un message d'un autre utilisateur
               notifications.show({
                 title: `📩 Nouveau message reçu`,
@@ -424,10 +426,10 @@ export default function ChatWindow({ selectedUser, refreshConversationList }: Ch
               console.log("👥 Message groupe WebSocket reçu:", msg.body);
               const body = JSON.parse(msg.body);
 
-              if (body.sentBy?.id !== currentUserId) {
+              if ((body.senderId ?? body.sentBy?.id) !== currentUserId) {
                 // Notification pour message de groupe
                 notifications.show({
-                  title: `💬 Message groupe de ${body.sentBy?.username || "Membre"}`,
+                  title: `💬 Message groupe de ${body.senderName || body.sentBy?.username || "Membre"}`,
                   message: body.content || "Nouveau message dans le groupe",
                   color: "green",
                 });
@@ -445,7 +447,9 @@ export default function ChatWindow({ selectedUser, refreshConversationList }: Ch
                 // Utiliser firstName et lastName s'ils sont disponibles directement dans le message
                 // Sinon, essayer de les récupérer depuis sentBy
                 let senderFullName = "";
-                if (body.firstName && body.lastName) {
+                if (body.senderName) {
+                  senderFullName = body.senderName;
+                } else if (body.firstName && body.lastName) {
                   senderFullName = `${body.firstName} ${body.lastName}`;
                   console.log("📊 Nom complet trouvé directement dans le message WebSocket:", senderFullName);
                 } else if (body.sentBy?.firstName && body.sentBy?.lastName) {